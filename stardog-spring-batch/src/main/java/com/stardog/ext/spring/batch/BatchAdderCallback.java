@@ -19,6 +19,7 @@ import java.util.List;
 
 import com.complexible.stardog.StardogException;
 import com.complexible.stardog.api.Adder;
+import com.stardog.ext.spring.ValueCache;
 
 /**
  * @author Al Baker
@@ -28,5 +29,18 @@ import com.complexible.stardog.api.Adder;
 public interface BatchAdderCallback<T> {
 
 	void write(Adder adder, List<? extends T> items) throws StardogException;
+
+	/**
+	 * <code>write</code>
+	 * Called by SnarlItemWriter, override to build the statements with the writer's ValueCache
+	 * 
+	 * @param adder adder of the chunk transaction
+	 * @param items items of the chunk
+	 * @param valueCache interning cache of the writer, null if none is configured
+	 * @throws StardogException if the add fails
+	 */
+	default void write(Adder adder, List<? extends T> items, ValueCache valueCache) throws StardogException {
+		write(adder, items);
+	}
 	
 }
@@ -15,6 +15,7 @@
 */
 package com.stardog.ext.spring.batch;
 
+import java.util.Iterator;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -26,7 +27,9 @@ import org.springframework.batch.item.UnexpectedInputException;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 
+import com.stardog.ext.spring.ConnectionPriority;
 import com.stardog.ext.spring.DataSource;
+import com.stardog.ext.spring.RowCodec;
 import com.stardog.ext.spring.RowMapper;
 import com.stardog.ext.spring.SnarlTemplate;
 
@@ -48,10 +51,19 @@ public class SnarlItemReader<T> implements ItemReader<T>, InitializingBean, Disp
 	private DataSource dataSource;
 	
 	private List<T> results;
+
+	private Iterator<T> cursor;
 	
 	private String query;
 	
 	private RowMapper<T> rowMapper;
+
+	private RowCodec<T> rowCodec;
+
+	private int spillThreshold = 100000;
+
+	// batch reads yield to interactive traffic by default
+	private ConnectionPriority priority = ConnectionPriority.LOW;
 	
 	
 	/* 
@@ -76,12 +88,17 @@ public class SnarlItemReader<T> implements ItemReader<T>, InitializingBean, Disp
 			NonTransientResourceException {
 		
 		if (results == null) {
-			results = snarlTemplate.query(query, rowMapper);
+			if (rowCodec != null) {
+				results = snarlTemplate.query(query, rowMapper, rowCodec);
+			} else {
+				results = snarlTemplate.query(query, rowMapper);
+			}
+			cursor = results.iterator();
 			log.debug("SnarlItemReader finished loading query data");
 		}
 		
-		if (results.size() > 0) { 
-			return results.remove(0);
+		if (cursor.hasNext()) { 
+			return cursor.next();
 		} else {
 			return null;
 		}
@@ -91,6 +108,8 @@ public class SnarlItemReader<T> implements ItemReader<T>, InitializingBean, Disp
 	public void afterPropertiesSet() throws Exception {
 		snarlTemplate = new SnarlTemplate();
 		snarlTemplate.setDataSource(dataSource);
+		snarlTemplate.setPriority(priority);
+		snarlTemplate.setSpillThreshold(spillThreshold);
 	}
 
 	@Override
@@ -141,4 +160,48 @@ public class SnarlItemReader<T> implements ItemReader<T>, InitializingBean, Disp
 		this.rowMapper = rowMapper;
 	}
 
+	/**
+	 * @return the priority
+	 */
+	public ConnectionPriority getPriority() {
+		return priority;
+	}
+
+	/**
+	 * @param priority the priority to set
+	 */
+	public void setPriority(ConnectionPriority priority) {
+		this.priority = priority;
+	}
+
+	/**
+	 * @return the rowCodec
+	 */
+	public RowCodec<T> getRowCodec() {
+		return rowCodec;
+	}
+
+	/**
+	 * Serializes rows past spillThreshold to disk, null keeps all rows in memory
+	 * 
+	 * @param rowCodec the rowCodec to set
+	 */
+	public void setRowCodec(RowCodec<T> rowCodec) {
+		this.rowCodec = rowCodec;
+	}
+
+	/**
+	 * @return the spillThreshold
+	 */
+	public int getSpillThreshold() {
+		return spillThreshold;
+	}
+
+	/**
+	 * @param spillThreshold rows kept in memory before spilling to disk, when a rowCodec is set
+	 */
+	public void setSpillThreshold(int spillThreshold) {
+		this.spillThreshold = spillThreshold;
+	}
+
 }
@@ -24,7 +24,11 @@ import org.springframework.batch.item.ItemWriter;
 import com.complexible.stardog.StardogException;
 import com.complexible.stardog.api.Adder;
 import com.complexible.stardog.api.Connection;
+import com.stardog.ext.spring.ConnectionPriority;
+import com.stardog.ext.spring.ConnectionPriorityHolder;
 import com.stardog.ext.spring.DataSource;
+import com.stardog.ext.spring.DataSourceUtils;
+import com.stardog.ext.spring.ValueCache;
 
 /**
  * Implementation of the Spring Batch ItemWriter interface that supports the SNARL API
@@ -40,22 +44,33 @@ public class SnarlItemWriter<T> implements ItemWriter<T> {
 	private DataSource dataSource;
 	
 	private BatchAdderCallback<T> callback;
+
+	// batch writes yield to interactive traffic by default
+	private ConnectionPriority priority = ConnectionPriority.LOW;
+
+	private ValueCache valueCache;
 	
 	@Override
 	public void write(List<? extends T> items) throws Exception {
-		Connection connection = dataSource.getConnection();
+		Connection connection = DataSourceUtils.getConnection(dataSource, ConnectionPriorityHolder.getPriority(priority));
+		boolean transactional = DataSourceUtils.isConnectionTransactional(connection, dataSource);
 		Adder adder = null;
 		try {
-			connection.begin();
+			// when a StardogTransactionManager drives the step, the chunk transaction owns begin/commit
+			if (!transactional) {
+				connection.begin();
+			}
 			adder = connection.add();
-			callback.write(adder, items);
-			connection.commit();
+			callback.write(adder, items, valueCache);
+			if (!transactional) {
+				connection.commit();
+			}
 		} catch (StardogException e) {
 			log.error("Error with SnarlItemWriter ", e);
 			throw new RuntimeException(e);
 		} finally { 
 			adder = null;
-			dataSource.releaseConnection(connection);
+			DataSourceUtils.releaseConnection(connection, dataSource);
 		}
 		
 	}
@@ -88,4 +103,32 @@ public class SnarlItemWriter<T> implements ItemWriter<T> {
 		this.callback = callback;
 	}
 
+	/**
+	 * @return the priority
+	 */
+	public ConnectionPriority getPriority() {
+		return priority;
+	}
+
+	/**
+	 * @param priority the priority to set
+	 */
+	public void setPriority(ConnectionPriority priority) {
+		this.priority = priority;
+	}
+
+	/**
+	 * @return the valueCache
+	 */
+	public ValueCache getValueCache() {
+		return valueCache;
+	}
+
+	/**
+	 * @param valueCache the valueCache to set, handed to the callback on every chunk
+	 */
+	public void setValueCache(ValueCache valueCache) {
+		this.valueCache = valueCache;
+	}
+
 }
@@ -0,0 +1,77 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring.batch;
+
+import java.util.List;
+
+import com.complexible.stardog.StardogException;
+import com.complexible.stardog.api.Adder;
+import com.stardog.ext.spring.ValueCache;
+import com.stardog.ext.spring.mapper.StatementMapper;
+import com.stardog.stark.Resource;
+import com.stardog.stark.Values;
+
+/**
+ * BatchAdderCallback that writes each item of the chunk with a StatementMapper,
+ * interning literals in the SnarlItemWriter's ValueCache when it has one
+ */
+public class StatementMapperCallback<T> implements BatchAdderCallback<T> {
+
+	private final StatementMapper<T> mapper;
+
+	private String graphUri;
+
+	private Resource context;
+
+	/**
+	 * @param type class of the items, mapped with StatementMapper.of
+	 */
+	public StatementMapperCallback(Class<T> type) {
+		this(StatementMapper.of(type));
+	}
+
+	/**
+	 * @param mapper mapper of the items
+	 */
+	public StatementMapperCallback(StatementMapper<T> mapper) {
+		this.mapper = mapper;
+	}
+
+	@Override
+	public void write(Adder adder, List<? extends T> items) throws StardogException {
+		write(adder, items, null);
+	}
+
+	@Override
+	public void write(Adder adder, List<? extends T> items, ValueCache valueCache) throws StardogException {
+		mapper.write(items, adder, context, valueCache);
+	}
+
+	/**
+	 * @return the graph the items are written to, null for the default graph
+	 */
+	public String getGraphUri() {
+		return graphUri;
+	}
+
+	/**
+	 * @param graphUri the graphUri to set, null for the default graph
+	 */
+	public void setGraphUri(String graphUri) {
+		this.graphUri = graphUri;
+		this.context = graphUri == null ? null : Values.iri(graphUri);
+	}
+}
@@ -0,0 +1,338 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * AdaptiveConcurrencyLimiter
+ * 
+ * Limits the number of SnarlTemplate operations in flight, adjusting the limit from the
+ * observed latency in the style of TCP Vegas.  Latency samples are the server round-trips
+ * reported through <code>sample</code> (query execution, commit), not the time spent waiting
+ * for a pooled connection or running the caller's callback.
+ * 
+ * Each kind of operation keeps its own latency floor, the lowest latency over the current
+ * and the previous window of samples, taken as the latency of an unloaded server.  For every
+ * sample the number of queued requests implied by its latency is estimated as
+ * limit * (1 - floor / latency).  While that estimate is small the limit grows, once it is
+ * large the limit shrinks, so the limit settles where Stardog is busy but not yet queueing.
+ * 
+ * Operations over the limit wait in a bounded queue.  When the queue is full, or an operation
+ * has waited longer than maxQueueTime, a ConcurrencyLimitExceededException is thrown right
+ * away instead of piling more callers up on the connection pool.
+ * 
+ * Nested operations on the same thread (e.g. template calls from inside a callback) share
+ * the permit of the outermost operation.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+	final Logger log = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+	/**
+	 * Kinds of operation with their own latency floor, a fast ASK says nothing about how
+	 * long an unloaded server takes for a large SELECT
+	 */
+	public enum Operation {
+		SELECT, GRAPH, ASK, UPDATE, WRITE
+	}
+
+	/**
+	 * Number of samples in a latency window.  The floor only rises once a whole window has
+	 * gone by without a lower sample, so a permanently slower server does not hold the limit
+	 * at its minimum forever, and a single slow sample cannot raise the floor
+	 */
+	private static final int LATENCY_WINDOW_SAMPLES = 1000;
+
+	private int minLimit = 1;
+
+	private int maxLimit = 200;
+
+	private int maxQueueDepth = 50;
+
+	private long maxQueueTime = 1;
+
+	private TimeUnit maxQueueTimeUnit = TimeUnit.SECONDS;
+
+	private volatile double limit = 20;
+
+	private final Map<Operation, LatencyFloor> floors = new EnumMap<Operation, LatencyFloor>(Operation.class);
+
+	private int inFlight = 0;
+
+	private int waiting = 0;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition available = lock.newCondition();
+
+	// depth of nested acquires on this thread
+	private final ThreadLocal<int[]> current = ThreadLocal.withInitial(() -> new int[1]);
+
+	public AdaptiveConcurrencyLimiter() {
+		for (Operation operation : Operation.values()) {
+			floors.put(operation, new LatencyFloor());
+		}
+	}
+
+	/**
+	 * <code>acquire</code>
+	 * Admits the operation, waiting in the queue if the limit is reached
+	 * 
+	 * @throws ConcurrencyLimitExceededException if the queue is full or the wait timed out
+	 */
+	public void acquire() {
+		int[] state = current.get();
+		if (state[0]++ > 0) {
+			return;
+		}
+
+		lock.lock();
+		try {
+			if (inFlight >= (int) limit) {
+				if (waiting >= maxQueueDepth) {
+					state[0] = 0;
+					throw new ConcurrencyLimitExceededException("Stardog concurrency limit " + (int) limit
+							+ " reached and " + waiting + " operations already queued", (int) limit);
+				}
+				waiting++;
+				try {
+					long remaining = maxQueueTimeUnit.toNanos(maxQueueTime);
+					while (inFlight >= (int) limit) {
+						if (remaining <= 0) {
+							state[0] = 0;
+							throw new ConcurrencyLimitExceededException("Timed out waiting for Stardog concurrency limit "
+									+ (int) limit, (int) limit);
+						}
+						remaining = available.awaitNanos(remaining);
+					}
+				} catch (InterruptedException e) {
+					state[0] = 0;
+					Thread.currentThread().interrupt();
+					throw new ConcurrencyLimitExceededException("Interrupted waiting for Stardog concurrency limit", (int) limit);
+				} finally {
+					waiting--;
+				}
+			}
+			inFlight++;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * <code>release</code>
+	 * Completes the operation admitted by the matching acquire
+	 */
+	public void release() {
+		int[] state = current.get();
+		if (state[0] == 0 || --state[0] > 0) {
+			return;
+		}
+
+		lock.lock();
+		try {
+			inFlight--;
+			available.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * <code>sample</code>
+	 * Feeds the latency of one server round-trip into the limit
+	 * 
+	 * @param operation kind of round-trip
+	 * @param latency duration in nanoseconds
+	 */
+	public void sample(Operation operation, long latency) {
+		lock.lock();
+		try {
+			update(floors.get(operation).update(latency), latency, inFlight);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void update(long floor, long latency, int busy) {
+		double currentLimit = limit;
+		// only grow when the limit is actually being used, not when the application is idle
+		if (busy * 2 < currentLimit) {
+			return;
+		}
+
+		double queue = currentLimit * (1 - (double) floor / Math.max(1, latency));
+		double step = Math.max(1, Math.log10(currentLimit));
+		double newLimit = currentLimit;
+		if (queue < 3 * step) {
+			newLimit = currentLimit + step;
+		} else if (queue > 6 * step) {
+			newLimit = currentLimit - step;
+		}
+		newLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+
+		if ((int) newLimit != (int) currentLimit) {
+			log.debug("Stardog concurrency limit {} -> {}", (int) currentLimit, (int) newLimit);
+			if (newLimit > currentLimit) {
+				available.signalAll();
+			}
+		}
+		limit = newLimit;
+	}
+
+	/**
+	 * @param operation kind of round-trip
+	 * @return the current latency floor of the operation in nanoseconds, Long.MAX_VALUE before the first sample
+	 */
+	public long getLatencyFloor(Operation operation) {
+		lock.lock();
+		try {
+			return floors.get(operation).floor();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the current limit
+	 */
+	public int getLimit() {
+		return (int) limit;
+	}
+
+	/**
+	 * @param initialLimit the starting limit
+	 */
+	public void setInitialLimit(int initialLimit) {
+		this.limit = initialLimit;
+	}
+
+	/**
+	 * @return number of operations in flight
+	 */
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the minLimit
+	 */
+	public int getMinLimit() {
+		return minLimit;
+	}
+
+	/**
+	 * @param minLimit the minLimit to set
+	 */
+	public void setMinLimit(int minLimit) {
+		this.minLimit = minLimit;
+	}
+
+	/**
+	 * @return the maxLimit
+	 */
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+	/**
+	 * @param maxLimit the maxLimit to set
+	 */
+	public void setMaxLimit(int maxLimit) {
+		this.maxLimit = maxLimit;
+	}
+
+	/**
+	 * @return the maxQueueDepth
+	 */
+	public int getMaxQueueDepth() {
+		return maxQueueDepth;
+	}
+
+	/**
+	 * @param maxQueueDepth the maxQueueDepth to set, 0 fails as soon as the limit is reached
+	 */
+	public void setMaxQueueDepth(int maxQueueDepth) {
+		this.maxQueueDepth = maxQueueDepth;
+	}
+
+	/**
+	 * @return the maxQueueTime
+	 */
+	public long getMaxQueueTime() {
+		return maxQueueTime;
+	}
+
+	/**
+	 * @param maxQueueTime the maxQueueTime to set
+	 */
+	public void setMaxQueueTime(long maxQueueTime) {
+		this.maxQueueTime = maxQueueTime;
+	}
+
+	/**
+	 * @return the maxQueueTimeUnit
+	 */
+	public TimeUnit getMaxQueueTimeUnit() {
+		return maxQueueTimeUnit;
+	}
+
+	/**
+	 * @param maxQueueTimeUnit the maxQueueTimeUnit to set
+	 */
+	public void setMaxQueueTimeUnit(TimeUnit maxQueueTimeUnit) {
+		this.maxQueueTimeUnit = maxQueueTimeUnit;
+	}
+
+	/*
+	 * Minimum latency over the current and the previous window, guarded by the limiter lock
+	 */
+	private static class LatencyFloor {
+
+		private long current = Long.MAX_VALUE;
+
+		private long previous = Long.MAX_VALUE;
+
+		private int samples = 0;
+
+		long update(long latency) {
+			if (++samples > LATENCY_WINDOW_SAMPLES) {
+				samples = 1;
+				previous = current;
+				current = Long.MAX_VALUE;
+			}
+			current = Math.min(current, latency);
+			return floor();
+		}
+
+		long floor() {
+			return Math.min(current, previous);
+		}
+	}
+}
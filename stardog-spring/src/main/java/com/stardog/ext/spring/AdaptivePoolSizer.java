@@ -0,0 +1,307 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * AdaptivePoolSizer
+ * 
+ * Controls how many connections may be checked out of a DataSource at once, moving the
+ * limit between minPool and maxPool as the load changes.  The Stardog ConnectionPool is
+ * sized once at startup, so the controller gates checkouts in front of it: connections are
+ * only created while the limit allows it, and connections above maxIdle are closed by the
+ * pool once the limit drops again.
+ * 
+ * The limit starts at minPool.  A caller that has waited growWaitTime for a permit raises
+ * the limit straight to the current demand, the connections in use plus every caller
+ * waiting, so a burst after a quiet period is held up for growWaitTime rather than for
+ * several adjustment intervals.
+ * 
+ * Every adjustment interval the controller also looks at the average time callers waited
+ * for a permit and at the peak number of connections in use.  When callers waited longer
+ * than growWaitTime the limit grows by a quarter or to the peak demand, whichever is more,
+ * when the peak stayed under half the limit and nobody waited it shrinks by a tenth.  With
+ * growAtCapacity off the limit never grows.
+ */
+public class AdaptivePoolSizer {
+
+	final Logger log = LoggerFactory.getLogger(AdaptivePoolSizer.class);
+
+	private final int minPool;
+
+	private final int maxPool;
+
+	private final long growWaitNanos;
+
+	private final AdjustableSemaphore permits;
+
+	private long blockCapacityTime = 900;
+
+	private TimeUnit blockCapacityTimeUnit = TimeUnit.SECONDS;
+
+	private boolean failAtCapacity = false;
+
+	private boolean growAtCapacity = true;
+
+	private volatile int limit;
+
+	private final AtomicInteger inUse = new AtomicInteger();
+
+	private final AtomicInteger peakInUse = new AtomicInteger();
+
+	private final LongAdder waitNanos = new LongAdder();
+
+	private final LongAdder acquires = new LongAdder();
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * @param minPool lower bound of the limit, also the starting limit
+	 * @param maxPool upper bound of the limit
+	 * @param growWaitTime wait after which the limit grows to the demand
+	 * @param growWaitTimeUnit unit of growWaitTime
+	 */
+	public AdaptivePoolSizer(int minPool, int maxPool, long growWaitTime, TimeUnit growWaitTimeUnit) {
+		if (minPool < 1 || maxPool < minPool) {
+			throw new IllegalArgumentException("Invalid pool bounds: minPool " + minPool + ", maxPool " + maxPool);
+		}
+		this.minPool = minPool;
+		this.maxPool = maxPool;
+		this.growWaitNanos = growWaitTimeUnit.toNanos(growWaitTime);
+		this.limit = minPool;
+		this.permits = new AdjustableSemaphore(minPool);
+	}
+
+	/**
+	 * <code>start</code>
+	 * Starts the periodic adjustment
+	 * 
+	 * @param interval time between adjustments
+	 * @param unit unit of the interval
+	 */
+	public synchronized void start(long interval, TimeUnit unit) {
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "stardog-pool-sizer");
+			t.setDaemon(true);
+			return t;
+		});
+		scheduler.scheduleAtFixedRate(this::adjust, interval, interval, unit);
+	}
+
+	/**
+	 * <code>stop</code>
+	 * Stops the periodic adjustment
+	 */
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * <code>acquire</code>
+	 * Waits up to blockCapacityTime for a checkout permit, or not at all when
+	 * failAtCapacity is set and the limit has already reached maxPool.  After
+	 * growWaitTime without a permit the limit is raised to the current demand.
+	 * 
+	 * @return true if a permit was acquired
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean acquire() throws InterruptedException {
+		long start = System.nanoTime();
+		boolean acquired;
+		if (failAtCapacity && limit >= maxPool) {
+			acquired = permits.tryAcquire();
+		} else {
+			long timeout = blockCapacityTimeUnit.toNanos(blockCapacityTime);
+			acquired = permits.tryAcquire(Math.min(timeout, growWaitNanos), TimeUnit.NANOSECONDS);
+			if (!acquired) {
+				if (growAtCapacity) {
+					growToDemand();
+				}
+				acquired = permits.tryAcquire(Math.max(0, timeout - (System.nanoTime() - start)), TimeUnit.NANOSECONDS);
+			}
+		}
+		waitNanos.add(System.nanoTime() - start);
+		acquires.increment();
+		if (acquired) {
+			int current = inUse.incrementAndGet();
+			peakInUse.accumulateAndGet(current, Math::max);
+		}
+		return acquired;
+	}
+
+	/**
+	 * <code>tryAcquireSpare</code>
+	 * Takes a permit without waiting, and only while another permit stays free for regular
+	 * checkouts.  Used by background work such as ConnectionKeepAlive, it does not count
+	 * towards the waits that grow the limit.
+	 * 
+	 * @return true if a permit was acquired
+	 */
+	public boolean tryAcquireSpare() {
+		if (permits.availablePermits() < 2 || !permits.tryAcquire()) {
+			return false;
+		}
+		int current = inUse.incrementAndGet();
+		peakInUse.accumulateAndGet(current, Math::max);
+		return true;
+	}
+
+	/**
+	 * <code>release</code>
+	 * Returns a checkout permit
+	 */
+	public void release() {
+		// guard against unbalanced releases growing the limit behind our back
+		if (inUse.getAndUpdate(i -> i > 0 ? i - 1 : 0) > 0) {
+			permits.release();
+		}
+	}
+
+	/*
+	 * Raises the limit to the connections in use plus the callers waiting, including the
+	 * calling thread, which is not queued on the semaphore at this point
+	 */
+	private synchronized void growToDemand() {
+		int demand = inUse.get() + permits.getQueueLength() + 1;
+		if (demand > limit) {
+			log.debug("Growing Stardog connection limit from {} to demand {}", limit, demand);
+			setLimit(demand);
+		}
+	}
+
+	/**
+	 * <code>adjust</code>
+	 * Moves the limit based on the waits and peak usage since the last adjustment
+	 */
+	public synchronized void adjust() {
+		long count = acquires.sumThenReset();
+		long waited = waitNanos.sumThenReset();
+		int peak = peakInUse.getAndSet(inUse.get());
+		long averageWait = count == 0 ? 0 : waited / count;
+
+		int current = limit;
+		int target = current;
+		if (growAtCapacity && (averageWait > growWaitNanos || permits.hasQueuedThreads())) {
+			int demand = peak + permits.getQueueLength();
+			target = Math.min(maxPool, Math.max(demand, current + Math.max(1, current / 4)));
+		} else if (peak < current / 2) {
+			target = Math.max(minPool, current - Math.max(1, current / 10));
+		}
+
+		if (target != current) {
+			log.debug("Resizing Stardog connection limit from {} to {}", current, target);
+			setLimit(target);
+		}
+	}
+
+	/**
+	 * <code>setLimit</code>
+	 * @param newLimit the new limit, clamped to minPool..maxPool
+	 */
+	public synchronized void setLimit(int newLimit) {
+		newLimit = Math.max(minPool, Math.min(maxPool, newLimit));
+		int delta = newLimit - limit;
+		if (delta > 0) {
+			permits.release(delta);
+		} else if (delta < 0) {
+			permits.reducePermits(-delta);
+		}
+		limit = newLimit;
+	}
+
+	/**
+	 * @return the current limit
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @return number of connections currently checked out through the controller
+	 */
+	public int getInUse() {
+		return inUse.get();
+	}
+
+	/**
+	 * @param blockCapacityTime how long acquire waits for a permit
+	 * @param blockCapacityTimeUnit unit of blockCapacityTime
+	 */
+	public void setBlockCapacityTime(long blockCapacityTime, TimeUnit blockCapacityTimeUnit) {
+		this.blockCapacityTime = blockCapacityTime;
+		this.blockCapacityTimeUnit = blockCapacityTimeUnit;
+	}
+
+	/**
+	 * @param failAtCapacity the failAtCapacity to set
+	 */
+	public void setFailAtCapacity(boolean failAtCapacity) {
+		this.failAtCapacity = failAtCapacity;
+	}
+
+	/**
+	 * @param growAtCapacity the growAtCapacity to set
+	 */
+	public void setGrowAtCapacity(boolean growAtCapacity) {
+		this.growAtCapacity = growAtCapacity;
+	}
+
+	/**
+	 * @return the minPool
+	 */
+	public int getMinPool() {
+		return minPool;
+	}
+
+	/**
+	 * @return the maxPool
+	 */
+	public int getMaxPool() {
+		return maxPool;
+	}
+
+	/**
+	 * Semaphore whose permits can be taken away without waiting for them
+	 */
+	private static class AdjustableSemaphore extends Semaphore {
+
+		private static final long serialVersionUID = 1L;
+
+		AdjustableSemaphore(int permits) {
+			super(permits, true);
+		}
+
+		@Override
+		protected void reducePermits(int reduction) {
+			super.reducePermits(reduction);
+		}
+	}
+}
@@ -0,0 +1,295 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.complexible.stardog.api.ConnectionCredentials;
+
+/**
+ * CachingCredentialSupplier
+ * 
+ * Wraps a credential supplier that is slow or rate limited, e.g. one issuing tokens
+ * from an identity provider, so that connection creation does not wait on it.
+ * 
+ * The current credentials are cached for timeToLive, and replaced by a background
+ * refresh refreshAhead before they expire.  Concurrent refreshes are collapsed into
+ * one call to the wrapped supplier.  Only the very first get() waits for credentials;
+ * after that, if a refresh fails the previous credentials keep being handed out and
+ * the refresh is retried after retryTime, doubling up to 16 times retryTime while it
+ * keeps failing.  Once the credentials are past timeToLive they are no longer handed
+ * out: get() refreshes them, and throws IllegalStateException if that fails.
+ */
+public class CachingCredentialSupplier implements Supplier<ConnectionCredentials> {
+
+	final Logger log = LoggerFactory.getLogger(CachingCredentialSupplier.class);
+
+	private final Supplier<ConnectionCredentials> supplier;
+
+	private final long timeToLiveNanos;
+
+	private final long refreshAheadNanos;
+
+	private final AtomicReference<CompletableFuture<Cached>> refreshing = new AtomicReference<CompletableFuture<Cached>>();
+
+	private volatile Cached current;
+
+	// earliest time of the next refresh triggered by get(), pushed out after failures
+	private final AtomicLong nextAttempt = new AtomicLong(System.nanoTime());
+
+	private volatile int failures = 0;
+
+	private volatile RuntimeException lastFailure;
+
+	private final Object initLock = new Object();
+
+	private long retryTime = 5;
+
+	private TimeUnit retryTimeUnit = TimeUnit.SECONDS;
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Refreshes a tenth of timeToLive before expiry
+	 * 
+	 * @param supplier supplier of fresh credentials
+	 * @param timeToLive how long credentials are valid after they are obtained
+	 * @param unit unit of timeToLive
+	 */
+	public CachingCredentialSupplier(Supplier<ConnectionCredentials> supplier, long timeToLive, TimeUnit unit) {
+		this(supplier, timeToLive, timeToLive / 10, unit);
+	}
+
+	/**
+	 * @param supplier supplier of fresh credentials
+	 * @param timeToLive how long credentials are valid after they are obtained
+	 * @param refreshAhead how long before expiry the background refresh runs
+	 * @param unit unit of timeToLive and refreshAhead
+	 */
+	public CachingCredentialSupplier(Supplier<ConnectionCredentials> supplier, long timeToLive, long refreshAhead, TimeUnit unit) {
+		if (refreshAhead < 0 || refreshAhead >= timeToLive) {
+			throw new IllegalArgumentException("refreshAhead must be between 0 and timeToLive");
+		}
+		this.supplier = supplier;
+		this.timeToLiveNanos = unit.toNanos(timeToLive);
+		this.refreshAheadNanos = unit.toNanos(refreshAhead);
+	}
+
+	/**
+	 * <code>start</code>
+	 * Obtains the first credentials and starts the background refresh
+	 */
+	public synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "stardog-credential-refresh");
+			t.setDaemon(true);
+			return t;
+		});
+		scheduler.execute(this::scheduledRefresh);
+	}
+
+	/**
+	 * <code>stop</code>
+	 * Stops the background refresh
+	 */
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * <code>get</code>
+	 * @return the cached credentials, only waits when none have been obtained yet or they have expired
+	 * @throws IllegalStateException if the credentials have expired and cannot be refreshed
+	 */
+	@Override
+	public ConnectionCredentials get() {
+		Cached cached = current;
+		if (cached == null) {
+			cached = initialize();
+		}
+		long now = System.nanoTime();
+		long age = now - cached.obtainedAt;
+		if (age >= timeToLiveNanos) {
+			return refreshExpired().credentials;
+		}
+		if (age >= timeToLiveNanos - refreshAheadNanos && refreshing.get() == null && claimAttempt(now)) {
+			// the background refresh is late or not started, refresh without holding up the caller
+			CompletableFuture.runAsync(this::refresh);
+		}
+		return cached.credentials;
+	}
+
+	private Cached refreshExpired() {
+		Cached cached = current;
+		if (System.nanoTime() - cached.obtainedAt < timeToLiveNanos) {
+			// refreshed by another caller in the meantime
+			return cached;
+		}
+		if (refreshing.get() == null && !claimAttempt(System.nanoTime())) {
+			// still backing off after a failed refresh, do not call the supplier again yet
+			throw new IllegalStateException("Stardog credentials have expired and could not be refreshed", lastFailure);
+		}
+		try {
+			return refresh().join();
+		} catch (CompletionException e) {
+			throw new IllegalStateException("Stardog credentials have expired and could not be refreshed", e.getCause());
+		}
+	}
+
+	/*
+	 * Lets one caller through per retry period, so callers do not all call the supplier
+	 */
+	private boolean claimAttempt(long now) {
+		long next = nextAttempt.get();
+		return now - next >= 0 && nextAttempt.compareAndSet(next, now + retryTimeUnit.toNanos(retryTime));
+	}
+
+	private Cached initialize() {
+		synchronized (initLock) {
+			// callers queued behind the first fetch find the credentials it obtained
+			Cached cached = current;
+			if (cached != null) {
+				return cached;
+			}
+			try {
+				return refresh().join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * <code>refreshNow</code>
+	 * Obtains new credentials, or joins the refresh already in progress
+	 * 
+	 * @return completes with the new credentials
+	 */
+	public CompletableFuture<ConnectionCredentials> refreshNow() {
+		return refresh().thenApply(c -> c.credentials);
+	}
+
+	private CompletableFuture<Cached> refresh() {
+		for (;;) {
+			CompletableFuture<Cached> inProgress = refreshing.get();
+			if (inProgress != null) {
+				return inProgress;
+			}
+			CompletableFuture<Cached> mine = new CompletableFuture<Cached>();
+			if (refreshing.compareAndSet(null, mine)) {
+				try {
+					Cached cached = new Cached(supplier.get(), System.nanoTime());
+					if (cached.credentials == null) {
+						throw new IllegalStateException("Credential supplier returned null");
+					}
+					current = cached;
+					failures = 0;
+					lastFailure = null;
+					nextAttempt.set(cached.obtainedAt);
+					refreshing.set(null);
+					mine.complete(cached);
+				} catch (RuntimeException e) {
+					long backoff = retryTimeUnit.toNanos(retryTime) << Math.min(failures, 4);
+					failures++;
+					lastFailure = e;
+					nextAttempt.set(System.nanoTime() + backoff);
+					if (current != null && isExpired()) {
+						log.error("Error refreshing expired Stardog credentials, connections fail until a refresh succeeds, retrying in "
+								+ TimeUnit.NANOSECONDS.toMillis(backoff) + "ms", e);
+					} else {
+						log.error("Error refreshing Stardog credentials, retrying in " + TimeUnit.NANOSECONDS.toMillis(backoff) + "ms", e);
+					}
+					refreshing.set(null);
+					mine.completeExceptionally(e);
+				}
+				return mine;
+			}
+		}
+	}
+
+	private void scheduledRefresh() {
+		long delay;
+		try {
+			refresh().join();
+			delay = timeToLiveNanos - refreshAheadNanos;
+		} catch (CompletionException e) {
+			delay = Math.max(0, nextAttempt.get() - System.nanoTime());
+		}
+		synchronized (this) {
+			if (scheduler != null) {
+				scheduler.schedule(this::scheduledRefresh, delay, TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+
+	/**
+	 * @return true if the cached credentials are past their timeToLive
+	 */
+	public boolean isExpired() {
+		Cached cached = current;
+		return cached == null || System.nanoTime() - cached.obtainedAt >= timeToLiveNanos;
+	}
+
+	/**
+	 * @return the retryTime
+	 */
+	public long getRetryTime() {
+		return retryTime;
+	}
+
+	/**
+	 * Delay before a failed refresh is retried, doubled on each further failure up to
+	 * 16 times this delay
+	 * 
+	 * @param retryTime the retryTime to set
+	 * @param unit unit of the retryTime
+	 */
+	public void setRetryTime(long retryTime, TimeUnit unit) {
+		this.retryTime = retryTime;
+		this.retryTimeUnit = unit;
+	}
+
+	private static class Cached {
+
+		private final ConnectionCredentials credentials;
+
+		private final long obtainedAt;
+
+		Cached(ConnectionCredentials credentials, long obtainedAt) {
+			this.credentials = credentials;
+			this.obtainedAt = obtainedAt;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ColumnSchema
+ * 
+ * Projected variables of a SELECT query and the primitive type each is decoded into,
+ * see SnarlTemplate.queryForColumns
+ * 
+ * <pre>
+ * ColumnSchema schema = new ColumnSchema()
+ *     .addLong("count")
+ *     .addDouble("price")
+ *     .addString("category");
+ * </pre>
+ */
+public class ColumnSchema {
+
+	/**
+	 * Types a column can be decoded into
+	 */
+	public enum Type {
+		/** xsd integer types, decoded into a long[] */
+		LONG,
+		/** xsd decimal, float and double, decoded into a double[] */
+		DOUBLE,
+		/** xsd boolean, decoded into a boolean[] */
+		BOOLEAN,
+		/** any value, as dictionary encoded strings */
+		STRING
+	}
+
+	private final List<String> variables = new ArrayList<String>();
+
+	private final List<Type> types = new ArrayList<Type>();
+
+	public ColumnSchema addLong(String variable) {
+		return add(variable, Type.LONG);
+	}
+
+	public ColumnSchema addDouble(String variable) {
+		return add(variable, Type.DOUBLE);
+	}
+
+	public ColumnSchema addBoolean(String variable) {
+		return add(variable, Type.BOOLEAN);
+	}
+
+	public ColumnSchema addString(String variable) {
+		return add(variable, Type.STRING);
+	}
+
+	/**
+	 * <code>add</code>
+	 * @param variable projected variable, without the ?
+	 * @param type type of the column
+	 * @return this schema
+	 */
+	public ColumnSchema add(String variable, Type type) {
+		if (variables.contains(variable)) {
+			throw new IllegalArgumentException("Duplicate column " + variable);
+		}
+		variables.add(variable);
+		types.add(type);
+		return this;
+	}
+
+	/**
+	 * @return the variables, in column order
+	 */
+	public List<String> getVariables() {
+		return Collections.unmodifiableList(variables);
+	}
+
+	/**
+	 * @param column column index
+	 * @return type of the column
+	 */
+	public Type getType(int column) {
+		return types.get(column);
+	}
+
+	/**
+	 * @return number of columns
+	 */
+	public int size() {
+		return variables.size();
+	}
+}
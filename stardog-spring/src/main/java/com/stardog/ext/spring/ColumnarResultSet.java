@@ -0,0 +1,320 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.stardog.ext.spring.utils.ValueDecoder;
+import com.stardog.stark.Value;
+import com.stardog.stark.query.BindingSet;
+
+/**
+ * ColumnarResultSet
+ * 
+ * SELECT results decoded column by column into primitive arrays, see
+ * SnarlTemplate.queryForColumns.  Numbers are parsed straight from the literal
+ * labels, without boxing or per-row objects, and strings are dictionary encoded.
+ * 
+ * Unbound values are marked in the column's null mask, and read as 0, NaN or false.
+ */
+public class ColumnarResultSet {
+
+	private final ColumnSchema schema;
+
+	private final Column[] columns;
+
+	private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+	private int size = 0;
+
+	private boolean trimmed = false;
+
+	/**
+	 * @param schema columns to decode
+	 */
+	public ColumnarResultSet(ColumnSchema schema) {
+		this.schema = schema;
+		this.columns = new Column[schema.size()];
+		for (int i = 0; i < schema.size(); i++) {
+			indexes.put(schema.getVariables().get(i), i);
+			switch (schema.getType(i)) {
+				case LONG: columns[i] = new LongColumn(); break;
+				case DOUBLE: columns[i] = new DoubleColumn(); break;
+				case BOOLEAN: columns[i] = new BooleanColumn(); break;
+				default: columns[i] = new StringColumn(); break;
+			}
+		}
+	}
+
+	/**
+	 * <code>add</code>
+	 * @param bindingSet row to decode
+	 * @throws IllegalArgumentException if a value does not parse as the type of its column
+	 */
+	public void add(BindingSet bindingSet) {
+		if (trimmed) {
+			throw new IllegalStateException("Result set is already read");
+		}
+		for (int i = 0; i < columns.length; i++) {
+			String variable = schema.getVariables().get(i);
+			Value value = bindingSet.get(variable);
+			Column column = columns[i];
+			if (value == null) {
+				column.nulls.set(size);
+				column.addNull(size);
+			} else {
+				try {
+					column.add(size, value);
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Cannot decode ?" + variable + " of row " + size + " as "
+							+ schema.getType(i) + ": " + value, e);
+				}
+			}
+		}
+		size++;
+	}
+
+	/**
+	 * @return number of rows
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the schema
+	 */
+	public ColumnSchema getSchema() {
+		return schema;
+	}
+
+	/**
+	 * @param variable LONG column
+	 * @return the values, one per row
+	 */
+	public long[] getLongs(String variable) {
+		return ((LongColumn) column(variable, ColumnSchema.Type.LONG)).values;
+	}
+
+	/**
+	 * @param variable DOUBLE column
+	 * @return the values, one per row
+	 */
+	public double[] getDoubles(String variable) {
+		return ((DoubleColumn) column(variable, ColumnSchema.Type.DOUBLE)).values;
+	}
+
+	/**
+	 * @param variable BOOLEAN column
+	 * @return the values, one per row
+	 */
+	public boolean[] getBooleans(String variable) {
+		return ((BooleanColumn) column(variable, ColumnSchema.Type.BOOLEAN)).values;
+	}
+
+	/**
+	 * @param variable STRING column
+	 * @return the id of each row's string in getDictionary, -1 when unbound
+	 */
+	public int[] getStringIds(String variable) {
+		return ((StringColumn) column(variable, ColumnSchema.Type.STRING)).ids;
+	}
+
+	/**
+	 * @param variable STRING column
+	 * @return the distinct strings of the column, indexed by id
+	 */
+	public String[] getDictionary(String variable) {
+		return ((StringColumn) column(variable, ColumnSchema.Type.STRING)).strings.toArray(new String[0]);
+	}
+
+	/**
+	 * @param variable STRING column
+	 * @param row row index
+	 * @return the string, null when unbound
+	 */
+	public String getString(String variable, int row) {
+		StringColumn column = (StringColumn) column(variable, ColumnSchema.Type.STRING);
+		int id = column.ids[row];
+		return id < 0 ? null : column.strings.get(id);
+	}
+
+	/**
+	 * @param variable any column
+	 * @return rows where the variable is unbound
+	 */
+	public BitSet getNulls(String variable) {
+		Integer index = indexes.get(variable);
+		if (index == null) {
+			throw new IllegalArgumentException("No column " + variable);
+		}
+		return columns[index].nulls;
+	}
+
+	private Column column(String variable, ColumnSchema.Type type) {
+		Integer index = indexes.get(variable);
+		if (index == null) {
+			throw new IllegalArgumentException("No column " + variable);
+		}
+		if (schema.getType(index) != type) {
+			throw new IllegalArgumentException("Column " + variable + " is " + schema.getType(index) + ", not " + type);
+		}
+		if (!trimmed) {
+			// reading ends the building, arrays are cut to the row count once
+			for (Column column : columns) {
+				column.trim(size);
+			}
+			trimmed = true;
+		}
+		return columns[index];
+	}
+
+	/**
+	 * One growable column
+	 */
+	private static abstract class Column {
+
+		final BitSet nulls = new BitSet();
+
+		abstract void add(int row, Value value);
+
+		abstract void addNull(int row);
+
+		abstract void trim(int size);
+
+		static int grow(int length) {
+			return Math.max(16, length + (length >> 1));
+		}
+	}
+
+	private static class LongColumn extends Column {
+
+		long[] values = new long[0];
+
+		@Override
+		void add(int row, Value value) {
+			if (row == values.length) {
+				values = Arrays.copyOf(values, grow(values.length));
+			}
+			values[row] = ValueDecoder.longValue(value);
+		}
+
+		@Override
+		void addNull(int row) {
+			if (row == values.length) {
+				values = Arrays.copyOf(values, grow(values.length));
+			}
+		}
+
+		@Override
+		void trim(int size) {
+			values = Arrays.copyOf(values, size);
+		}
+	}
+
+	private static class DoubleColumn extends Column {
+
+		double[] values = new double[0];
+
+		@Override
+		void add(int row, Value value) {
+			if (row == values.length) {
+				values = Arrays.copyOf(values, grow(values.length));
+			}
+			values[row] = ValueDecoder.doubleValue(value);
+		}
+
+		@Override
+		void addNull(int row) {
+			if (row == values.length) {
+				values = Arrays.copyOf(values, grow(values.length));
+			}
+			values[row] = Double.NaN;
+		}
+
+		@Override
+		void trim(int size) {
+			values = Arrays.copyOf(values, size);
+		}
+	}
+
+	private static class BooleanColumn extends Column {
+
+		boolean[] values = new boolean[0];
+
+		@Override
+		void add(int row, Value value) {
+			if (row == values.length) {
+				values = Arrays.copyOf(values, grow(values.length));
+			}
+			values[row] = ValueDecoder.booleanValue(value);
+		}
+
+		@Override
+		void addNull(int row) {
+			if (row == values.length) {
+				values = Arrays.copyOf(values, grow(values.length));
+			}
+		}
+
+		@Override
+		void trim(int size) {
+			values = Arrays.copyOf(values, size);
+		}
+	}
+
+	private static class StringColumn extends Column {
+
+		int[] ids = new int[0];
+
+		final List<String> strings = new ArrayList<String>();
+
+		final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+
+		@Override
+		void add(int row, Value value) {
+			if (row == ids.length) {
+				ids = Arrays.copyOf(ids, grow(ids.length));
+			}
+			String string = ValueDecoder.label(value);
+			Integer id = dictionary.get(string);
+			if (id == null) {
+				id = strings.size();
+				strings.add(string);
+				dictionary.put(string, id);
+			}
+			ids[row] = id;
+		}
+
+		@Override
+		void addNull(int row) {
+			if (row == ids.length) {
+				ids = Arrays.copyOf(ids, grow(ids.length));
+			}
+			ids[row] = -1;
+		}
+
+		@Override
+		void trim(int size) {
+			ids = Arrays.copyOf(ids, size);
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+/**
+ * ConcurrencyLimitExceededException
+ * 
+ * Thrown by the SnarlTemplate when its AdaptiveConcurrencyLimiter rejects an operation,
+ * either because the wait queue is full or because the operation waited too long.  The
+ * operation was never sent to Stardog, so it is safe to retry later or to shed.
+ */
+public class ConcurrencyLimitExceededException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int limit;
+
+	public ConcurrencyLimitExceededException(String message, int limit) {
+		super(message);
+		this.limit = limit;
+	}
+
+	/**
+	 * @return the concurrency limit at the time of the rejection
+	 */
+	public int getLimit() {
+		return limit;
+	}
+}
@@ -0,0 +1,184 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.complexible.stardog.api.Connection;
+
+/**
+ * ConnectionCache
+ * 
+ * Contention reducing front-end to the ConnectionPool.  Released connections are parked
+ * in a small array of slots instead of going back to the shared pool, and the next obtain
+ * on the same slot takes them back with a single compare-and-set.  Threads are spread over
+ * the slots by thread id, so a thread that releases and then obtains again usually finds
+ * its own connection, and threads on different cores rarely touch the same slot.  When the
+ * slot is empty (or full, on release) the cache falls back to the pool.
+ * 
+ * Slots are shared rather than thread-local, so a connection parked by a thread that goes
+ * away is still reused, and a connection parked longer than the maximum age is handed back
+ * to the pool instead of being reused, since the pool cannot expire it while it is parked.
+ * A connection whose slot is not used again is handed back by reap, which runs periodically
+ * once the cache is started.
+ */
+public class ConnectionCache {
+
+	private final AtomicReferenceArray<Connection> slots;
+
+	private final AtomicLongArray parkedAt;
+
+	private final int mask;
+
+	private final long maxAgeNanos;
+
+	private final Supplier<Connection> obtainer;
+
+	private final Consumer<Connection> releaser;
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * @param stripes number of slots, rounded up to a power of two
+	 * @param maxAge how long a connection may stay parked
+	 * @param unit unit of maxAge
+	 * @param obtainer obtains a connection from the pool
+	 * @param releaser releases a connection to the pool
+	 */
+	public ConnectionCache(int stripes, long maxAge, TimeUnit unit, Supplier<Connection> obtainer, Consumer<Connection> releaser) {
+		int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+		this.slots = new AtomicReferenceArray<Connection>(size);
+		this.parkedAt = new AtomicLongArray(size);
+		this.mask = size - 1;
+		this.maxAgeNanos = unit.toNanos(maxAge);
+		this.obtainer = obtainer;
+		this.releaser = releaser;
+	}
+
+	/**
+	 * <code>start</code>
+	 * Starts the background task, which reaps old parked connections at the maximum age
+	 */
+	public synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "stardog-connection-cache");
+			t.setDaemon(true);
+			return t;
+		});
+		long period = Math.max(maxAgeNanos, TimeUnit.MILLISECONDS.toNanos(100));
+		scheduler.scheduleWithFixedDelay(this::reap, period, period, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * <code>stop</code>
+	 * Stops the background task
+	 */
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * <code>obtain</code>
+	 * @return a parked connection from this thread's slot, or one from the pool
+	 */
+	public Connection obtain() {
+		int slot = slot();
+		Connection parked = slots.getAndSet(slot, null);
+		if (parked != null) {
+			if (System.nanoTime() - parkedAt.get(slot) < maxAgeNanos) {
+				return parked;
+			}
+			releaser.accept(parked);
+		}
+		return obtainer.get();
+	}
+
+	/**
+	 * <code>release</code>
+	 * Parks the connection in this thread's slot, or releases it to the pool if the slot is taken
+	 * 
+	 * @param connection Stardog Connection
+	 */
+	public void release(Connection connection) {
+		int slot = slot();
+		if (slots.get(slot) == null) {
+			// stamped before the handoff, a racing release can only make the parked connection look younger
+			parkedAt.lazySet(slot, System.nanoTime());
+			if (slots.compareAndSet(slot, null, connection)) {
+				return;
+			}
+		}
+		releaser.accept(connection);
+	}
+
+	/**
+	 * <code>reap</code>
+	 * Releases connections parked longer than the maximum age to the pool
+	 * 
+	 * @return number of connections released
+	 */
+	public int reap() {
+		long now = System.nanoTime();
+		int reaped = 0;
+		for (int i = 0; i < slots.length(); i++) {
+			Connection parked = slots.get(i);
+			if (parked != null && now - parkedAt.get(i) >= maxAgeNanos && slots.compareAndSet(i, parked, null)) {
+				releaser.accept(parked);
+				reaped++;
+			}
+		}
+		return reaped;
+	}
+
+	/**
+	 * <code>drain</code>
+	 * Releases every parked connection to the pool
+	 */
+	public void drain() {
+		for (int i = 0; i < slots.length(); i++) {
+			Connection parked = slots.getAndSet(i, null);
+			if (parked != null) {
+				releaser.accept(parked);
+			}
+		}
+	}
+
+	/**
+	 * @return number of slots
+	 */
+	public int getStripes() {
+		return slots.length();
+	}
+
+	private int slot() {
+		long id = Thread.currentThread().getId();
+		// spread sequential thread ids over the slots
+		int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+}
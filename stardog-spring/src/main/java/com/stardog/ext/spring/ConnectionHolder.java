@@ -0,0 +1,65 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import org.springframework.transaction.support.ResourceHolderSupport;
+
+import com.complexible.stardog.api.Connection;
+
+/**
+ * ConnectionHolder
+ *
+ * Wraps a Stardog Connection that is bound to the current thread by the
+ * StardogTransactionManager, keyed on the DataSource it came from
+ */
+public class ConnectionHolder extends ResourceHolderSupport {
+
+	private final Connection connection;
+
+	private boolean transactionActive = false;
+
+	public ConnectionHolder(Connection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * @return the connection
+	 */
+	public Connection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * @return true if a Stardog transaction has been begun on the connection
+	 */
+	public boolean isTransactionActive() {
+		return transactionActive;
+	}
+
+	/**
+	 * @param transactionActive the transactionActive to set
+	 */
+	public void setTransactionActive(boolean transactionActive) {
+		this.transactionActive = transactionActive;
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		transactionActive = false;
+	}
+
+}
@@ -0,0 +1,154 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.complexible.stardog.api.Connection;
+
+/**
+ * ConnectionKeepAlive
+ * 
+ * Background maintenance for the idle connections of a DataSource.  When the DataSource
+ * has been quiet for a keep-alive interval, a batch of pooled connections is checked out
+ * together, validated with a cheap query and released again.  This exercises connections
+ * before the pool expires them, and a broken connection is found and evicted by the
+ * maintenance task rather than handed to the first request after an idle period.
+ * 
+ * The interval should be shorter than the pool expiration time for the connections to be
+ * refreshed before they expire.
+ */
+public class ConnectionKeepAlive {
+
+	final Logger log = LoggerFactory.getLogger(ConnectionKeepAlive.class);
+
+	private final DataSource dataSource;
+
+	private final long intervalNanos;
+
+	private final int connections;
+
+	private final String validationQuery;
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * @param dataSource DataSource to maintain
+	 * @param interval quiet time after which connections are validated
+	 * @param unit unit of the interval
+	 * @param connections number of idle connections to validate per run
+	 * @param validationQuery SPARQL ASK query used to validate a connection
+	 */
+	public ConnectionKeepAlive(DataSource dataSource, long interval, TimeUnit unit, int connections, String validationQuery) {
+		this.dataSource = dataSource;
+		this.intervalNanos = unit.toNanos(interval);
+		this.connections = connections;
+		this.validationQuery = validationQuery;
+	}
+
+	/**
+	 * <code>start</code>
+	 * Starts the background task, which checks for a quiet period at half the interval
+	 */
+	public synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "stardog-keep-alive");
+			t.setDaemon(true);
+			return t;
+		});
+		long period = Math.max(intervalNanos / 2, TimeUnit.MILLISECONDS.toNanos(100));
+		scheduler.scheduleWithFixedDelay(this::maintain, period, period, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * <code>stop</code>
+	 * Stops the background task
+	 */
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * <code>maintain</code>
+	 * Validates up to the configured number of connections, if the DataSource has been quiet.
+	 * Checkouts go through the DataSource's permits at LOW priority and never take the last
+	 * free permit, and connections that fail validation are evicted from the pool.
+	 * 
+	 * @return number of connections that failed validation
+	 */
+	public int maintain() {
+		if (dataSource.getIdleNanos() < intervalNanos) {
+			return 0;
+		}
+
+		// hold the connections together, so each validation touches a different pooled connection
+		List<Connection> checkedOut = new ArrayList<Connection>(connections);
+		int failed = 0;
+		try {
+			for (int i = 0; i < connections; i++) {
+				Connection connection = dataSource.obtainMaintenanceConnection();
+				if (connection == null) {
+					// no spare permit, leave the rest of the pool to regular traffic
+					break;
+				}
+				checkedOut.add(connection);
+			}
+		} catch (RuntimeException e) {
+			log.warn("Error obtaining Stardog connection for validation", e);
+			failed++;
+		}
+
+		for (Connection connection : checkedOut) {
+			boolean valid = validate(connection);
+			if (!valid) {
+				failed++;
+			}
+			try {
+				dataSource.releaseMaintenanceConnection(connection, valid);
+			} catch (RuntimeException e) {
+				log.warn("Error releasing validated Stardog connection", e);
+			}
+		}
+
+		if (failed > 0) {
+			log.warn("Stardog keep-alive found " + failed + " invalid connection(s)");
+		}
+		return failed;
+	}
+
+	private boolean validate(Connection connection) {
+		try {
+			connection.ask(validationQuery).execute();
+			return true;
+		} catch (RuntimeException e) {
+			log.warn("Stardog connection failed validation", e);
+			return false;
+		}
+	}
+}
@@ -0,0 +1,238 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.complexible.stardog.api.Connection;
+
+/**
+ * ConnectionLeakDetector
+ *
+ * Tracks connections checked out of a DataSource, along with the stack trace and time
+ * of the checkout.  A background task reports connections held longer than the threshold,
+ * and optionally reclaims them so a leak cannot drain the pool.  A reclaimed connection may
+ * still be in use by its owner, with a transaction open, so it is handed to the reclaimer to
+ * be rolled back and discarded rather than returned for reuse.
+ *
+ * Tracked connections are handed out as proxies, so that close() returns the connection
+ * to the DataSource and a reclaimed connection can no longer be used by its old owner.
+ */
+public class ConnectionLeakDetector {
+
+	final Logger log = LoggerFactory.getLogger(ConnectionLeakDetector.class);
+
+	private final Map<Connection, Checkout> checkouts = new ConcurrentHashMap<Connection, Checkout>();
+
+	private final long thresholdMillis;
+
+	private final boolean reclaim;
+
+	private final Consumer<Connection> releaser;
+
+	private final Consumer<Connection> reclaimer;
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * @param threshold how long a connection may be held before it is reported
+	 * @param unit unit of the threshold
+	 * @param reclaim whether connections held past the threshold are reclaimed
+	 * @param releaser returns the underlying connection to the pool
+	 * @param reclaimer discards the underlying connection of a reclaimed checkout
+	 */
+	public ConnectionLeakDetector(long threshold, TimeUnit unit, boolean reclaim, Consumer<Connection> releaser,
+			Consumer<Connection> reclaimer) {
+		this.thresholdMillis = unit.toMillis(threshold);
+		this.reclaim = reclaim;
+		this.releaser = releaser;
+		this.reclaimer = reclaimer;
+	}
+
+	/**
+	 * <code>start</code>
+	 * Starts the background check, which runs at half the threshold
+	 */
+	public synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "stardog-leak-detector");
+			t.setDaemon(true);
+			return t;
+		});
+		long period = Math.max(thresholdMillis / 2, 100);
+		scheduler.scheduleAtFixedRate(this::check, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * <code>stop</code>
+	 * Stops the background check
+	 */
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+		checkouts.clear();
+	}
+
+	/**
+	 * <code>track</code>
+	 * @param connection connection obtained from the pool
+	 * @return tracking proxy to hand to the caller
+	 */
+	public Connection track(Connection connection) {
+		Checkout checkout = new Checkout(connection);
+		Connection proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, checkout);
+		checkout.proxy = proxy;
+		checkouts.put(proxy, checkout);
+		return proxy;
+	}
+
+	/**
+	 * <code>isTracked</code>
+	 * @param connection Stardog Connection
+	 * @return true if the connection is a proxy handed out by this detector
+	 */
+	public boolean isTracked(Connection connection) {
+		return connection != null && Proxy.isProxyClass(connection.getClass())
+				&& Proxy.getInvocationHandler(connection) instanceof Checkout;
+	}
+
+	/**
+	 * <code>release</code>
+	 * Stops tracking the connection
+	 *
+	 * @param connection tracking proxy
+	 * @return the underlying connection to return to the pool, or null if it was
+	 * already released or reclaimed
+	 */
+	public Connection release(Connection connection) {
+		Checkout checkout = (Checkout) Proxy.getInvocationHandler(connection);
+		if (!checkout.released.compareAndSet(false, true)) {
+			return null;
+		}
+		checkouts.remove(connection);
+		return checkout.target;
+	}
+
+	/**
+	 * @return number of connections currently checked out
+	 */
+	public int getCheckedOut() {
+		return checkouts.size();
+	}
+
+	/**
+	 * <code>check</code>
+	 * Reports, and if configured reclaims, connections held past the threshold
+	 *
+	 * @return number of connections held past the threshold
+	 */
+	public int check() {
+		long now = System.currentTimeMillis();
+		int leaks = 0;
+		for (Checkout checkout : checkouts.values()) {
+			long held = now - checkout.checkoutTime;
+			if (held < thresholdMillis) {
+				continue;
+			}
+			leaks++;
+			if (reclaim) {
+				if (checkout.released.compareAndSet(false, true)) {
+					checkouts.remove(checkout.proxy);
+					checkout.reclaimed = true;
+					log.warn("Reclaiming Stardog connection held for " + held + "ms, obtained at", checkout.stack);
+					try {
+						reclaimer.accept(checkout.target);
+					} catch (RuntimeException e) {
+						log.error("Error reclaiming leaked Stardog connection", e);
+					}
+				}
+			} else if (!checkout.reported) {
+				checkout.reported = true;
+				log.warn("Stardog connection held for " + held + "ms, possible leak, obtained at", checkout.stack);
+			}
+		}
+		return leaks;
+	}
+
+	/**
+	 * State of one checkout, also the invocation handler of the proxy handed to the caller
+	 */
+	private class Checkout implements InvocationHandler {
+
+		private final Connection target;
+
+		private final long checkoutTime = System.currentTimeMillis();
+
+		private final Throwable stack = new Throwable("Connection checkout");
+
+		private final AtomicBoolean released = new AtomicBoolean(false);
+
+		private volatile boolean reclaimed = false;
+
+		private volatile boolean reported = false;
+
+		private Connection proxy;
+
+		Checkout(Connection target) {
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("equals") && args != null && args.length == 1) {
+				return proxy == args[0];
+			}
+			if (name.equals("hashCode") && (args == null || args.length == 0)) {
+				return System.identityHashCode(proxy);
+			}
+			if (name.equals("close") && (args == null || args.length == 0)) {
+				Connection connection = release((Connection) proxy);
+				if (connection != null) {
+					releaser.accept(connection);
+				}
+				return null;
+			}
+			if (reclaimed) {
+				throw new IllegalStateException("Stardog connection was reclaimed by leak detection after " + thresholdMillis + "ms");
+			}
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
@@ -0,0 +1,47 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import com.complexible.common.base.Option;
+
+/**
+ * ConnectionOptions
+ * 
+ * Settings that can be given in the connectionProperties of a DataSourceFactoryBean or
+ * RoutingDataSource, e.g.
+ * 
+ * <pre>
+ * &lt;property name="connectionProperties"&gt;
+ *     &lt;props&gt;
+ *         &lt;prop key="query.timeout"&gt;30s&lt;/prop&gt;
+ *     &lt;/props&gt;
+ * &lt;/property&gt;
+ * </pre>
+ * 
+ * These are applied by this module, the SNARL API gives no access to the settings of the
+ * client's HTTP transport.  Durations are in milliseconds, or a number followed by ms, s,
+ * m or h.  Unknown keys are logged and ignored.
+ */
+public final class ConnectionOptions {
+
+	/**
+	 * Timeout SnarlTemplate sets on every query, in milliseconds, 0 leaves the server's
+	 * query.timeout in effect, see DataSource.setQueryTimeout
+	 */
+	public static final Option<Long> QUERY_TIMEOUT = Option.create("query.timeout", 0L);
+
+	private ConnectionOptions() { }
+}
@@ -0,0 +1,64 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+/**
+ * ConnectionPriorityHolder
+ * 
+ * Associates a ConnectionPriority with the current thread, similar to Spring's
+ * LocaleContextHolder.  Connections obtained from a DataSource without an explicit
+ * priority use the priority held here, NORMAL when none is set.
+ */
+public abstract class ConnectionPriorityHolder {
+
+	private static final ThreadLocal<ConnectionPriority> priorityHolder = new ThreadLocal<ConnectionPriority>();
+
+	/**
+	 * @return the priority of the current thread, NORMAL when none is set
+	 */
+	public static ConnectionPriority getPriority() {
+		return getPriority(ConnectionPriority.NORMAL);
+	}
+
+	/**
+	 * @param defaultPriority priority to use when the current thread has none, e.g. the
+	 * priority configured on a SnarlTemplate
+	 * @return the priority of the current thread, the default when none is set
+	 */
+	public static ConnectionPriority getPriority(ConnectionPriority defaultPriority) {
+		ConnectionPriority priority = priorityHolder.get();
+		return priority != null ? priority : defaultPriority;
+	}
+
+	/**
+	 * @param priority the priority of the current thread, null resets it
+	 */
+	public static void setPriority(ConnectionPriority priority) {
+		if (priority == null) {
+			priorityHolder.remove();
+		} else {
+			priorityHolder.set(priority);
+		}
+	}
+
+	/**
+	 * <code>resetPriority</code>
+	 * Clears the priority of the current thread
+	 */
+	public static void resetPriority() {
+		priorityHolder.remove();
+	}
+}
@@ -0,0 +1,30 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import com.complexible.stardog.api.Connection;
+
+/**
+ * ConnectionViewCallback
+ * 
+ * Allows implementations access to a connection viewed as a different type of
+ * connection (see Connection#as), for the length of the callback
+ */
+public interface ConnectionViewCallback<C extends Connection, T> {
+
+	T doWithConnection(C connection);
+
+}
@@ -15,7 +15,15 @@
 */
 package com.stardog.ext.spring;
 
-import java.util.Arrays;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +42,10 @@ import com.complexible.stardog.api.ConnectionPoolConfig;
  * Also will serve as a wrapper to weave in Spring transaction support 
  * and other Spring capabilities outside of the core Stardog connection API
  * 
+ * The pool can be replaced while in use, see reconfigure: new checkouts go to the
+ * new pool, and the old one is shut down once its connections have been returned.
+ * Connections are handed out as proxies that remember the pool they came from.
+ * 
  * @author Clark and Parsia, LLC
  * @author Al Baker
  *
@@ -42,11 +54,53 @@ public class DataSource {
 
 	final Logger log = LoggerFactory.getLogger(DataSource.class);
 	
-	private ConnectionPool pool;
+	private volatile PoolGeneration generation;
+
+	private final List<PoolGeneration> draining = new CopyOnWriteArrayList<PoolGeneration>();
+
 	
 	private ConnectionConfiguration connectionConfig;
 	
 	private ConnectionPoolConfig poolConfig;
+
+	private long leakDetectionTime = 0;
+
+	private TimeUnit leakDetectionTimeUnit = TimeUnit.SECONDS;
+
+	private boolean reclaimLeakedConnections = false;
+
+	private ConnectionLeakDetector leakDetector;
+
+	private AdaptivePoolSizer poolSizer;
+
+	private PriorityConnectionGate priorityGate;
+
+	private long keepAliveTime = 0;
+
+	private TimeUnit keepAliveTimeUnit = TimeUnit.SECONDS;
+
+	private int keepAliveConnections = 10;
+
+	private String validationQuery = "ASK {}";
+
+	private ConnectionKeepAlive keepAlive;
+
+	private volatile long lastActivity = System.nanoTime();
+
+	private int connectionCacheStripes = 0;
+
+	private long connectionCacheTime = 1000;
+
+	private long queryTimeout = 0;
+
+	private ResultFormat resultFormat = ResultFormat.DEFAULT;
+
+	// describe the connections in the keys of the PersistentResultCache
+	private String server;
+
+	private String database;
+
+	private boolean reasoning = false;
 	
 	public DataSource() { }
 	
@@ -65,15 +119,59 @@ public class DataSource {
 		if (poolConfig == null) {
 			poolConfig = ConnectionPoolConfig.using(connectionConfig);
 		}
-		pool = poolConfig.create();
+		generation = new PoolGeneration(createPool(poolConfig));
+		if (leakDetectionTime > 0 && leakDetector == null) {
+			log.debug("Enabling Stardog connection leak detection");
+			leakDetector = new ConnectionLeakDetector(leakDetectionTime, leakDetectionTimeUnit,
+					reclaimLeakedConnections, this::returnConnection, this::reclaimConnection);
+			leakDetector.start();
+		}
+		if (keepAliveTime > 0 && keepAlive == null) {
+			log.debug("Enabling Stardog connection keep-alive");
+			keepAlive = new ConnectionKeepAlive(this, keepAliveTime, keepAliveTimeUnit, keepAliveConnections, validationQuery);
+			keepAlive.start();
+		}
+	}
+
+	/*
+	 * Creates the pool of one generation, overridden by unit tests to run without a server
+	 */
+	ConnectionPool createPool(ConnectionPoolConfig configuration) {
+		return configuration.create();
 	}
 
 	public void setConnectionReasoning(boolean reasoningType) {
-		this.releaseConnection(getConnection());
-		this.destroyPool();
+		reasoning = reasoningType;
 		connectionConfig.reasoning(reasoningType);
-		poolConfig = ConnectionPoolConfig.using(connectionConfig);
-		pool = poolConfig.create();
+		reconfigure(connectionConfig, ConnectionPoolConfig.using(connectionConfig));
+	}
+
+	/**
+	 * <code>reconfigure</code>
+	 * Replaces the pool without interrupting callers: the new pool is created first, new
+	 * checkouts go to it, and the old pool is shut down once the connections checked out
+	 * of it have been returned
+	 * 
+	 * @param configuration new connection configuration, e.g. server, database, credentials
+	 * @param poolConfiguration new pool configuration, e.g. size and expiration
+	 */
+	public synchronized void reconfigure(ConnectionConfiguration configuration, ConnectionPoolConfig poolConfiguration) {
+		log.debug("Replacing Stardog connection pool");
+		PoolGeneration next;
+		try {
+			next = new PoolGeneration(createPool(poolConfiguration));
+		} catch (StardogException e) {
+			log.error("Error creating Stardog pool, keeping the current pool", e);
+			throw new RuntimeException(e);
+		}
+		connectionConfig = configuration;
+		poolConfig = poolConfiguration;
+		PoolGeneration previous = generation;
+		generation = next;
+		if (previous != null) {
+			draining.add(previous);
+			previous.retire();
+		}
 	}
 	
 	/**
@@ -82,15 +180,37 @@ public class DataSource {
 	 * 
 	 * Also serves as a place to weave in Spring transaction support
 	 * 
+	 * Uses the priority of the current thread, see ConnectionPriorityHolder
+	 * 
 	 * @return Stardog Connection
 	 */
 	public Connection getConnection() { 
+		return getConnection(ConnectionPriorityHolder.getPriority());
+	}
+
+	/**
+	 * <code>getConnection</code>
+	 * @param priority priority of the checkout, only used when a PriorityConnectionGate is set
+	 * @return Stardog Connection
+	 */
+	public Connection getConnection(ConnectionPriority priority) { 
 		try {
-			if (pool == null) {
+			if (generation == null) {
 				log.error("Stardog pool is null");
 				throw new RuntimeException("Stardog pool is null");
 			}
-			return pool.obtain();
+			acquirePermit(priority);
+			Connection connection;
+			try {
+				connection = obtainPooledConnection();
+			} catch (RuntimeException e) {
+				releasePermit();
+				throw e;
+			}
+			if (leakDetector != null) {
+				return leakDetector.track(connection);
+			}
+			return connection;
 		} catch (StardogException e) {
 			log.error("Error obtaining connection from Stardog pool", e);
 			throw new RuntimeException(e);
@@ -102,23 +222,208 @@ public class DataSource {
 	 * @param connection Stardog Connection
 	 */
 	public void releaseConnection(Connection connection) {
+		if (leakDetector != null && leakDetector.isTracked(connection)) {
+			connection = leakDetector.release(connection);
+			if (connection == null) {
+				// already released, or reclaimed by the leak detector
+				return;
+			}
+		}
+		returnConnection(connection);
+	}
+
+	/**
+	 * <code>invalidateConnection</code>
+	 * Returns a connection that must not be handed out again, e.g. one left with an open
+	 * transaction; it is closed and dropped from the pool
+	 * 
+	 * @param connection Stardog Connection
+	 */
+	public void invalidateConnection(Connection connection) {
+		if (leakDetector != null && leakDetector.isTracked(connection)) {
+			connection = leakDetector.release(connection);
+			if (connection == null) {
+				return;
+			}
+		}
+		returnCheckout(connection, false);
+	}
+
+	private void returnConnection(Connection connection) {
+		returnCheckout(connection, true);
+	}
+
+	/*
+	 * A leaked connection may be left mid-transaction by its owner, so it is rolled back
+	 * and evicted instead of being handed to the next borrower
+	 */
+	private void reclaimConnection(Connection connection) {
 		try {
-			if (pool != null)
-				pool.release(connection);
-		} catch (StardogException e) {
-			log.error("Error releasing connection from Stardog pool", e);
-			throw new RuntimeException(e);
+			connection.rollback();
+		} catch (RuntimeException e) {
+			log.debug("Error rolling back reclaimed Stardog connection", e);
 		}
+		returnCheckout(connection, false);
 	}
 
-	public void destroyPool() {
+	/*
+	 * Returns a checkout to its pool, or evicts it when not valid, and releases its permits.
+	 * Only the first return of a checkout counts, e.g. a close() after releaseConnection is
+	 * ignored
+	 */
+	private void returnCheckout(Connection connection, boolean valid) {
+		PooledConnection pooled = checkedOut(connection);
+		if (pooled == null) {
+			log.warn("Ignoring return of a Stardog connection not obtained from this data source, or already returned");
+			return;
+		}
+		PoolGeneration owner = pooled.owner;
 		try {
-			if (pool != null)
-				pool.shutdown();
+			if (valid) {
+				owner.release(pooled.target);
+			} else {
+				owner.evict(pooled.target);
+			}
 		} catch (StardogException e) {
-			log.error("Error shutting down Stardog pool", e);
+			log.error("Error returning connection to Stardog pool", e);
+			if (valid) {
+				throw new RuntimeException(e);
+			}
+		} finally {
+			owner.checkin();
+			releasePermit();
+		}
+	}
+
+	/*
+	 * Raw pool access, the caller holds the permits, which returnCheckout releases
+	 */
+	Connection obtainPooledConnection() {
+		long now = System.nanoTime();
+		// only write when it moves, so busy threads do not all dirty the same cache line
+		if (now - lastActivity > 1000000L) {
+			lastActivity = now;
+		}
+		for (;;) {
+			PoolGeneration current = generation;
+			if (current == null) {
+				throw new RuntimeException("Stardog pool is null");
+			}
+			current.inUse.incrementAndGet();
+			if (current.retired) {
+				// replaced between the read and the increment, use the new pool
+				current.checkin();
+				continue;
+			}
+			Connection connection;
+			try {
+				connection = current.obtain();
+			} catch (RuntimeException e) {
+				current.checkin();
+				throw e;
+			}
+			return current.wrap(connection);
+		}
+	}
+
+	/*
+	 * Checkout for the ConnectionKeepAlive maintenance task.  Takes a LOW priority permit
+	 * without waiting, and never the last free one, so maintenance cannot queue ahead of or
+	 * crowd out regular checkouts.  Returns null when no permit is spare.
+	 */
+	Connection obtainMaintenanceConnection() {
+		if (!tryAcquireSparePermit()) {
+			return null;
+		}
+		try {
+			return obtainPooledConnection();
+		} catch (RuntimeException e) {
+			releasePermit();
+			throw e;
+		}
+	}
+
+	/*
+	 * Returns a maintenance checkout, a connection that failed validation is evicted
+	 * instead of going back to the pool
+	 */
+	void releaseMaintenanceConnection(Connection connection, boolean valid) {
+		returnCheckout(connection, valid);
+	}
+
+	/*
+	 * The checkout behind a connection handed out by this data source, marked as returned,
+	 * or null if it is not ours or was already returned
+	 */
+	private PooledConnection checkedOut(Connection connection) {
+		if (connection == null || !Proxy.isProxyClass(connection.getClass())) {
+			return null;
+		}
+		InvocationHandler handler = Proxy.getInvocationHandler(connection);
+		if (!(handler instanceof PooledConnection)) {
+			return null;
+		}
+		PooledConnection pooled = (PooledConnection) handler;
+		return pooled.owner.dataSource() == this && pooled.released.compareAndSet(false, true) ? pooled : null;
+	}
+
+	private boolean tryAcquireSparePermit() {
+		if (priorityGate != null && !priorityGate.tryAcquireSpare(ConnectionPriority.LOW)) {
+			return false;
+		}
+		if (poolSizer != null && !poolSizer.tryAcquireSpare()) {
+			if (priorityGate != null) {
+				priorityGate.release();
+			}
+			return false;
+		}
+		return true;
+	}
+
+	private void acquirePermit(ConnectionPriority priority) {
+		if (poolSizer == null && priorityGate == null) {
+			return;
+		}
+		try {
+			if (priorityGate != null && !priorityGate.acquire(priority)) {
+				log.error("Timed out waiting for a " + priority + " priority Stardog connection");
+				throw new RuntimeException("Timed out waiting for a Stardog connection");
+			}
+			try {
+				if (poolSizer != null && !poolSizer.acquire()) {
+					log.error("Timed out waiting for a Stardog connection, limit " + poolSizer.getLimit());
+					throw new RuntimeException("Timed out waiting for a Stardog connection");
+				}
+			} catch (RuntimeException | InterruptedException e) {
+				if (priorityGate != null) {
+					priorityGate.release();
+				}
+				throw e;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void releasePermit() {
+		if (poolSizer != null) {
+			poolSizer.release();
+		}
+		if (priorityGate != null) {
+			priorityGate.release();
+		}
+	}
+
+	public synchronized void destroyPool() {
+		PoolGeneration current = generation;
+		generation = null;
+		if (current != null) {
+			current.shutdown();
+		}
+		for (PoolGeneration previous : draining) {
+			previous.shutdown();
 		}
-		pool = null;
 	}
 
 	/**
@@ -126,9 +431,451 @@ public class DataSource {
 	 * Called by Spring 
 	 */
 	public void destroy() {
+		if (keepAlive != null) {
+			keepAlive.stop();
+			keepAlive = null;
+		}
+		if (poolSizer != null) {
+			poolSizer.stop();
+		}
+		if (leakDetector != null) {
+			leakDetector.stop();
+			leakDetector = null;
+		}
 		this.destroyPool();
 		poolConfig = null;
 		connectionConfig = null;
 	}
-	
+
+	/**
+	 * <code>checkForLeaks</code>
+	 * Reports, and if configured reclaims, connections held past the leak detection time
+	 * 
+	 * @return number of connections held past the leak detection time, 0 if detection is disabled
+	 */
+	public int checkForLeaks() {
+		return leakDetector == null ? 0 : leakDetector.check();
+	}
+
+	/**
+	 * @return number of tracked connections currently checked out, 0 if detection is disabled
+	 */
+	public int getCheckedOutConnections() {
+		return leakDetector == null ? 0 : leakDetector.getCheckedOut();
+	}
+
+	/**
+	 * @return number of replaced pools still waiting for their connections to be returned
+	 */
+	public int getDrainingPools() {
+		return draining.size();
+	}
+
+	/**
+	 * @return the connectionConfig currently used for new checkouts
+	 */
+	public ConnectionConfiguration getConnectionConfig() {
+		return connectionConfig;
+	}
+
+	/**
+	 * @return the poolConfig currently used for new checkouts
+	 */
+	public ConnectionPoolConfig getPoolConfig() {
+		return poolConfig;
+	}
+
+	/**
+	 * @return nanoseconds since a connection was last obtained from the pool
+	 */
+	public long getIdleNanos() {
+		return System.nanoTime() - lastActivity;
+	}
+
+	/**
+	 * @return the keepAliveTime
+	 */
+	public long getKeepAliveTime() {
+		return keepAliveTime;
+	}
+
+	/**
+	 * Quiet time after which idle connections are validated, 0 disables keep-alive
+	 * 
+	 * @param keepAliveTime the keepAliveTime to set
+	 */
+	public void setKeepAliveTime(long keepAliveTime) {
+		this.keepAliveTime = keepAliveTime;
+	}
+
+	/**
+	 * @return the keepAliveTimeUnit
+	 */
+	public TimeUnit getKeepAliveTimeUnit() {
+		return keepAliveTimeUnit;
+	}
+
+	/**
+	 * @param keepAliveTimeUnit the keepAliveTimeUnit to set
+	 */
+	public void setKeepAliveTimeUnit(TimeUnit keepAliveTimeUnit) {
+		this.keepAliveTimeUnit = keepAliveTimeUnit;
+	}
+
+	/**
+	 * @return the keepAliveConnections
+	 */
+	public int getKeepAliveConnections() {
+		return keepAliveConnections;
+	}
+
+	/**
+	 * @param keepAliveConnections number of idle connections validated per keep-alive run
+	 */
+	public void setKeepAliveConnections(int keepAliveConnections) {
+		this.keepAliveConnections = keepAliveConnections;
+	}
+
+	/**
+	 * @return the validationQuery
+	 */
+	public String getValidationQuery() {
+		return validationQuery;
+	}
+
+	/**
+	 * @param validationQuery SPARQL ASK query used to validate idle connections
+	 */
+	public void setValidationQuery(String validationQuery) {
+		this.validationQuery = validationQuery;
+	}
+
+	/**
+	 * @return the connectionCacheStripes
+	 */
+	public int getConnectionCacheStripes() {
+		return connectionCacheStripes;
+	}
+
+	/**
+	 * Number of slots in the ConnectionCache in front of the pool, 0 disables the cache
+	 * 
+	 * @param connectionCacheStripes the connectionCacheStripes to set
+	 */
+	public void setConnectionCacheStripes(int connectionCacheStripes) {
+		this.connectionCacheStripes = connectionCacheStripes;
+	}
+
+	/**
+	 * @return the connectionCacheTime in milliseconds
+	 */
+	public long getConnectionCacheTime() {
+		return connectionCacheTime;
+	}
+
+	/**
+	 * How long, in milliseconds, a released connection may stay in the ConnectionCache
+	 * 
+	 * @param connectionCacheTime the connectionCacheTime to set
+	 */
+	public void setConnectionCacheTime(long connectionCacheTime) {
+		this.connectionCacheTime = connectionCacheTime;
+	}
+
+	/**
+	 * @return the queryTimeout in milliseconds
+	 */
+	public long getQueryTimeout() {
+		return queryTimeout;
+	}
+
+	/**
+	 * Timeout, in milliseconds, that SnarlTemplate sets on the queries it runs against this
+	 * DataSource, 0 leaves the server's query.timeout in effect
+	 * 
+	 * @param queryTimeout the queryTimeout to set
+	 */
+	public void setQueryTimeout(long queryTimeout) {
+		this.queryTimeout = queryTimeout;
+	}
+
+	/**
+	 * <code>getCacheScope</code>
+	 * @return server, database and reasoning setting of the connections handed out to the
+	 * current thread, part of the keys of the PersistentResultCache; empty when not set with
+	 * setEndpoint, which DataSourceFactoryBean does
+	 */
+	public String getCacheScope() {
+		return cacheScope(server, database, reasoning);
+	}
+
+	/**
+	 * <code>setEndpoint</code>
+	 * Describes the connections of this DataSource, see getCacheScope
+	 * 
+	 * @param server URL of the Stardog server
+	 * @param database Stardog database
+	 * @param reasoning whether the connections use reasoning
+	 */
+	public void setEndpoint(String server, String database, boolean reasoning) {
+		this.server = server;
+		this.database = database;
+		this.reasoning = reasoning;
+	}
+
+	static String cacheScope(String server, String database, boolean reasoning) {
+		if (server == null && database == null) {
+			return "";
+		}
+		return server + " " + database + (reasoning ? " reasoning" : "");
+	}
+
+	/**
+	 * @return the resultFormat
+	 */
+	public ResultFormat getResultFormat() {
+		return resultFormat;
+	}
+
+	/**
+	 * Encoding SnarlTemplate requests for the results of queries it runs against this
+	 * DataSource, unless the template sets its own; DEFAULT leaves it to the client
+	 * 
+	 * @param resultFormat the resultFormat to set
+	 */
+	public void setResultFormat(ResultFormat resultFormat) {
+		this.resultFormat = resultFormat;
+	}
+
+	/**
+	 * @return the priorityGate, null when checkouts are not prioritized
+	 */
+	public PriorityConnectionGate getPriorityGate() {
+		return priorityGate;
+	}
+
+	/**
+	 * @param priorityGate the priorityGate to set
+	 */
+	public void setPriorityGate(PriorityConnectionGate priorityGate) {
+		this.priorityGate = priorityGate;
+	}
+
+	/**
+	 * @return the poolSizer, null when the pool size is fixed
+	 */
+	public AdaptivePoolSizer getPoolSizer() {
+		return poolSizer;
+	}
+
+	/**
+	 * Gates checkouts through an adaptive limit, the caller is responsible for
+	 * starting the sizer's periodic adjustment
+	 * 
+	 * @param poolSizer the poolSizer to set
+	 */
+	public void setPoolSizer(AdaptivePoolSizer poolSizer) {
+		this.poolSizer = poolSizer;
+	}
+
+	/**
+	 * @return the leakDetectionTime
+	 */
+	public long getLeakDetectionTime() {
+		return leakDetectionTime;
+	}
+
+	/**
+	 * Connections held longer than this are reported as leaks, 0 disables detection
+	 * 
+	 * @param leakDetectionTime the leakDetectionTime to set
+	 */
+	public void setLeakDetectionTime(long leakDetectionTime) {
+		this.leakDetectionTime = leakDetectionTime;
+	}
+
+	/**
+	 * @return the leakDetectionTimeUnit
+	 */
+	public TimeUnit getLeakDetectionTimeUnit() {
+		return leakDetectionTimeUnit;
+	}
+
+	/**
+	 * @param leakDetectionTimeUnit the leakDetectionTimeUnit to set
+	 */
+	public void setLeakDetectionTimeUnit(TimeUnit leakDetectionTimeUnit) {
+		this.leakDetectionTimeUnit = leakDetectionTimeUnit;
+	}
+
+	/**
+	 * @return the reclaimLeakedConnections
+	 */
+	public boolean isReclaimLeakedConnections() {
+		return reclaimLeakedConnections;
+	}
+
+	/**
+	 * Connections held past the leak detection time are rolled back and closed, and their
+	 * permits released, rather than returned to the pool for reuse
+	 * 
+	 * @param reclaimLeakedConnections the reclaimLeakedConnections to set
+	 */
+	public void setReclaimLeakedConnections(boolean reclaimLeakedConnections) {
+		this.reclaimLeakedConnections = reclaimLeakedConnections;
+	}
+
+	/**
+	 * One pool, and the connection cache in front of it, along with the number of
+	 * connections checked out of it.  Once retired, it is shut down when that reaches 0.
+	 */
+	private class PoolGeneration {
+
+		private final ConnectionPool pool;
+
+		private final ConnectionCache cache;
+
+		private final AtomicInteger inUse = new AtomicInteger();
+
+		private final AtomicBoolean shutdown = new AtomicBoolean(false);
+
+		// set once the cache is drained, after which stray connections are closed instead
+		private volatile boolean poolClosed = false;
+
+		private volatile boolean retired = false;
+
+		PoolGeneration(ConnectionPool pool) {
+			this.pool = pool;
+			if (connectionCacheStripes > 0) {
+				log.debug("Enabling Stardog connection cache");
+				this.cache = new ConnectionCache(connectionCacheStripes, connectionCacheTime, TimeUnit.MILLISECONDS,
+						pool::obtain, this::releaseToPool);
+				this.cache.start();
+			} else {
+				this.cache = null;
+			}
+		}
+
+		Connection obtain() {
+			return cache != null ? cache.obtain() : pool.obtain();
+		}
+
+		void release(Connection connection) {
+			if (cache != null)
+				cache.release(connection);
+			else
+				pool.release(connection);
+		}
+
+		private void releaseToPool(Connection connection) {
+			if (!poolClosed) {
+				pool.release(connection);
+				return;
+			}
+			try {
+				connection.close();
+			} catch (RuntimeException e) {
+				log.debug("Error closing Stardog connection of a shut down pool", e);
+			}
+		}
+
+		Connection wrap(Connection connection) {
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, new PooledConnection(connection, this));
+		}
+
+		DataSource dataSource() {
+			return DataSource.this;
+		}
+
+		void evict(Connection connection) {
+			try {
+				// closed first, so the pool discards it rather than handing it out again
+				connection.close();
+			} catch (RuntimeException e) {
+				log.debug("Error closing evicted Stardog connection", e);
+			}
+			if (!poolClosed) {
+				pool.release(connection);
+			}
+		}
+
+		void checkin() {
+			if (inUse.decrementAndGet() == 0 && retired) {
+				shutdown();
+			}
+		}
+
+		void retire() {
+			retired = true;
+			if (inUse.get() == 0) {
+				shutdown();
+			}
+		}
+
+		void shutdown() {
+			if (!shutdown.compareAndSet(false, true)) {
+				return;
+			}
+			draining.remove(this);
+			try {
+				// parked connections go back to the pool, which closes them on shutdown
+				if (cache != null) {
+					cache.stop();
+					cache.drain();
+				}
+				poolClosed = true;
+				pool.shutdown();
+			} catch (StardogException e) {
+				log.error("Error shutting down Stardog pool", e);
+			}
+		}
+	}
+
+	/**
+	 * Handler of the connections handed out by the pool.  It carries the generation the
+	 * connection came from, so a release finds its pool without a shared lookup table.
+	 * close() releases the connection, and a released connection can no longer be used.
+	 */
+	private static final class PooledConnection implements InvocationHandler {
+
+		private final Connection target;
+
+		private final PoolGeneration owner;
+
+		private final AtomicBoolean released = new AtomicBoolean(false);
+
+		PooledConnection(Connection target, PoolGeneration owner) {
+			this.target = target;
+			this.owner = owner;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("equals") && args != null && args.length == 1) {
+				return proxy == args[0];
+			}
+			if (name.equals("hashCode") && (args == null || args.length == 0)) {
+				return System.identityHashCode(proxy);
+			}
+			if (name.equals("close") && (args == null || args.length == 0)) {
+				// try-with-resources returns the connection, as releaseConnection does
+				owner.dataSource().releaseConnection((Connection) proxy);
+				return null;
+			}
+			if (released.get()) {
+				if (name.equals("isOpen")) {
+					return false;
+				}
+				throw new IllegalStateException("Stardog connection was already returned to the pool");
+			}
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
 }
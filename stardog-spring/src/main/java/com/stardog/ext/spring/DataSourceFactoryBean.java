@@ -15,6 +15,7 @@
 */
 package com.stardog.ext.spring;
 
+import com.complexible.common.base.Options;
 import com.complexible.common.base.Pair;
 import com.complexible.stardog.api.ConnectionCredentials;
 import com.complexible.stardog.api.ConnectionConfiguration;
@@ -67,8 +68,23 @@ public class DataSourceFactoryBean implements FactoryBean<DataSource>, Initializ
 	private String to;
 
 	private Supplier<ConnectionCredentials> supplier;
+
+	/**
+	 * Properties used by the CachingCredentialSupplier wrapped around the supplier,
+	 * disabled when 0
+	 */
+	private long credentialCacheTime = 0;
+
+	// negative for a tenth of credentialCacheTime
+	private long credentialRefreshAhead = -1;
+
+	private TimeUnit credentialCacheTimeUnit = TimeUnit.SECONDS;
+
+	private CachingCredentialSupplier cachingSupplier;
 	
 	private Properties connectionProperties;
+
+	private ResultFormat resultFormat = ResultFormat.DEFAULT;
 	
 	/**
 	 * Properties used by the ConnectionPoolConfig
@@ -96,6 +112,53 @@ public class DataSourceFactoryBean implements FactoryBean<DataSource>, Initializ
 	
 	private boolean noExpiration = false;
 
+	/**
+	 * Properties used by the AdaptivePoolSizer, which moves the number of connections
+	 * that may be checked out between minPool and maxPool
+	 */
+	private boolean adaptivePoolSizing = false;
+
+	private long poolSizingInterval = 5;
+
+	private TimeUnit poolSizingIntervalUnit = TimeUnit.SECONDS;
+
+	private long growWaitTime = 10;
+
+	private TimeUnit growWaitTimeUnit = TimeUnit.MILLISECONDS;
+
+	/**
+	 * Properties used by the PriorityConnectionGate, which reserves a share of maxPool
+	 * for HIGH priority checkouts
+	 */
+	private boolean priorityAcquisition = false;
+
+	private double highPriorityReserve = 0.2;
+
+	/**
+	 * Properties used by the DataSource connection cache, disabled when 0 stripes
+	 */
+	private int connectionCacheStripes = 0;
+
+	private long connectionCacheTime = 1000;
+
+	/**
+	 * Properties used by the DataSource keep-alive of idle connections, disabled when 0
+	 */
+	private long keepAliveTime = 0;
+
+	private TimeUnit keepAliveTimeUnit = TimeUnit.SECONDS;
+
+	private String validationQuery = "ASK {}";
+
+	/**
+	 * Properties used by the DataSource connection leak detection, disabled when 0
+	 */
+	private long leakDetectionTime = 0;
+
+	private TimeUnit leakDetectionTimeUnit = TimeUnit.SECONDS;
+
+	private boolean reclaimLeakedConnections = false;
+
     private Provider provider;
 	
 	
@@ -121,12 +184,23 @@ public class DataSourceFactoryBean implements FactoryBean<DataSource>, Initializ
 		return true;
 	}
 
+	/**
+	 * @return the DataSource created in afterPropertiesSet, null before
+	 */
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
 	/**
 	 * <code>destroy</code>
 	 * Called by Spring 
 	 */
 	public void destroy() { 
 		log.debug("Destroying dataSourceFactory bean");
+		if (cachingSupplier != null) {
+			cachingSupplier.stop();
+			cachingSupplier = null;
+		}
 		dataSource.destroy();
 		dataSource = null;
 	}
@@ -146,17 +220,6 @@ public class DataSourceFactoryBean implements FactoryBean<DataSource>, Initializ
 	@Override
 	public void afterPropertiesSet() throws Exception {
 		log.debug("Initializing Stardog connection configuration");
-		
-		ConnectionConfiguration connectionConfig;
-		
-		ConnectionPoolConfig poolConfig;
-		
-		connectionConfig = ConnectionConfiguration.to(to);
-		
-		if (url != null) { 
-			connectionConfig = connectionConfig.server(url);
-		}
-
 
         if (provider != null) {
 			if (supplier != null) {
@@ -166,32 +229,132 @@ public class DataSourceFactoryBean implements FactoryBean<DataSource>, Initializ
 			}
         }
 
+		if (supplier != null && credentialCacheTime > 0) {
+			long refreshAhead = credentialRefreshAhead < 0 ? credentialCacheTime / 10 : credentialRefreshAhead;
+			cachingSupplier = new CachingCredentialSupplier(supplier, credentialCacheTime, refreshAhead, credentialCacheTimeUnit);
+			cachingSupplier.start();
+		}
+
+		Options options = createOptions();
+
+		ConnectionConfiguration connectionConfig = createConnectionConfiguration(options);
+		
+		ConnectionPoolConfig poolConfig = createPoolConfiguration(connectionConfig);
+		
+		dataSource = new DataSource(connectionConfig, poolConfig);
+		applyQuerySettings(dataSource, options);
+
+		if (adaptivePoolSizing) {
+			AdaptivePoolSizer poolSizer = new AdaptivePoolSizer(minPool, maxPool, growWaitTime, growWaitTimeUnit);
+			poolSizer.setBlockCapacityTime(blockCapacityTime, blockCapacityTimeUnit);
+			poolSizer.setFailAtCapacity(failAtCapacity);
+			poolSizer.setGrowAtCapacity(growAtCapacity);
+			poolSizer.start(poolSizingInterval, poolSizingIntervalUnit);
+			dataSource.setPoolSizer(poolSizer);
+		}
+
+		if (priorityAcquisition) {
+			PriorityConnectionGate priorityGate = new PriorityConnectionGate(maxPool, highPriorityReserve);
+			priorityGate.setBlockCapacityTime(failAtCapacity ? 0 : blockCapacityTime, blockCapacityTimeUnit);
+			dataSource.setPriorityGate(priorityGate);
+		}
+
+		dataSource.setLeakDetectionTime(leakDetectionTime);
+		dataSource.setLeakDetectionTimeUnit(leakDetectionTimeUnit);
+		dataSource.setReclaimLeakedConnections(reclaimLeakedConnections);
+		dataSource.setConnectionCacheStripes(connectionCacheStripes);
+		dataSource.setConnectionCacheTime(connectionCacheTime);
+		dataSource.setKeepAliveTime(keepAliveTime);
+		dataSource.setKeepAliveTimeUnit(keepAliveTimeUnit);
+		dataSource.setKeepAliveConnections(minPool);
+		dataSource.setValidationQuery(validationQuery);
+		dataSource.afterPropertiesSet();
+		
+	}
+
+	/**
+	 * <code>reconfigure</code>
+	 * 
+	 * Applies the current connection and pool properties to the live DataSource, which
+	 * switches new checkouts to a new pool and drains the old one, see DataSource.reconfigure
+	 * 
+	 * The limits of adaptivePoolSizing and priorityAcquisition are fixed when the bean is
+	 * initialized and are not changed here
+	 */
+	public synchronized void reconfigure() {
+		if (dataSource == null) {
+			throw new IllegalStateException("DataSource is not initialized");
+		}
+		log.debug("Reconfiguring Stardog connection pool");
+		Options options = createOptions();
+		ConnectionConfiguration connectionConfig = createConnectionConfiguration(options);
+		dataSource.reconfigure(connectionConfig, createPoolConfiguration(connectionConfig));
+		applyQuerySettings(dataSource, options);
+	}
+
+	/*
+	 * Parses the connectionProperties, see ConnectionOptions
+	 */
+	Options createOptions() {
+		List<Pair<String, String>> aOptionsList = new ArrayList<Pair<String, String>>();
 		if (connectionProperties != null) {
-			List<Pair<String, String>> aOptionsList = new ArrayList<Pair<String, String>>();
 			for (String key : connectionProperties.stringPropertyNames()) {
 				aOptionsList.add(Pair.create(key, connectionProperties.getProperty(key)));
 			}
-			connectionConfig.with((new OptionParser()).getOptions(aOptionsList));
 		}
+		return (new OptionParser()).getOptions(aOptionsList);
+	}
+
+	/*
+	 * Sets the query settings SnarlTemplate reads from the DataSource, also used by
+	 * RoutingDataSource for itself
+	 */
+	void applyQuerySettings(DataSource target, Options options) {
+		target.setQueryTimeout(options.get(ConnectionOptions.QUERY_TIMEOUT));
+		target.setResultFormat(resultFormat == null ? ResultFormat.DEFAULT : resultFormat);
+		target.setEndpoint(url, to, reasoningType);
+	}
+
+	private ConnectionConfiguration createConnectionConfiguration(Options options) {
+		ConnectionConfiguration connectionConfig = ConnectionConfiguration.to(to);
+		
+		if (url != null) { 
+			connectionConfig = connectionConfig.server(url);
+		}
+
+		connectionConfig.with(options);
 
-		if (supplier != null) {
+		if (cachingSupplier != null) {
+			connectionConfig = connectionConfig.credentialSupplier(cachingSupplier);
+		} else if (supplier != null) {
 			connectionConfig = connectionConfig.credentialSupplier(supplier);
 		} else {
 			connectionConfig = connectionConfig.credentials(username, password);
 		}
 
 		connectionConfig.reasoning(reasoningType);
+		return connectionConfig;
+	}
 
-		poolConfig = ConnectionPoolConfig
+	private ConnectionPoolConfig createPoolConfiguration(ConnectionConfiguration connectionConfig) {
+		ConnectionPoolConfig poolConfig = ConnectionPoolConfig
 				.using(connectionConfig) 
 				.minPool(minPool) 
-				.maxPool(maxPool) 
-				.expiration(expirationTime, expirationTimeUnit) 
-				.blockAtCapacity(blockCapacityTime, blockCapacityTimeUnit); 
-		
-		dataSource = new DataSource(connectionConfig, poolConfig);
-		dataSource.afterPropertiesSet();
-		
+				.maxPool(maxPool)
+				.maxIdle(maxIdle);
+
+		if (noExpiration) {
+			poolConfig = poolConfig.noExpiration();
+		} else {
+			poolConfig = poolConfig.expiration(expirationTime, expirationTimeUnit);
+		}
+
+		if (failAtCapacity) {
+			poolConfig = poolConfig.failAtCapacity();
+		} else {
+			poolConfig = poolConfig.blockAtCapacity(blockCapacityTime, blockCapacityTimeUnit);
+		}
+		return poolConfig;
 	}
 
 	
@@ -395,6 +558,224 @@ public class DataSourceFactoryBean implements FactoryBean<DataSource>, Initializ
 		this.noExpiration = noExpiration;
 	}
 
+	/**
+	 * @return the adaptivePoolSizing
+	 */
+	public boolean isAdaptivePoolSizing() {
+		return adaptivePoolSizing;
+	}
+
+	/**
+	 * Moves the number of connections that may be checked out between minPool and maxPool.
+	 * The limit starts at minPool: after a quiet period a burst of checkouts waits up to
+	 * growWaitTime before the limit is raised to the number of connections in use plus the
+	 * callers waiting, and idle capacity is given back a tenth per poolSizingInterval.
+	 * 
+	 * @param adaptivePoolSizing the adaptivePoolSizing to set
+	 */
+	public void setAdaptivePoolSizing(boolean adaptivePoolSizing) {
+		this.adaptivePoolSizing = adaptivePoolSizing;
+	}
+
+	/**
+	 * @return the poolSizingInterval
+	 */
+	public long getPoolSizingInterval() {
+		return poolSizingInterval;
+	}
+
+	/**
+	 * @param poolSizingInterval the poolSizingInterval to set
+	 */
+	public void setPoolSizingInterval(long poolSizingInterval) {
+		this.poolSizingInterval = poolSizingInterval;
+	}
+
+	/**
+	 * @return the poolSizingIntervalUnit
+	 */
+	public TimeUnit getPoolSizingIntervalUnit() {
+		return poolSizingIntervalUnit;
+	}
+
+	/**
+	 * @param poolSizingIntervalUnit the poolSizingIntervalUnit to set
+	 */
+	public void setPoolSizingIntervalUnit(TimeUnit poolSizingIntervalUnit) {
+		this.poolSizingIntervalUnit = poolSizingIntervalUnit;
+	}
+
+	/**
+	 * @return the growWaitTime
+	 */
+	public long getGrowWaitTime() {
+		return growWaitTime;
+	}
+
+	/**
+	 * How long a checkout waits before the AdaptivePoolSizer raises the limit to the demand,
+	 * and the average wait above which the periodic adjustment grows it
+	 * 
+	 * @param growWaitTime the growWaitTime to set
+	 */
+	public void setGrowWaitTime(long growWaitTime) {
+		this.growWaitTime = growWaitTime;
+	}
+
+	/**
+	 * @return the growWaitTimeUnit
+	 */
+	public TimeUnit getGrowWaitTimeUnit() {
+		return growWaitTimeUnit;
+	}
+
+	/**
+	 * @param growWaitTimeUnit the growWaitTimeUnit to set
+	 */
+	public void setGrowWaitTimeUnit(TimeUnit growWaitTimeUnit) {
+		this.growWaitTimeUnit = growWaitTimeUnit;
+	}
+
+	/**
+	 * @return the priorityAcquisition
+	 */
+	public boolean isPriorityAcquisition() {
+		return priorityAcquisition;
+	}
+
+	/**
+	 * @param priorityAcquisition the priorityAcquisition to set
+	 */
+	public void setPriorityAcquisition(boolean priorityAcquisition) {
+		this.priorityAcquisition = priorityAcquisition;
+	}
+
+	/**
+	 * @return the highPriorityReserve
+	 */
+	public double getHighPriorityReserve() {
+		return highPriorityReserve;
+	}
+
+	/**
+	 * @param highPriorityReserve share of maxPool reserved for HIGH priority, 0.0 to 1.0
+	 */
+	public void setHighPriorityReserve(double highPriorityReserve) {
+		this.highPriorityReserve = highPriorityReserve;
+	}
+
+	/**
+	 * @return the connectionCacheStripes
+	 */
+	public int getConnectionCacheStripes() {
+		return connectionCacheStripes;
+	}
+
+	/**
+	 * @param connectionCacheStripes the connectionCacheStripes to set
+	 */
+	public void setConnectionCacheStripes(int connectionCacheStripes) {
+		this.connectionCacheStripes = connectionCacheStripes;
+	}
+
+	/**
+	 * @return the connectionCacheTime
+	 */
+	public long getConnectionCacheTime() {
+		return connectionCacheTime;
+	}
+
+	/**
+	 * @param connectionCacheTime the connectionCacheTime to set, in milliseconds
+	 */
+	public void setConnectionCacheTime(long connectionCacheTime) {
+		this.connectionCacheTime = connectionCacheTime;
+	}
+
+	/**
+	 * @return the keepAliveTime
+	 */
+	public long getKeepAliveTime() {
+		return keepAliveTime;
+	}
+
+	/**
+	 * @param keepAliveTime the keepAliveTime to set
+	 */
+	public void setKeepAliveTime(long keepAliveTime) {
+		this.keepAliveTime = keepAliveTime;
+	}
+
+	/**
+	 * @return the keepAliveTimeUnit
+	 */
+	public TimeUnit getKeepAliveTimeUnit() {
+		return keepAliveTimeUnit;
+	}
+
+	/**
+	 * @param keepAliveTimeUnit the keepAliveTimeUnit to set
+	 */
+	public void setKeepAliveTimeUnit(TimeUnit keepAliveTimeUnit) {
+		this.keepAliveTimeUnit = keepAliveTimeUnit;
+	}
+
+	/**
+	 * @return the validationQuery
+	 */
+	public String getValidationQuery() {
+		return validationQuery;
+	}
+
+	/**
+	 * @param validationQuery the validationQuery to set
+	 */
+	public void setValidationQuery(String validationQuery) {
+		this.validationQuery = validationQuery;
+	}
+
+	/**
+	 * @return the leakDetectionTime
+	 */
+	public long getLeakDetectionTime() {
+		return leakDetectionTime;
+	}
+
+	/**
+	 * @param leakDetectionTime the leakDetectionTime to set
+	 */
+	public void setLeakDetectionTime(long leakDetectionTime) {
+		this.leakDetectionTime = leakDetectionTime;
+	}
+
+	/**
+	 * @return the leakDetectionTimeUnit
+	 */
+	public TimeUnit getLeakDetectionTimeUnit() {
+		return leakDetectionTimeUnit;
+	}
+
+	/**
+	 * @param leakDetectionTimeUnit the leakDetectionTimeUnit to set
+	 */
+	public void setLeakDetectionTimeUnit(TimeUnit leakDetectionTimeUnit) {
+		this.leakDetectionTimeUnit = leakDetectionTimeUnit;
+	}
+
+	/**
+	 * @return the reclaimLeakedConnections
+	 */
+	public boolean isReclaimLeakedConnections() {
+		return reclaimLeakedConnections;
+	}
+
+	/**
+	 * @param reclaimLeakedConnections the reclaimLeakedConnections to set
+	 */
+	public void setReclaimLeakedConnections(boolean reclaimLeakedConnections) {
+		this.reclaimLeakedConnections = reclaimLeakedConnections;
+	}
+
 	/**
 	 * @return the username
 	 */
@@ -439,4 +820,69 @@ public class DataSourceFactoryBean implements FactoryBean<DataSource>, Initializ
 	public void setSupplier(Supplier<ConnectionCredentials> supplier) {
 		this.supplier = supplier;
 	}
+
+	/**
+	 * @return the credentialCacheTime
+	 */
+	public long getCredentialCacheTime() {
+		return credentialCacheTime;
+	}
+
+	/**
+	 * How long credentials from the supplier are cached, 0 calls the supplier for every
+	 * new connection
+	 * 
+	 * @param credentialCacheTime the credentialCacheTime to set
+	 */
+	public void setCredentialCacheTime(long credentialCacheTime) {
+		this.credentialCacheTime = credentialCacheTime;
+	}
+
+	/**
+	 * @return the credentialRefreshAhead
+	 */
+	public long getCredentialRefreshAhead() {
+		return credentialRefreshAhead;
+	}
+
+	/**
+	 * How long before the cached credentials expire they are refreshed in the background,
+	 * defaults to a tenth of credentialCacheTime
+	 * 
+	 * @param credentialRefreshAhead the credentialRefreshAhead to set
+	 */
+	public void setCredentialRefreshAhead(long credentialRefreshAhead) {
+		this.credentialRefreshAhead = credentialRefreshAhead;
+	}
+
+	/**
+	 * @return the credentialCacheTimeUnit
+	 */
+	public TimeUnit getCredentialCacheTimeUnit() {
+		return credentialCacheTimeUnit;
+	}
+
+	/**
+	 * @param credentialCacheTimeUnit the credentialCacheTimeUnit to set
+	 */
+	public void setCredentialCacheTimeUnit(TimeUnit credentialCacheTimeUnit) {
+		this.credentialCacheTimeUnit = credentialCacheTimeUnit;
+	}
+
+	/**
+	 * @return the resultFormat
+	 */
+	public ResultFormat getResultFormat() {
+		return resultFormat;
+	}
+
+	/**
+	 * Encoding SnarlTemplate requests for query results, DEFAULT leaves it to the client
+	 * 
+	 * @param resultFormat the resultFormat to set
+	 */
+	public void setResultFormat(ResultFormat resultFormat) {
+		this.resultFormat = resultFormat;
+	}
+
 }
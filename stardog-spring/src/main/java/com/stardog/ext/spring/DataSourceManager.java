@@ -0,0 +1,206 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * DataSourceManager
+ * 
+ * Standard MBean for tuning a DataSource in production without a restart.  Changes are
+ * staged on the DataSourceFactoryBean, and reconfigure swaps in a new pool while requests
+ * holding connections of the old pool finish undisturbed.
+ * 
+ * Export it with Spring's MBeanExporter, or set objectName to have it register itself
+ * with the platform MBeanServer.
+ */
+public class DataSourceManager implements DataSourceManagerMBean, InitializingBean, DisposableBean {
+
+	final Logger log = LoggerFactory.getLogger(DataSourceManager.class);
+
+	private DataSourceFactoryBean factoryBean;
+
+	private String objectName;
+
+	public DataSourceManager() { }
+
+	public DataSourceManager(DataSourceFactoryBean factoryBean) {
+		this.factoryBean = factoryBean;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		if (factoryBean == null) {
+			throw new IllegalArgumentException("Property 'factoryBean' is required");
+		}
+		if (objectName != null) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(this, new ObjectName(objectName));
+			log.debug("Registered Stardog DataSource MBean " + objectName);
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (objectName != null) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(objectName);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void reconfigure() {
+		factoryBean.reconfigure();
+	}
+
+	@Override
+	public int getDrainingPools() {
+		DataSource dataSource = factoryBean.getDataSource();
+		return dataSource == null ? 0 : dataSource.getDrainingPools();
+	}
+
+	@Override
+	public synchronized String getUrl() {
+		return factoryBean.getUrl();
+	}
+
+	@Override
+	public synchronized void setUrl(String url) {
+		factoryBean.setUrl(url);
+	}
+
+	@Override
+	public synchronized String getTo() {
+		return factoryBean.getTo();
+	}
+
+	@Override
+	public synchronized void setTo(String to) {
+		factoryBean.setTo(to);
+	}
+
+	@Override
+	public synchronized String getUsername() {
+		return factoryBean.getUsername();
+	}
+
+	@Override
+	public synchronized void setUsername(String username) {
+		factoryBean.setUsername(username);
+	}
+
+	@Override
+	public synchronized boolean getReasoningType() {
+		return factoryBean.getReasoningType();
+	}
+
+	@Override
+	public synchronized void setReasoningType(boolean reasoningType) {
+		factoryBean.setReasoningType(reasoningType);
+	}
+
+	@Override
+	public synchronized int getMinPool() {
+		return factoryBean.getMinPool();
+	}
+
+	@Override
+	public synchronized void setMinPool(int minPool) {
+		factoryBean.setMinPool(minPool);
+	}
+
+	@Override
+	public synchronized int getMaxPool() {
+		return factoryBean.getMaxPool();
+	}
+
+	@Override
+	public synchronized void setMaxPool(int maxPool) {
+		factoryBean.setMaxPool(maxPool);
+	}
+
+	@Override
+	public synchronized int getMaxIdle() {
+		return factoryBean.getMaxIdle();
+	}
+
+	@Override
+	public synchronized void setMaxIdle(int maxIdle) {
+		factoryBean.setMaxIdle(maxIdle);
+	}
+
+	@Override
+	public synchronized long getBlockCapacityTime() {
+		return factoryBean.getBlockCapacityTime();
+	}
+
+	@Override
+	public synchronized void setBlockCapacityTime(long blockCapacityTime) {
+		factoryBean.setBlockCapacityTime(blockCapacityTime);
+	}
+
+	@Override
+	public synchronized long getExpirationTime() {
+		return factoryBean.getExpirationTime();
+	}
+
+	@Override
+	public synchronized void setExpirationTime(long expirationTime) {
+		factoryBean.setExpirationTime(expirationTime);
+	}
+
+	/**
+	 * @return the factoryBean
+	 */
+	public DataSourceFactoryBean getFactoryBean() {
+		return factoryBean;
+	}
+
+	/**
+	 * @param factoryBean the factoryBean to set
+	 */
+	public void setFactoryBean(DataSourceFactoryBean factoryBean) {
+		this.factoryBean = factoryBean;
+	}
+
+	/**
+	 * @return the objectName
+	 */
+	public String getObjectName() {
+		return objectName;
+	}
+
+	/**
+	 * JMX name to register under with the platform MBeanServer, null to leave registration
+	 * to Spring's MBeanExporter
+	 * 
+	 * @param objectName the objectName to set
+	 */
+	public void setObjectName(String objectName) {
+		this.objectName = objectName;
+	}
+}
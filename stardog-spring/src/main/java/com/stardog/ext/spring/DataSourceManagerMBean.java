@@ -0,0 +1,73 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+/**
+ * DataSourceManagerMBean
+ * 
+ * JMX management interface of a DataSource created by a DataSourceFactoryBean.
+ * Setters stage new values, reconfigure applies them all at once.  Passwords are not
+ * exposed over JMX; rotate credentials through the factory bean's supplier.
+ */
+public interface DataSourceManagerMBean {
+
+	String getUrl();
+
+	void setUrl(String url);
+
+	String getTo();
+
+	void setTo(String to);
+
+	String getUsername();
+
+	void setUsername(String username);
+
+	boolean getReasoningType();
+
+	void setReasoningType(boolean reasoningType);
+
+	int getMinPool();
+
+	void setMinPool(int minPool);
+
+	int getMaxPool();
+
+	void setMaxPool(int maxPool);
+
+	int getMaxIdle();
+
+	void setMaxIdle(int maxIdle);
+
+	long getBlockCapacityTime();
+
+	void setBlockCapacityTime(long blockCapacityTime);
+
+	long getExpirationTime();
+
+	void setExpirationTime(long expirationTime);
+
+	/**
+	 * @return number of replaced pools still waiting for their connections to be returned
+	 */
+	int getDrainingPools();
+
+	/**
+	 * <code>reconfigure</code>
+	 * Builds a new pool from the staged values, routes new checkouts to it, and drains the old pool
+	 */
+	void reconfigure();
+}
@@ -0,0 +1,106 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.complexible.stardog.api.Connection;
+
+/**
+ * DataSourceUtils
+ *
+ * Similar to Spring's jdbc DataSourceUtils
+ *
+ * Hands out the connection bound to the current thread by a StardogTransactionManager
+ * when there is one, otherwise a fresh connection from the DataSource pool
+ */
+public abstract class DataSourceUtils {
+
+	/**
+	 * <code>getConnection</code>
+	 * @param dataSource DataSource to obtain the connection from
+	 * @return the transactional Connection if bound, otherwise a pooled Connection
+	 */
+	public static Connection getConnection(DataSource dataSource) {
+		return getConnection(dataSource, ConnectionPriorityHolder.getPriority());
+	}
+
+	/**
+	 * <code>getConnection</code>
+	 * @param dataSource DataSource to obtain the connection from
+	 * @param priority priority of a new checkout, not used for the transactional Connection
+	 * @return the transactional Connection if bound, otherwise a pooled Connection
+	 */
+	public static Connection getConnection(DataSource dataSource, ConnectionPriority priority) {
+		ConnectionHolder holder = getConnectionHolder(dataSource);
+		if (holder != null) {
+			holder.requested();
+			return holder.getConnection();
+		}
+		return dataSource.getConnection(priority);
+	}
+
+	/**
+	 * <code>releaseConnection</code>
+	 * Returns the connection to the pool, unless it is bound to a transaction, in
+	 * which case the StardogTransactionManager releases it on completion
+	 *
+	 * @param connection Stardog Connection
+	 * @param dataSource DataSource the connection was obtained from
+	 */
+	public static void releaseConnection(Connection connection, DataSource dataSource) {
+		if (connection == null) {
+			return;
+		}
+		ConnectionHolder holder = getConnectionHolder(dataSource);
+		if (holder != null && holder.getConnection() == connection) {
+			holder.released();
+			return;
+		}
+		dataSource.releaseConnection(connection);
+	}
+
+	/**
+	 * <code>isConnectionTransactional</code>
+	 * @param connection Stardog Connection
+	 * @param dataSource DataSource the connection was obtained from
+	 * @return true if the connection is managed by a StardogTransactionManager
+	 */
+	public static boolean isConnectionTransactional(Connection connection, DataSource dataSource) {
+		ConnectionHolder holder = getConnectionHolder(dataSource);
+		return holder != null && holder.getConnection() == connection;
+	}
+
+	/**
+	 * <code>isTransactionActive</code>
+	 * @param dataSource DataSource of the transaction
+	 * @return true if a StardogTransactionManager transaction is bound to the current thread
+	 */
+	public static boolean isTransactionActive(DataSource dataSource) {
+		return getConnectionHolder(dataSource) != null;
+	}
+
+	private static ConnectionHolder getConnectionHolder(DataSource dataSource) {
+		if (dataSource == null) {
+			return null;
+		}
+		ConnectionHolder holder = (ConnectionHolder) TransactionSynchronizationManager.getResource(dataSource);
+		if (holder != null && holder.isTransactionActive()) {
+			return holder;
+		}
+		return null;
+	}
+}
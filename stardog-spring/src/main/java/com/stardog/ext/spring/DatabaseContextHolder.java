@@ -0,0 +1,54 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+/**
+ * DatabaseContextHolder
+ * 
+ * Associates a Stardog database name with the current thread, similar to Spring's
+ * LocaleContextHolder.  A RoutingDataSource hands out connections to the database
+ * held here.
+ */
+public abstract class DatabaseContextHolder {
+
+	private static final ThreadLocal<String> databaseHolder = new ThreadLocal<String>();
+
+	/**
+	 * @return the database of the current thread, null when none is set
+	 */
+	public static String getDatabase() {
+		return databaseHolder.get();
+	}
+
+	/**
+	 * @param database the database of the current thread, null resets it
+	 */
+	public static void setDatabase(String database) {
+		if (database == null) {
+			databaseHolder.remove();
+		} else {
+			databaseHolder.set(database);
+		}
+	}
+
+	/**
+	 * <code>resetDatabase</code>
+	 * Clears the database of the current thread
+	 */
+	public static void resetDatabase() {
+		databaseHolder.remove();
+	}
+}
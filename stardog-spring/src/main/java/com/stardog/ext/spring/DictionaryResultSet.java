@@ -0,0 +1,260 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import com.stardog.stark.Value;
+import com.stardog.stark.query.Binding;
+import com.stardog.stark.query.BindingSet;
+
+/**
+ * DictionaryResultSet
+ * 
+ * SELECT results with every distinct Value stored once in a TermDictionary and the
+ * rows packed into a single int array of term ids, see SnarlTemplate.queryEncoded.
+ * Repetitive results, e.g. type IRIs or enum-like literals, take a fraction of the
+ * heap of a List of Maps.
+ * 
+ * Map views of the rows are built on demand and read through to the ids.
+ */
+public class DictionaryResultSet {
+
+	/**
+	 * Id of an unbound variable
+	 */
+	public static final int UNBOUND = -1;
+
+	private final List<String> variables;
+
+	private final Map<String, Integer> columns;
+
+	private final TermDictionary dictionary = new TermDictionary();
+
+	private int[] ids;
+
+	private int size = 0;
+
+	/**
+	 * @param variables projected variables, the columns of every row
+	 */
+	public DictionaryResultSet(List<String> variables) {
+		this.variables = Collections.unmodifiableList(variables);
+		this.columns = new HashMap<String, Integer>();
+		for (int i = 0; i < variables.size(); i++) {
+			columns.put(variables.get(i), i);
+		}
+		this.ids = new int[Math.max(variables.size(), 1) * 64];
+	}
+
+	/**
+	 * <code>add</code>
+	 * @param bindingSet row to encode
+	 */
+	public void add(BindingSet bindingSet) {
+		int width = variables.size();
+		int start = size * width;
+		if (start + width > ids.length) {
+			ids = Arrays.copyOf(ids, Math.max(ids.length + (ids.length >> 1), start + width));
+		}
+		Arrays.fill(ids, start, start + width, UNBOUND);
+		for (Binding binding : bindingSet) {
+			Integer column = columns.get(binding.name());
+			if (column != null && binding.value() != null) {
+				ids[start + column] = dictionary.intern(binding.value());
+			}
+		}
+		size++;
+	}
+
+	/**
+	 * @return number of rows
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the variables, in column order
+	 */
+	public List<String> getVariables() {
+		return variables;
+	}
+
+	/**
+	 * @return the dictionary of distinct terms
+	 */
+	public TermDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * @param row row index
+	 * @param column column index, see getVariables
+	 * @return term id, UNBOUND if the variable has no value in the row
+	 */
+	public int id(int row, int column) {
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException("Row " + row + ", size " + size);
+		}
+		return ids[row * variables.size() + column];
+	}
+
+	/**
+	 * @param row row index
+	 * @param variable variable name
+	 * @return the value, null if unbound or not projected
+	 */
+	public Value getValue(int row, String variable) {
+		Integer column = columns.get(variable);
+		if (column == null) {
+			return null;
+		}
+		int id = id(row, column);
+		return id == UNBOUND ? null : dictionary.term(id);
+	}
+
+	/**
+	 * @return the rows as Maps of variable to Value
+	 */
+	public List<Map<String, Value>> asValueMaps() {
+		return new RowList<Value>(dictionary::term);
+	}
+
+	/**
+	 * @return the rows as Maps of variable to String, like the SimpleRowMapper, with
+	 * each distinct string shared between rows
+	 */
+	public List<Map<String, String>> asStringMaps() {
+		return new RowList<String>(dictionary::string);
+	}
+
+	/**
+	 * Read-only list of row views
+	 */
+	private class RowList<V> extends AbstractList<Map<String, V>> {
+
+		private final IntFunction<V> decoder;
+
+		RowList(IntFunction<V> decoder) {
+			this.decoder = decoder;
+		}
+
+		@Override
+		public Map<String, V> get(int row) {
+			if (row < 0 || row >= size) {
+				throw new IndexOutOfBoundsException("Row " + row + ", size " + size);
+			}
+			return new RowMap<V>(row * variables.size(), decoder);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Read-only Map view of one row, holding only its offset into the ids
+	 */
+	private class RowMap<V> extends AbstractMap<String, V> {
+
+		private final int start;
+
+		private final IntFunction<V> decoder;
+
+		RowMap(int start, IntFunction<V> decoder) {
+			this.start = start;
+			this.decoder = decoder;
+		}
+
+		@Override
+		public V get(Object key) {
+			Integer column = columns.get(key);
+			if (column == null) {
+				return null;
+			}
+			int id = ids[start + column];
+			return id == UNBOUND ? null : decoder.apply(id);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			Integer column = columns.get(key);
+			return column != null && ids[start + column] != UNBOUND;
+		}
+
+		@Override
+		public Set<Entry<String, V>> entrySet() {
+			return new AbstractSet<Entry<String, V>>() {
+
+				@Override
+				public Iterator<Entry<String, V>> iterator() {
+					return new Iterator<Entry<String, V>>() {
+
+						private int column = advance(0);
+
+						private int advance(int from) {
+							int width = variables.size();
+							while (from < width && ids[start + from] == UNBOUND) {
+								from++;
+							}
+							return from;
+						}
+
+						@Override
+						public boolean hasNext() {
+							return column < variables.size();
+						}
+
+						@Override
+						public Entry<String, V> next() {
+							if (!hasNext()) {
+								throw new NoSuchElementException();
+							}
+							Entry<String, V> entry = new SimpleImmutableEntry<String, V>(variables.get(column),
+									decoder.apply(ids[start + column]));
+							column = advance(column + 1);
+							return entry;
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					int bound = 0;
+					for (int i = 0; i < variables.size(); i++) {
+						if (ids[start + i] != UNBOUND) {
+							bound++;
+						}
+					}
+					return bound;
+				}
+			};
+		}
+	}
+}
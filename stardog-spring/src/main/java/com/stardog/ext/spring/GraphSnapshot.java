@@ -0,0 +1,477 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import com.stardog.stark.IRI;
+import com.stardog.stark.Resource;
+import com.stardog.stark.Statement;
+import com.stardog.stark.Value;
+import com.stardog.stark.Values;
+
+/**
+ * GraphSnapshot
+ * 
+ * Local, read-only copy of a small graph, such as an ontology or reference data,
+ * answering statement patterns in memory instead of with a query to the server.
+ * The graph is loaded from a CONSTRUCT query, by default the whole default graph.
+ * 
+ * Terms are dictionary encoded, and the statements are held as int ids in three
+ * sorted arrays, in SPO, POS and OSP order, so any pattern is a binary search
+ * over one of them.  Contexts are not kept.
+ * 
+ * With a refreshInterval the snapshot is reloaded in the background.  A reload
+ * builds a new snapshot and swaps it in at once; lookups see either the old or the
+ * new graph, never a mix, and a failed reload keeps the old one.
+ */
+public class GraphSnapshot implements InitializingBean, DisposableBean {
+
+	final Logger log = LoggerFactory.getLogger(GraphSnapshot.class);
+
+	private static final int ANY = -1;
+
+	private SnarlTemplate snarlTemplate;
+
+	private String query = "CONSTRUCT { ?s ?p ?o } WHERE { ?s ?p ?o }";
+
+	private Map<String, Object> args;
+
+	private long refreshInterval = 0;
+
+	private TimeUnit refreshTimeUnit = TimeUnit.MINUTES;
+
+	private volatile Index index = new Builder().build();
+
+	private final Object refreshLock = new Object();
+
+	private ScheduledExecutorService scheduler;
+
+	@Override
+	public void afterPropertiesSet() {
+		if (snarlTemplate == null) {
+			throw new IllegalArgumentException("snarlTemplate is required");
+		}
+		refresh();
+		if (refreshInterval > 0) {
+			start();
+		}
+	}
+
+	@Override
+	public void destroy() {
+		stop();
+	}
+
+	/**
+	 * <code>refresh</code>
+	 * Loads the graph and swaps it in
+	 */
+	public void refresh() {
+		synchronized (refreshLock) {
+			long start = System.currentTimeMillis();
+			Index next = snarlTemplate.doWithGraphResult(query, args, result -> {
+				Builder builder = new Builder();
+				while (result.hasNext()) {
+					builder.add(result.next());
+				}
+				return builder.build();
+			});
+			index = next != null ? next : new Builder().build();
+			log.debug("Loaded graph snapshot of " + index.size + " statements in " + (System.currentTimeMillis() - start) + "ms");
+		}
+	}
+
+	/**
+	 * <code>start</code>
+	 * Starts the background refresh, every refreshInterval
+	 */
+	public synchronized void start() {
+		if (scheduler != null || refreshInterval <= 0) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "stardog-graph-snapshot");
+			t.setDaemon(true);
+			return t;
+		});
+		scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				refresh();
+			} catch (RuntimeException e) {
+				log.error("Error refreshing graph snapshot, keeping the previous one", e);
+			}
+		}, refreshInterval, refreshInterval, refreshTimeUnit);
+	}
+
+	/**
+	 * <code>stop</code>
+	 * Stops the background refresh
+	 */
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * <code>statements</code>
+	 * @param subject subject, null for any
+	 * @param predicate predicate, null for any
+	 * @param object object, null for any
+	 * @return the matching statements
+	 */
+	public List<Statement> statements(Resource subject, IRI predicate, Value object) {
+		return match(subject, predicate, object, statement -> statement);
+	}
+
+	/**
+	 * <code>match</code>
+	 * Same shape as SnarlTemplate.construct, over the statements matching a pattern
+	 * 
+	 * @param subject subject, null for any
+	 * @param predicate predicate, null for any
+	 * @param object object, null for any
+	 * @param mapper mapper applied to each matching statement
+	 * @param <T> generic type of the mapper
+	 * @return the mapped statements
+	 */
+	public <T> List<T> match(Resource subject, IRI predicate, Value object, GraphMapper<T> mapper) {
+		Index current = index;
+		List<T> list = new ArrayList<T>();
+		current.scan(subject, predicate, object, (s, p, o) -> {
+			list.add(mapper.mapRow(current.statement(s, p, o)));
+			return true;
+		});
+		return list;
+	}
+
+	/**
+	 * <code>doWithGetter</code>
+	 * Same shape as SnarlTemplate.doWithGetter, answered from the snapshot
+	 * 
+	 * @param subject - String representation of a subject URI
+	 * @param predicate - String representation of a predicate URI
+	 * @param action - callback that will be called
+	 * @param <T> - generic type for GetterCallback
+	 * @return - list of return elements
+	 */
+	public <T> List<T> doWithGetter(String subject, String predicate, GetterCallback<T> action) {
+		if (subject == null && predicate == null) {
+			return new ArrayList<T>();
+		}
+		return match(subject == null ? null : Values.iri(subject), predicate == null ? null : Values.iri(predicate), null,
+				action::processStatement);
+	}
+
+	/**
+	 * <code>contains</code>
+	 * @param subject subject, null for any
+	 * @param predicate predicate, null for any
+	 * @param object object, null for any
+	 * @return true if a statement matches
+	 */
+	public boolean contains(Resource subject, IRI predicate, Value object) {
+		boolean[] found = new boolean[1];
+		index.scan(subject, predicate, object, (s, p, o) -> {
+			found[0] = true;
+			return false;
+		});
+		return found[0];
+	}
+
+	/**
+	 * <code>count</code>
+	 * @param subject subject, null for any
+	 * @param predicate predicate, null for any
+	 * @param object object, null for any
+	 * @return number of matching statements
+	 */
+	public int count(Resource subject, IRI predicate, Value object) {
+		int[] count = new int[1];
+		index.scan(subject, predicate, object, (s, p, o) -> {
+			count[0]++;
+			return true;
+		});
+		return count[0];
+	}
+
+	/**
+	 * @return number of statements in the snapshot
+	 */
+	public int size() {
+		return index.size;
+	}
+
+	/**
+	 * @return when the current snapshot was loaded, in epoch millis
+	 */
+	public long getLoadedAt() {
+		return index.loadedAt;
+	}
+
+	/**
+	 * @return the snarlTemplate
+	 */
+	public SnarlTemplate getSnarlTemplate() {
+		return snarlTemplate;
+	}
+
+	/**
+	 * @param snarlTemplate the snarlTemplate to set
+	 */
+	public void setSnarlTemplate(SnarlTemplate snarlTemplate) {
+		this.snarlTemplate = snarlTemplate;
+	}
+
+	/**
+	 * @return the query
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * @param query the query to set, a CONSTRUCT of the graph to hold
+	 */
+	public void setQuery(String query) {
+		this.query = query;
+	}
+
+	/**
+	 * @return the args
+	 */
+	public Map<String, Object> getArgs() {
+		return args;
+	}
+
+	/**
+	 * @param args the args to set, bound as parameters of the query
+	 */
+	public void setArgs(Map<String, Object> args) {
+		this.args = args;
+	}
+
+	/**
+	 * @return the refreshInterval
+	 */
+	public long getRefreshInterval() {
+		return refreshInterval;
+	}
+
+	/**
+	 * @param refreshInterval the refreshInterval to set, 0 to load only once
+	 */
+	public void setRefreshInterval(long refreshInterval) {
+		this.refreshInterval = refreshInterval;
+	}
+
+	/**
+	 * @return the refreshTimeUnit
+	 */
+	public TimeUnit getRefreshTimeUnit() {
+		return refreshTimeUnit;
+	}
+
+	/**
+	 * @param refreshTimeUnit the refreshTimeUnit to set
+	 */
+	public void setRefreshTimeUnit(TimeUnit refreshTimeUnit) {
+		this.refreshTimeUnit = refreshTimeUnit;
+	}
+
+	/**
+	 * Receives the ids of each match, returns false to stop
+	 */
+	interface Visitor {
+
+		boolean visit(int subject, int predicate, int object);
+	}
+
+	/**
+	 * Accumulates statements as ids, then sorts them into the three orders
+	 */
+	static class Builder {
+
+		private final TermDictionary dictionary = new TermDictionary();
+
+		private int[] triples = new int[3 * 64];
+
+		private int size = 0;
+
+		void add(Statement statement) {
+			if (3 * size == triples.length) {
+				triples = Arrays.copyOf(triples, triples.length * 2);
+			}
+			triples[3 * size] = dictionary.intern(statement.subject());
+			triples[3 * size + 1] = dictionary.intern(statement.predicate());
+			triples[3 * size + 2] = dictionary.intern(statement.object());
+			size++;
+		}
+
+		Index build() {
+			int[] spo = sort(triples, size, dictionary.size(), 0, 1, 2);
+			int distinct = 0;
+			for (int i = 0; i < size; i++) {
+				if (distinct > 0 && spo[3 * i] == spo[3 * distinct - 3] && spo[3 * i + 1] == spo[3 * distinct - 2]
+						&& spo[3 * i + 2] == spo[3 * distinct - 1]) {
+					continue;
+				}
+				System.arraycopy(spo, 3 * i, spo, 3 * distinct, 3);
+				distinct++;
+			}
+			spo = Arrays.copyOf(spo, 3 * distinct);
+			int[] pos = sort(spo, distinct, dictionary.size(), 1, 2, 0);
+			int[] osp = sort(spo, distinct, dictionary.size(), 2, 0, 1);
+			return new Index(dictionary, spo, pos, osp, distinct);
+		}
+
+		/**
+		 * Stable counting sort on each key, last key first, since ids are dense
+		 * 
+		 * @return the triples with their components reordered to x, y, z, in that order
+		 */
+		static int[] sort(int[] triples, int size, int terms, int x, int y, int z) {
+			int[] order = new int[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			int[] sorted = new int[size];
+			int[] counts = new int[terms + 1];
+			for (int key : new int[] { z, y, x }) {
+				Arrays.fill(counts, 0);
+				for (int i = 0; i < size; i++) {
+					counts[triples[3 * order[i] + key] + 1]++;
+				}
+				for (int i = 1; i <= terms; i++) {
+					counts[i] += counts[i - 1];
+				}
+				for (int i = 0; i < size; i++) {
+					sorted[counts[triples[3 * order[i] + key]]++] = order[i];
+				}
+				int[] swap = order;
+				order = sorted;
+				sorted = swap;
+			}
+			int[] result = new int[3 * size];
+			for (int i = 0; i < size; i++) {
+				result[3 * i] = triples[3 * order[i] + x];
+				result[3 * i + 1] = triples[3 * order[i] + y];
+				result[3 * i + 2] = triples[3 * order[i] + z];
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * One immutable snapshot
+	 */
+	static class Index {
+
+		final TermDictionary dictionary;
+
+		final int[] spo;
+
+		final int[] pos;
+
+		final int[] osp;
+
+		final int size;
+
+		final long loadedAt = System.currentTimeMillis();
+
+		Index(TermDictionary dictionary, int[] spo, int[] pos, int[] osp, int size) {
+			this.dictionary = dictionary;
+			this.spo = spo;
+			this.pos = pos;
+			this.osp = osp;
+			this.size = size;
+		}
+
+		Statement statement(int s, int p, int o) {
+			return Values.statement((Resource) dictionary.term(s), (IRI) dictionary.term(p), dictionary.term(o));
+		}
+
+		void scan(Resource subject, IRI predicate, Value object, Visitor visitor) {
+			int s = subject == null ? ANY : dictionary.id(subject);
+			int p = predicate == null ? ANY : dictionary.id(predicate);
+			int o = object == null ? ANY : dictionary.id(object);
+			if ((subject != null && s < 0) || (predicate != null && p < 0) || (object != null && o < 0)) {
+				return;
+			}
+			if (s != ANY) {
+				scan(spo, s, p, o, visitor::visit);
+			} else if (p != ANY) {
+				scan(pos, p, o, ANY, (a, b, c) -> visitor.visit(c, a, b));
+			} else if (o != ANY) {
+				scan(osp, o, ANY, ANY, (a, b, c) -> visitor.visit(b, c, a));
+			} else {
+				for (int i = 0; i < size; i++) {
+					if (!visitor.visit(spo[3 * i], spo[3 * i + 1], spo[3 * i + 2])) {
+						return;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Narrows to the rows with the first key, and the second when bound, then filters on the third
+		 */
+		private void scan(int[] index, int a, int b, int c, Visitor visitor) {
+			int from = lower(index, 0, size, 0, a);
+			int to = lower(index, from, size, 0, a + 1);
+			if (b != ANY) {
+				from = lower(index, from, to, 1, b);
+				to = lower(index, from, to, 1, b + 1);
+			}
+			for (int i = from; i < to; i++) {
+				if (c != ANY && index[3 * i + 2] != c) {
+					continue;
+				}
+				if (!visitor.visit(index[3 * i], index[3 * i + 1], index[3 * i + 2])) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * First row in [from, to) whose key is at least the value, the rows being sorted on the key
+		 */
+		private static int lower(int[] index, int from, int to, int key, int value) {
+			while (from < to) {
+				int mid = (from + to) >>> 1;
+				if (index[3 * mid + key] < value) {
+					from = mid + 1;
+				} else {
+					to = mid;
+				}
+			}
+			return from;
+		}
+	}
+}
@@ -6,6 +6,12 @@ package com.stardog.ext.spring;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.complexible.common.base.Option;
 import com.complexible.common.base.Options;
@@ -17,16 +23,27 @@ import com.google.common.collect.Maps;
 /**
 * A registry of options that transforms arbitrary objects into the kind of object the option handles via a transforming function. 
 * 
+* A new parser knows the settings in {@link ConnectionOptions}; options are looked up by name.
+* 
 * @author Hector Perez-Urbina
 * @version 2.0
 *
 */
 class OptionParser {
 
+	private static final Logger log = LoggerFactory.getLogger(OptionParser.class);
+
+	private static final Pattern DURATION = Pattern.compile("(\\d+)\\s*(ms|s|m|h)?");
+
+	private final Map<String, Option<?>> mOptionsByName;
+
 	private final Map<Option<?>, Function<Object, ?>> mOptionsMap;
 	
 	OptionParser() {
+		mOptionsByName = Maps.newHashMap();
 		mOptionsMap = Maps.newHashMap();
+
+		registerOption(ConnectionOptions.QUERY_TIMEOUT, OptionParser::toMillis);
 	}
 	
 	/**
@@ -36,6 +53,7 @@ class OptionParser {
 	 * @param theFunction
 	 */
 	<T> void registerOption(final Option<T> theOption, final Function<Object, T> theFunction) {
+		mOptionsByName.put(theOption.toString(), theOption);
 		mOptionsMap.put(theOption, theFunction);
 	}
 	
@@ -66,7 +84,7 @@ class OptionParser {
 			return result;
 		}
 		
-		throw new IllegalArgumentException();
+		throw new IllegalArgumentException("Invalid value for option " + theOption + ": " + theValue);
 	}
 
 	/**
@@ -74,20 +92,38 @@ class OptionParser {
 	 * 
 	 * @param theKeyValuePairs
 	 * @return
+	 * @throws IllegalArgumentException if a value cannot be converted to the type of its option
 	 */
+ @SuppressWarnings({ "unchecked", "rawtypes" })
  Options getOptions(final List<Pair<String, String>> theKeyValuePairs) {
  	Options result = Options.create();
  	
  	for (Pair<String, String> aPair : theKeyValuePairs) {
- 		for (Option aRegisteredOption : mOptionsMap.keySet()) {
- 			if (aRegisteredOption.toString().equals(aPair.first)) {
- 				result.set(aRegisteredOption, getValue(aRegisteredOption, aPair.second));
- 			}
+ 		Option aRegisteredOption = mOptionsByName.get(aPair.first);
+ 		if (aRegisteredOption == null) {
+ 			log.warn("Ignoring unknown Stardog connection property " + aPair.first);
+ 			continue;
  		}
+ 		result.set(aRegisteredOption, getValue(aRegisteredOption, aPair.second));
  	}
  	
  	return result;
  }
-	
-	
-}
\ No newline at end of file
+
+	private static Long toMillis(final Object theValue) {
+		Matcher aMatcher = DURATION.matcher(String.valueOf(theValue).trim());
+		if (!aMatcher.matches()) {
+			throw new IllegalArgumentException("Expected a duration such as 500ms or 30s, got " + theValue);
+		}
+		long aAmount = Long.parseLong(aMatcher.group(1));
+		String aUnit = aMatcher.group(2);
+		if (aUnit == null || aUnit.equals("ms")) {
+			return aAmount;
+		}
+		switch (aUnit) {
+			case "s": return TimeUnit.SECONDS.toMillis(aAmount);
+			case "m": return TimeUnit.MINUTES.toMillis(aAmount);
+			default: return TimeUnit.HOURS.toMillis(aAmount);
+		}
+	}
+}
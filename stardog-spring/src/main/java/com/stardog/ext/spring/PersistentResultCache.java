@@ -0,0 +1,495 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * PersistentResultCache
+ * 
+ * Query result cache on local disk, see SnarlTemplate.queryCached.  Each result is
+ * one file named by the fingerprint of its cache name, endpoint (server, database and
+ * reasoning), query and arguments, holding the rows serialized with their RowCodec and
+ * an index of every 64th row.  A hit is a read-only view over a memory map of the file,
+ * which decodes rows as they are read.
+ * The files outlive the process, so a restarted instance serves its hot queries
+ * from disk at once instead of sending them all to the server.
+ * 
+ * Entries carry an expiry time and the cache version they were written under;
+ * changing the version, e.g. on a data load, turns every older entry into a miss.
+ * Past maxBytes the oldest entries are deleted.
+ */
+public class PersistentResultCache implements InitializingBean {
+
+	final Logger log = LoggerFactory.getLogger(PersistentResultCache.class);
+
+	private static final int MAGIC = 0x53524332;
+
+	private static final int INDEX_INTERVAL = 64;
+
+	private static final String SUFFIX = ".rows";
+
+	private File directory;
+
+	private String version = "";
+
+	private long timeToLive = 1;
+
+	private TimeUnit timeUnit = TimeUnit.HOURS;
+
+	private long maxBytes = 256L * 1024 * 1024;
+
+	private final AtomicLong bytes = new AtomicLong();
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Creates the directory, and deletes the entries that are expired or of another version
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		if (directory == null) {
+			throw new IllegalArgumentException("directory is required");
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IllegalArgumentException("Cannot create result cache directory " + directory);
+		}
+		long now = System.currentTimeMillis();
+		long total = 0;
+		int removed = 0;
+		for (File file : entries()) {
+			if (isCurrent(file, now)) {
+				total += file.length();
+			} else if (file.delete()) {
+				removed++;
+			}
+		}
+		// left behind by a process that stopped in the middle of a put
+		File[] temps = directory.listFiles((dir, name) -> name.endsWith(".tmp"));
+		if (temps != null) {
+			for (File temp : temps) {
+				temp.delete();
+			}
+		}
+		bytes.set(total);
+		log.debug("Result cache " + directory + " holds " + total + " bytes, removed " + removed + " stale entries");
+	}
+
+	/**
+	 * <code>fingerprint</code>
+	 * @param name name of the cached results, which stands for the mapper and codec of
+	 * the rows; results mapped differently need different names
+	 * @param scope server, database and reasoning setting the query runs against, see
+	 * DataSource.getCacheScope
+	 * @param sparql the SPARQL query
+	 * @param args map of string and object bound as input parameters, may be null
+	 * @return key of the result
+	 * @throws IllegalArgumentException if the name is empty
+	 */
+	public String fingerprint(String name, String scope, String sparql, Map<String, Object> args) {
+		if (name == null || name.isEmpty()) {
+			throw new IllegalArgumentException("Cached results need a name");
+		}
+		StringBuilder key = new StringBuilder(name).append('\u0000').append(scope).append('\u0000').append(sparql);
+		if (args != null) {
+			for (Map.Entry<String, Object> arg : new TreeMap<String, Object>(args).entrySet()) {
+				key.append('\u0000').append(arg.getKey()).append('=').append(arg.getValue());
+			}
+		}
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.toString().getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * <code>get</code>
+	 * @param key fingerprint of the result
+	 * @param codec codec the rows were written with
+	 * @param <T> type of the rows
+	 * @return read-only view of the rows, decoded as they are read, or null if there is
+	 * no current entry
+	 */
+	public <T> List<T> get(String key, RowCodec<T> codec) {
+		Path file = file(key).toPath();
+		if (!Files.exists(file)) {
+			misses.incrementAndGet();
+			return null;
+		}
+		// entries are replaced by moving a new file into place, never rewritten, so the map stays valid
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer.duplicate()));
+			if (!readHeader(in, System.currentTimeMillis())) {
+				misses.incrementAndGet();
+				delete(file.toFile());
+				return null;
+			}
+			int count = in.readInt();
+			int indexStart = buffer.getInt(buffer.limit() - 4);
+			int[] offsets = new int[(count + INDEX_INTERVAL - 1) / INDEX_INTERVAL];
+			if (indexStart < 0 || indexStart + 4L * offsets.length != buffer.limit() - 4) {
+				throw new IOException("Corrupt row index");
+			}
+			for (int i = 0; i < offsets.length; i++) {
+				offsets[i] = buffer.getInt(indexStart + 4 * i);
+			}
+			hits.incrementAndGet();
+			return new CachedList<T>(buffer, count, offsets, codec);
+		} catch (IOException | RuntimeException e) {
+			// deleted under us, or written by an incompatible codec
+			log.warn("Dropping unreadable result cache entry " + file, e);
+			misses.incrementAndGet();
+			delete(file.toFile());
+			return null;
+		}
+	}
+
+	/**
+	 * <code>put</code>
+	 * Writes the rows to a temporary file, then moves it into place, so readers
+	 * never see a partial entry
+	 * 
+	 * @param key fingerprint of the result
+	 * @param rows rows to store
+	 * @param codec codec of the rows
+	 * @param <T> type of the rows
+	 */
+	public <T> void put(String key, List<T> rows, RowCodec<T> codec) {
+		File target = file(key);
+		File temp = null;
+		try {
+			temp = File.createTempFile(key, ".tmp", directory);
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp.toPath())))) {
+				long now = System.currentTimeMillis();
+				out.writeInt(MAGIC);
+				out.writeUTF(version);
+				out.writeLong(now + timeUnit.toMillis(timeToLive));
+				out.writeInt(rows.size());
+				int[] offsets = new int[(rows.size() + INDEX_INTERVAL - 1) / INDEX_INTERVAL];
+				int position = 0;
+				for (T row : rows) {
+					if (position % INDEX_INTERVAL == 0) {
+						offsets[position / INDEX_INTERVAL] = out.size();
+					}
+					codec.write(row, out);
+					position++;
+				}
+				// size() stops counting at Integer.MAX_VALUE, beyond what a single map can hold
+				int indexStart = out.size();
+				if (indexStart == Integer.MAX_VALUE) {
+					throw new IOException("Result is too large for the result cache");
+				}
+				for (int offset : offsets) {
+					out.writeInt(offset);
+				}
+				out.writeInt(indexStart);
+			}
+			long size = temp.length();
+			if (size > maxBytes) {
+				log.debug("Result of " + size + " bytes is larger than the result cache, not cached");
+				delete(temp);
+				return;
+			}
+			long previous = target.length();
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			if (bytes.addAndGet(size - previous) > maxBytes) {
+				evict(target);
+			}
+		} catch (IOException e) {
+			log.warn("Error writing result cache entry " + target, e);
+			if (temp != null) {
+				delete(temp);
+			}
+		}
+	}
+
+	/**
+	 * <code>invalidate</code>
+	 * @param key fingerprint of the result to remove
+	 */
+	public void invalidate(String key) {
+		File file = file(key);
+		long size = file.length();
+		if (file.delete()) {
+			bytes.addAndGet(-size);
+		}
+	}
+
+	/**
+	 * <code>invalidateAll</code>
+	 * Removes every entry
+	 */
+	public void invalidateAll() {
+		for (File file : entries()) {
+			delete(file);
+		}
+		bytes.set(0);
+	}
+
+	/**
+	 * Deletes the oldest entries, other than the one just written, until the cache is below maxBytes
+	 */
+	private synchronized void evict(File keep) {
+		File[] files = entries();
+		long total = 0;
+		for (File file : files) {
+			total += file.length();
+		}
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (int i = 0; i < files.length && total > maxBytes; i++) {
+			if (files[i].equals(keep)) {
+				continue;
+			}
+			long size = files[i].length();
+			if (files[i].delete()) {
+				total -= size;
+			}
+		}
+		bytes.set(total);
+	}
+
+	private boolean isCurrent(File file, long now) {
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(file.toPath()))) {
+			return readHeader(in, now);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private boolean readHeader(DataInputStream in, long now) throws IOException {
+		return in.readInt() == MAGIC && in.readUTF().equals(version) && in.readLong() > now;
+	}
+
+	private File[] entries() {
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+		return files == null ? new File[0] : files;
+	}
+
+	private File file(String key) {
+		return new File(directory, key + SUFFIX);
+	}
+
+	private void delete(File file) {
+		long size = file.length();
+		if (file.delete() && file.getName().endsWith(SUFFIX)) {
+			bytes.addAndGet(-size);
+		}
+	}
+
+	/**
+	 * Read-only view decoding rows from the mapped entry
+	 */
+	private static class CachedList<T> extends AbstractList<T> {
+
+		private final ByteBuffer mapped;
+
+		private final int rowCount;
+
+		private final int[] offsets;
+
+		private final RowCodec<T> codec;
+
+		CachedList(ByteBuffer mapped, int rowCount, int[] offsets, RowCodec<T> codec) {
+			this.mapped = mapped;
+			this.rowCount = rowCount;
+			this.offsets = offsets;
+			this.codec = codec;
+		}
+
+		@Override
+		public int size() {
+			return rowCount;
+		}
+
+		@Override
+		public T get(int i) {
+			if (i < 0 || i >= rowCount) {
+				throw new IndexOutOfBoundsException("Index " + i + ", size " + rowCount);
+			}
+			DataInputStream in = reader(offsets[i / INDEX_INTERVAL]);
+			for (int skip = i % INDEX_INTERVAL; skip > 0; skip--) {
+				read(in);
+			}
+			return read(in);
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			return new Iterator<T>() {
+
+				private final DataInputStream in = rowCount == 0 ? null : reader(offsets[0]);
+
+				private int next = 0;
+
+				@Override
+				public boolean hasNext() {
+					return next < rowCount;
+				}
+
+				@Override
+				public T next() {
+					if (next >= rowCount) {
+						throw new NoSuchElementException();
+					}
+					next++;
+					return read(in);
+				}
+			};
+		}
+
+		private DataInputStream reader(int offset) {
+			ByteBuffer buffer = mapped.duplicate();
+			buffer.position(offset);
+			return new DataInputStream(new ByteBufferInputStream(buffer));
+		}
+
+		private T read(DataInputStream in) {
+			try {
+				return codec.read(in);
+			} catch (IOException e) {
+				throw new RuntimeException("Error reading cached query results", e);
+			}
+		}
+	}
+
+	/**
+	 * @return number of lookups answered from disk
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return number of lookups without a current entry
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return bytes held on disk
+	 */
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	/**
+	 * @return the directory
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @param directory the directory to set, one file per cached result
+	 */
+	public void setDirectory(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * @return the version
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * @param version the version to set, entries written under another version are misses
+	 */
+	public void setVersion(String version) {
+		this.version = version == null ? "" : version;
+	}
+
+	/**
+	 * @return the timeToLive
+	 */
+	public long getTimeToLive() {
+		return timeToLive;
+	}
+
+	/**
+	 * @param timeToLive the timeToLive to set
+	 */
+	public void setTimeToLive(long timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * @return the timeUnit
+	 */
+	public TimeUnit getTimeUnit() {
+		return timeUnit;
+	}
+
+	/**
+	 * @param timeUnit the timeUnit to set
+	 */
+	public void setTimeUnit(TimeUnit timeUnit) {
+		this.timeUnit = timeUnit;
+	}
+
+	/**
+	 * @return the maxBytes
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * @param maxBytes the maxBytes to set
+	 */
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+}
@@ -0,0 +1,233 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * PriorityConnectionGate
+ * 
+ * Admits connection checkouts by ConnectionPriority.  Up to capacity connections may be
+ * checked out, of which a reserved share is only handed to HIGH priority callers, so a
+ * large batch run cannot take the whole pool.  Callers that cannot be admitted wait in a
+ * priority queue, served by priority and then in arrival order.
+ */
+public class PriorityConnectionGate {
+
+	private final int capacity;
+
+	private final int reserved;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final PriorityQueue<Waiter> waiters = new PriorityQueue<Waiter>();
+
+	private int inUse = 0;
+
+	private long sequence = 0;
+
+	private long blockCapacityTime = 900;
+
+	private TimeUnit blockCapacityTimeUnit = TimeUnit.SECONDS;
+
+	/**
+	 * @param capacity maximum number of connections checked out at once
+	 * @param highPriorityReserve share of the capacity reserved for HIGH priority, 0.0 to 1.0
+	 */
+	public PriorityConnectionGate(int capacity, double highPriorityReserve) {
+		if (capacity < 1 || highPriorityReserve < 0 || highPriorityReserve >= 1) {
+			throw new IllegalArgumentException("Invalid priority gate: capacity " + capacity + ", reserve " + highPriorityReserve);
+		}
+		this.capacity = capacity;
+		this.reserved = (int) Math.floor(capacity * highPriorityReserve);
+	}
+
+	/**
+	 * <code>acquire</code>
+	 * Waits up to blockCapacityTime to be admitted
+	 * 
+	 * @param priority priority of the caller
+	 * @return true if admitted
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean acquire(ConnectionPriority priority) throws InterruptedException {
+		return acquire(priority, blockCapacityTime, blockCapacityTimeUnit);
+	}
+
+	/**
+	 * <code>acquire</code>
+	 * @param priority priority of the caller
+	 * @param timeout maximum time to wait
+	 * @param unit unit of the timeout
+	 * @return true if admitted
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean acquire(ConnectionPriority priority, long timeout, TimeUnit unit) throws InterruptedException {
+		if (priority == null) {
+			priority = ConnectionPriority.NORMAL;
+		}
+		lock.lock();
+		try {
+			Waiter head = waiters.peek();
+			if (canAdmit(priority) && (head == null || head.priority.compareTo(priority) > 0)) {
+				inUse++;
+				return true;
+			}
+
+			Waiter waiter = new Waiter(priority, sequence++, lock.newCondition());
+			waiters.add(waiter);
+			long remaining = unit.toNanos(timeout);
+			try {
+				while (!waiter.granted) {
+					if (remaining <= 0) {
+						return false;
+					}
+					remaining = waiter.condition.awaitNanos(remaining);
+				}
+				return true;
+			} catch (InterruptedException e) {
+				if (waiter.granted) {
+					// admitted just as we were interrupted, hand the slot on
+					inUse--;
+					dispatch();
+				}
+				throw e;
+			} finally {
+				if (!waiter.granted) {
+					waiters.remove(waiter);
+					// a waiter ahead of others leaving may let them in
+					dispatch();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * <code>tryAcquireSpare</code>
+	 * Admits the caller without waiting, and only if nobody is waiting and another caller
+	 * of the same priority could still be admitted afterwards.  Used by background work such
+	 * as ConnectionKeepAlive, so it never takes the last free checkout.
+	 * 
+	 * @param priority priority of the caller
+	 * @return true if admitted
+	 */
+	public boolean tryAcquireSpare(ConnectionPriority priority) {
+		if (priority == null) {
+			priority = ConnectionPriority.NORMAL;
+		}
+		lock.lock();
+		try {
+			if (!waiters.isEmpty() || !canAdmit(priority)) {
+				return false;
+			}
+			inUse++;
+			if (!canAdmit(priority)) {
+				inUse--;
+				return false;
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * <code>release</code>
+	 * Returns a checkout and admits the next waiters that fit
+	 */
+	public void release() {
+		lock.lock();
+		try {
+			if (inUse > 0) {
+				inUse--;
+			}
+			dispatch();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @param blockCapacityTime how long acquire waits to be admitted
+	 * @param blockCapacityTimeUnit unit of blockCapacityTime
+	 */
+	public void setBlockCapacityTime(long blockCapacityTime, TimeUnit blockCapacityTimeUnit) {
+		this.blockCapacityTime = blockCapacityTime;
+		this.blockCapacityTimeUnit = blockCapacityTimeUnit;
+	}
+
+	/**
+	 * @return number of checkouts admitted and not yet released
+	 */
+	public int getInUse() {
+		lock.lock();
+		try {
+			return inUse;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return number of connections reserved for HIGH priority
+	 */
+	public int getReserved() {
+		return reserved;
+	}
+
+	private boolean canAdmit(ConnectionPriority priority) {
+		int free = capacity - inUse;
+		return priority == ConnectionPriority.HIGH ? free > 0 : free > reserved;
+	}
+
+	private void dispatch() {
+		Waiter head;
+		while ((head = waiters.peek()) != null && canAdmit(head.priority)) {
+			waiters.poll();
+			inUse++;
+			head.granted = true;
+			head.condition.signal();
+		}
+	}
+
+	private static final class Waiter implements Comparable<Waiter> {
+
+		final ConnectionPriority priority;
+
+		final long sequence;
+
+		final Condition condition;
+
+		boolean granted = false;
+
+		Waiter(ConnectionPriority priority, long sequence, Condition condition) {
+			this.priority = priority;
+			this.sequence = sequence;
+			this.condition = condition;
+		}
+
+		@Override
+		public int compareTo(Waiter other) {
+			int c = priority.compareTo(other.priority);
+			return c != 0 ? c : Long.compare(sequence, other.sequence);
+		}
+	}
+}
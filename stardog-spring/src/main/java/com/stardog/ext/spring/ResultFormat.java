@@ -0,0 +1,75 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import com.stardog.stark.io.RDFFormat;
+import com.stardog.stark.io.RDFFormats;
+import com.stardog.stark.query.io.QueryResultFormat;
+import com.stardog.stark.query.io.QueryResultFormats;
+
+/**
+ * ResultFormat
+ * 
+ * Encoding SnarlTemplate requests from the server for query results, see the resultFormat
+ * property of SnarlTemplate and DataSourceFactoryBean.  The formats differ in size on the
+ * wire and in the client CPU spent parsing them, which matters most for wide result sets,
+ * see ResultFormatBenchmark.
+ */
+public enum ResultFormat {
+
+	/**
+	 * Whatever the Stardog client negotiates by default
+	 */
+	DEFAULT(null, null),
+
+	/**
+	 * SPARQL results JSON and JSON-LD
+	 */
+	JSON(QueryResultFormats.JSON, RDFFormats.JSONLD),
+
+	/**
+	 * SPARQL results XML and RDF/XML
+	 */
+	XML(QueryResultFormats.XML, RDFFormats.RDFXML),
+
+	/**
+	 * Tab separated values and N-Triples, the cheapest of the text formats to parse
+	 */
+	TEXT(QueryResultFormats.TSV, RDFFormats.NTRIPLES);
+
+	private final QueryResultFormat selectFormat;
+
+	private final RDFFormat graphFormat;
+
+	ResultFormat(QueryResultFormat selectFormat, RDFFormat graphFormat) {
+		this.selectFormat = selectFormat;
+		this.graphFormat = graphFormat;
+	}
+
+	/**
+	 * @return the format of SELECT results, null for the client default
+	 */
+	public QueryResultFormat getSelectFormat() {
+		return selectFormat;
+	}
+
+	/**
+	 * @return the format of CONSTRUCT and DESCRIBE results, null for the client default
+	 */
+	public RDFFormat getGraphFormat() {
+		return graphFormat;
+	}
+}
@@ -0,0 +1,992 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import com.complexible.stardog.api.Connection;
+import com.complexible.stardog.api.ConnectionConfiguration;
+import com.complexible.stardog.api.ConnectionCredentials;
+import com.complexible.stardog.api.ConnectionPoolConfig;
+
+/**
+ * RoutingDataSource
+ * 
+ * DataSource for many databases on one Stardog server, e.g. one database per tenant.
+ * The database of each checkout comes from the DatabaseContextHolder, falling back to
+ * the defaultDatabase.
+ * 
+ * A pool is created for a database on its first checkout, and closed again once it
+ * has been idle for idleTime, or when more than maxPools databases are open, least
+ * recently used first.  Pools default to minPool 0, so an inactive database holds no
+ * connections.  Each pool is configured like the pool of a DataSourceFactoryBean.
+ * 
+ * maxConnections caps the connections checked out across all databases at once.  It is
+ * not a cap on open connections: every open pool also keeps up to maxIdle idle
+ * connections, so up to maxIdle * maxPools idle connections can be open on top of the
+ * checked out ones.  Lower maxIdle, maxPools or idleTime to bound them.
+ * 
+ * A StardogTransactionManager over a RoutingDataSource binds the connection of the
+ * database active when the transaction begins.
+ * 
+ * Connections are handed out as proxies that remember their database, and close()
+ * releases them like releaseConnection.
+ * 
+ * The keep-alive, leak detection and connection cache settings inherited from DataSource
+ * apply to every database pool, and checkForLeaks and getDrainingPools cover all open
+ * pools.  Settings that only make sense for a single pool, such as reconfigure or a shared
+ * PriorityConnectionGate, are rejected with an UnsupportedOperationException.
+ */
+public class RoutingDataSource extends DataSource implements InitializingBean, DisposableBean {
+
+	final Logger log = LoggerFactory.getLogger(RoutingDataSource.class);
+
+	/**
+	 * Properties used by the ConnectionConfig of every database
+	 */
+	private String url;
+
+	private String username;
+
+	private String password;
+
+	private Supplier<ConnectionCredentials> supplier;
+
+	private boolean reasoningType = false;
+
+	private Properties connectionProperties;
+
+	private String defaultDatabase;
+
+	/**
+	 * Properties used by the ConnectionPoolConfig of every database
+	 */
+	private int minPool = 0;
+
+	private int maxPool = 20;
+
+	private int maxIdle = 10;
+
+	private long expirationTime = 300;
+
+	private TimeUnit expirationTimeUnit = TimeUnit.SECONDS;
+
+	private long blockCapacityTime = 900;
+
+	private TimeUnit blockCapacityTimeUnit = TimeUnit.SECONDS;
+
+	private boolean noExpiration = false;
+
+	private boolean failAtCapacity = false;
+
+	private boolean growAtCapacity = true;
+
+	/**
+	 * Limits across all databases
+	 */
+	private int maxConnections = 200;
+
+	private int maxPools = 100;
+
+	private long idleTime = 300;
+
+	private TimeUnit idleTimeUnit = TimeUnit.SECONDS;
+
+	// access ordered, the eldest entry is the least recently used database
+	private final LinkedHashMap<String, DatabasePool> pools = new LinkedHashMap<String, DatabasePool>(16, 0.75f, true);
+
+	private final AtomicInteger checkedOut = new AtomicInteger();
+
+	// factory beans of the pools created by createDataSource, destroyed along with their pool
+	private final Map<DataSource, DataSourceFactoryBean> factories = new ConcurrentHashMap<DataSource, DataSourceFactoryBean>();
+
+	private Semaphore connectionPermits;
+
+	private ScheduledExecutorService evictor;
+
+	@Override
+	public void afterPropertiesSet() {
+		if (url == null) {
+			throw new IllegalArgumentException("Property 'url' is required");
+		}
+		// SnarlTemplate reads the query settings from this data source, not the per database pools
+		DataSourceFactoryBean settings = createFactory(defaultDatabase);
+		settings.applyQuerySettings(this, settings.createOptions());
+		connectionPermits = new Semaphore(maxConnections, true);
+		long idleMillis = idleTimeUnit.toMillis(idleTime);
+		if (idleMillis > 0 && evictor == null) {
+			evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "stardog-pool-evictor");
+				t.setDaemon(true);
+				return t;
+			});
+			long period = Math.max(idleMillis / 2, 100);
+			evictor.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * <code>getConnection</code>
+	 * @param priority priority of the checkout
+	 * @return Stardog Connection to the database of the current thread
+	 */
+	@Override
+	public Connection getConnection(ConnectionPriority priority) {
+		String database = DatabaseContextHolder.getDatabase();
+		if (database == null) {
+			database = defaultDatabase;
+		}
+		if (database == null) {
+			log.error("No Stardog database set in the DatabaseContextHolder");
+			throw new IllegalStateException("No Stardog database set in the DatabaseContextHolder");
+		}
+		return getConnection(database, priority);
+	}
+
+	/**
+	 * <code>getCacheScope</code>
+	 * @return server, database of the current thread and reasoning setting, part of the keys
+	 * of the PersistentResultCache
+	 */
+	@Override
+	public String getCacheScope() {
+		String database = DatabaseContextHolder.getDatabase();
+		return cacheScope(url, database != null ? database : defaultDatabase, reasoningType);
+	}
+
+	/**
+	 * <code>getConnection</code>
+	 * @param database Stardog database
+	 * @param priority priority of the checkout
+	 * @return Stardog Connection to the database
+	 */
+	public Connection getConnection(String database, ConnectionPriority priority) {
+		if (connectionPermits == null) {
+			log.error("Stardog routing data source is not initialized");
+			throw new RuntimeException("Stardog routing data source is not initialized");
+		}
+		try {
+			if (!connectionPermits.tryAcquire(blockCapacityTime, blockCapacityTimeUnit)) {
+				log.error("Timed out waiting for a Stardog connection, " + maxConnections + " checked out");
+				throw new RuntimeException("Timed out waiting for a Stardog connection");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+
+		DatabasePool databasePool = null;
+		try {
+			databasePool = checkout(database);
+			Connection connection = databasePool.getDataSource().getConnection(priority);
+			checkedOut.incrementAndGet();
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, new RoutedConnection(connection, databasePool));
+		} catch (RuntimeException e) {
+			if (databasePool != null) {
+				databasePool.checkin();
+			}
+			connectionPermits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * <code>releaseConnection</code>
+	 * @param connection Stardog Connection obtained from this data source
+	 */
+	@Override
+	public void releaseConnection(Connection connection) {
+		returnRouted(connection, true);
+	}
+
+	/**
+	 * <code>invalidateConnection</code>
+	 * Drops a connection from the pool of its database, e.g. one left with an open transaction
+	 * 
+	 * @param connection Stardog Connection obtained from this data source
+	 */
+	@Override
+	public void invalidateConnection(Connection connection) {
+		returnRouted(connection, false);
+	}
+
+	private void returnRouted(Connection connection, boolean valid) {
+		if (connection == null) {
+			return;
+		}
+		RoutedConnection routed = checkedOut(connection);
+		if (routed == null) {
+			log.warn("Ignoring release of a Stardog connection not obtained from this data source, or already released");
+			return;
+		}
+		try {
+			DataSource target = routed.databasePool.getDataSource();
+			if (valid) {
+				target.releaseConnection(routed.target);
+			} else {
+				target.invalidateConnection(routed.target);
+			}
+		} finally {
+			routed.databasePool.checkin();
+			checkedOut.decrementAndGet();
+			connectionPermits.release();
+		}
+	}
+
+	/**
+	 * <code>reconfigure</code>
+	 * Not supported, every database has its own pool.  Change the properties of the
+	 * RoutingDataSource instead, and evict the pools to have them reopened with them.
+	 */
+	@Override
+	public void reconfigure(ConnectionConfiguration configuration, ConnectionPoolConfig poolConfiguration) {
+		throw new UnsupportedOperationException("A RoutingDataSource cannot be reconfigured as a whole, evict its database pools instead");
+	}
+
+	/**
+	 * <code>checkForLeaks</code>
+	 * @return number of connections held past the leak detection time, across all open pools
+	 */
+	@Override
+	public int checkForLeaks() {
+		int leaks = 0;
+		for (DataSource target : openDataSources()) {
+			leaks += target.checkForLeaks();
+		}
+		return leaks;
+	}
+
+	/**
+	 * @return number of replaced pools still draining, across all open database pools
+	 */
+	@Override
+	public int getDrainingPools() {
+		int draining = 0;
+		for (DataSource target : openDataSources()) {
+			draining += target.getDrainingPools();
+		}
+		return draining;
+	}
+
+	/*
+	 * Keep-alive runs inside every database pool, never on the routing data source itself
+	 */
+	@Override
+	Connection obtainMaintenanceConnection() {
+		throw new UnsupportedOperationException("A RoutingDataSource has no pool of its own to maintain");
+	}
+
+	@Override
+	void releaseMaintenanceConnection(Connection connection, boolean valid) {
+		throw new UnsupportedOperationException("A RoutingDataSource has no pool of its own to maintain");
+	}
+
+	private List<DataSource> openDataSources() {
+		List<DataSource> open = new ArrayList<DataSource>();
+		synchronized (pools) {
+			for (DatabasePool databasePool : pools.values()) {
+				DataSource target = databasePool.current();
+				if (target != null) {
+					open.add(target);
+				}
+			}
+		}
+		return open;
+	}
+
+	/*
+	 * The checkout behind a connection handed out by this data source, marked as released,
+	 * or null if it is not ours or was already released
+	 */
+	private RoutedConnection checkedOut(Connection connection) {
+		if (!Proxy.isProxyClass(connection.getClass())) {
+			return null;
+		}
+		InvocationHandler handler = Proxy.getInvocationHandler(connection);
+		if (!(handler instanceof RoutedConnection)) {
+			return null;
+		}
+		RoutedConnection routed = (RoutedConnection) handler;
+		return routed.owner() == this && routed.released.compareAndSet(false, true) ? routed : null;
+	}
+
+	/**
+	 * <code>setConnectionReasoning</code>
+	 * Applies to pools created from now on, idle pools are closed so they pick it up
+	 * 
+	 * @param reasoningType the reasoningType to set
+	 */
+	@Override
+	public void setConnectionReasoning(boolean reasoningType) {
+		this.reasoningType = reasoningType;
+		evict(0);
+	}
+
+	/**
+	 * <code>evict</code>
+	 * Closes the pool of a database, if no connection to it is checked out
+	 * 
+	 * @param database Stardog database
+	 * @return true if the pool was closed
+	 */
+	public boolean evict(String database) {
+		DatabasePool databasePool;
+		synchronized (pools) {
+			databasePool = pools.get(database);
+			if (databasePool == null || databasePool.inUse.get() > 0) {
+				return false;
+			}
+			pools.remove(database);
+		}
+		databasePool.destroy();
+		return true;
+	}
+
+	/**
+	 * <code>evictIdle</code>
+	 * Closes the pools that have been idle for idleTime, run periodically in the background
+	 * 
+	 * @return number of pools closed
+	 */
+	public int evictIdle() {
+		return evict(idleTimeUnit.toNanos(idleTime));
+	}
+
+	private int evict(long idleNanos) {
+		List<DatabasePool> evicted = new ArrayList<DatabasePool>();
+		long now = System.nanoTime();
+		synchronized (pools) {
+			for (Iterator<DatabasePool> it = pools.values().iterator(); it.hasNext(); ) {
+				DatabasePool databasePool = it.next();
+				if (databasePool.inUse.get() == 0 && now - databasePool.lastUsed >= idleNanos) {
+					it.remove();
+					evicted.add(databasePool);
+				}
+			}
+		}
+		for (DatabasePool databasePool : evicted) {
+			databasePool.destroy();
+		}
+		return evicted.size();
+	}
+
+	/**
+	 * @return the databases with an open pool, least recently used first
+	 */
+	public Set<String> getOpenDatabases() {
+		synchronized (pools) {
+			return new LinkedHashSet<String>(pools.keySet());
+		}
+	}
+
+	/**
+	 * @return number of connections checked out across all databases
+	 */
+	public int getCheckedOutConnections() {
+		return checkedOut.get();
+	}
+
+	@Override
+	public void destroyPool() {
+		List<DatabasePool> closed;
+		synchronized (pools) {
+			closed = new ArrayList<DatabasePool>(pools.values());
+			pools.clear();
+		}
+		for (DatabasePool databasePool : closed) {
+			databasePool.destroy();
+		}
+	}
+
+	/**
+	 * <code>destroy</code>
+	 * Called by Spring 
+	 */
+	@Override
+	public void destroy() {
+		if (evictor != null) {
+			evictor.shutdownNow();
+			evictor = null;
+		}
+		destroyPool();
+	}
+
+	/**
+	 * <code>createDataSource</code>
+	 * Creates the pool of one database, override to customize it per database
+	 * 
+	 * @param database Stardog database
+	 * @return initialized DataSource
+	 */
+	protected DataSource createDataSource(String database) {
+		DataSourceFactoryBean factory = createFactory(database);
+		try {
+			factory.afterPropertiesSet();
+		} catch (Exception e) {
+			log.error("Error creating Stardog pool for database " + database, e);
+			throw new RuntimeException(e);
+		}
+		DataSource created = factory.getDataSource();
+		factories.put(created, factory);
+		return created;
+	}
+
+	/*
+	 * Pools are built by the same code as a single database pool, so the two cannot drift
+	 */
+	DataSourceFactoryBean createFactory(String database) {
+		DataSourceFactoryBean factory = new DataSourceFactoryBean();
+		factory.setTo(database);
+		factory.setUrl(url);
+		factory.setUsername(username);
+		factory.setPassword(password);
+		factory.setSupplier(supplier);
+		factory.setReasoningType(reasoningType);
+		factory.setConnectionProperties(connectionProperties);
+		factory.setResultFormat(getResultFormat());
+		factory.setMinPool(minPool);
+		factory.setMaxPool(maxPool);
+		factory.setMaxIdle(maxIdle);
+		factory.setExpirationTime(expirationTime);
+		factory.setExpirationTimeUnit(expirationTimeUnit);
+		factory.setNoExpiration(noExpiration);
+		factory.setBlockCapacityTime(blockCapacityTime);
+		factory.setBlockCapacityTimeUnit(blockCapacityTimeUnit);
+		factory.setFailAtCapacity(failAtCapacity);
+		factory.setGrowAtCapacity(growAtCapacity);
+		factory.setKeepAliveTime(getKeepAliveTime());
+		factory.setKeepAliveTimeUnit(getKeepAliveTimeUnit());
+		factory.setValidationQuery(getValidationQuery());
+		factory.setLeakDetectionTime(getLeakDetectionTime());
+		factory.setLeakDetectionTimeUnit(getLeakDetectionTimeUnit());
+		factory.setReclaimLeakedConnections(isReclaimLeakedConnections());
+		factory.setConnectionCacheStripes(getConnectionCacheStripes());
+		factory.setConnectionCacheTime(getConnectionCacheTime());
+		return factory;
+	}
+
+	/*
+	 * Finds or registers the pool of a database and counts the checkout against it,
+	 * making room under maxPools by closing the least recently used idle pool
+	 */
+	private DatabasePool checkout(String database) {
+		DatabasePool evicted = null;
+		DatabasePool databasePool;
+		synchronized (pools) {
+			databasePool = pools.get(database);
+			if (databasePool == null) {
+				if (pools.size() >= maxPools) {
+					for (Iterator<DatabasePool> it = pools.values().iterator(); it.hasNext(); ) {
+						DatabasePool eldest = it.next();
+						if (eldest.inUse.get() == 0) {
+							it.remove();
+							evicted = eldest;
+							break;
+						}
+					}
+					if (evicted == null) {
+						log.debug("All " + pools.size() + " Stardog pools in use, opening one more for " + database);
+					}
+				}
+				databasePool = new DatabasePool(database);
+				pools.put(database, databasePool);
+			}
+			// counted under the lock, so eviction never closes a pool about to be used
+			databasePool.inUse.incrementAndGet();
+		}
+		if (evicted != null) {
+			log.debug("Closing least recently used Stardog pool " + evicted.database);
+			evicted.destroy();
+		}
+		return databasePool;
+	}
+
+	/**
+	 * The pool of one database, created on first use outside of the pools lock
+	 */
+	private class DatabasePool {
+
+		private final String database;
+
+		private final AtomicInteger inUse = new AtomicInteger();
+
+		private volatile long lastUsed = System.nanoTime();
+
+		private DataSource dataSource;
+
+		private boolean destroyed = false;
+
+		DatabasePool(String database) {
+			this.database = database;
+		}
+
+		synchronized DataSource current() {
+			return dataSource;
+		}
+
+		synchronized DataSource getDataSource() {
+			if (destroyed) {
+				throw new IllegalStateException("Stardog pool for " + database + " was closed");
+			}
+			if (dataSource == null) {
+				log.debug("Creating Stardog connection pool for " + database);
+				dataSource = createDataSource(database);
+			}
+			return dataSource;
+		}
+
+		void checkin() {
+			lastUsed = System.nanoTime();
+			inUse.decrementAndGet();
+		}
+
+		synchronized void destroy() {
+			destroyed = true;
+			if (dataSource != null) {
+				// the factory bean also stops what it started besides the pool, e.g. credential refresh
+				DataSourceFactoryBean factory = factories.remove(dataSource);
+				if (factory != null) {
+					factory.destroy();
+				} else {
+					dataSource.destroy();
+				}
+				dataSource = null;
+			}
+		}
+	}
+
+	/**
+	 * Handler of the connections handed out, carrying the pool of their database
+	 */
+	private final class RoutedConnection implements InvocationHandler {
+
+		private final Connection target;
+
+		private final DatabasePool databasePool;
+
+		private final AtomicBoolean released = new AtomicBoolean(false);
+
+		RoutedConnection(Connection target, DatabasePool databasePool) {
+			this.target = target;
+			this.databasePool = databasePool;
+		}
+
+		RoutingDataSource owner() {
+			return RoutingDataSource.this;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("equals") && args != null && args.length == 1) {
+				return proxy == args[0];
+			}
+			if (name.equals("hashCode") && (args == null || args.length == 0)) {
+				return System.identityHashCode(proxy);
+			}
+			if (name.equals("close") && (args == null || args.length == 0)) {
+				releaseConnection((Connection) proxy);
+				return null;
+			}
+			if (released.get()) {
+				if (name.equals("isOpen")) {
+					return false;
+				}
+				throw new IllegalStateException("Stardog connection was already returned to the pool");
+			}
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	/**
+	 * Not supported, a gate is sized for one pool
+	 * 
+	 * @param priorityGate must be null
+	 */
+	@Override
+	public void setPriorityGate(PriorityConnectionGate priorityGate) {
+		if (priorityGate != null) {
+			throw new UnsupportedOperationException("A RoutingDataSource cannot share a PriorityConnectionGate between its database pools");
+		}
+	}
+
+	/**
+	 * Not supported, a sizer is sized for one pool
+	 * 
+	 * @param poolSizer must be null
+	 */
+	@Override
+	public void setPoolSizer(AdaptivePoolSizer poolSizer) {
+		if (poolSizer != null) {
+			throw new UnsupportedOperationException("A RoutingDataSource cannot share an AdaptivePoolSizer between its database pools");
+		}
+	}
+
+	/**
+	 * Not supported, database pools validate their default number of idle connections
+	 * 
+	 * @param keepAliveConnections ignored
+	 */
+	@Override
+	public void setKeepAliveConnections(int keepAliveConnections) {
+		throw new UnsupportedOperationException("A RoutingDataSource does not support keepAliveConnections, set keepAliveTime only");
+	}
+
+	/**********************************************************
+	 * Getters and Setters
+	 **********************************************************/
+
+	/**
+	 * @return the url
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * Stardog server url
+	 * 
+	 * @param url the url to set
+	 */
+	public void setUrl(String url) {
+		this.url = url;
+	}
+
+	/**
+	 * @return the username
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * @param username the username to set
+	 */
+	public void setUsername(String username) {
+		this.username = username;
+	}
+
+	/**
+	 * @return the password
+	 */
+	public String getPassword() {
+		return password;
+	}
+
+	/**
+	 * @param password the password to set
+	 */
+	public void setPassword(String password) {
+		this.password = password;
+	}
+
+	/**
+	 * @return the supplier
+	 */
+	public Supplier<ConnectionCredentials> getSupplier() {
+		return supplier;
+	}
+
+	/**
+	 * @param supplier the supplier to set
+	 */
+	public void setSupplier(Supplier<ConnectionCredentials> supplier) {
+		this.supplier = supplier;
+	}
+
+	/**
+	 * @return the reasoningType
+	 */
+	public boolean getReasoningType() {
+		return reasoningType;
+	}
+
+	/**
+	 * @param reasoningType the reasoningType to set
+	 */
+	public void setReasoningType(boolean reasoningType) {
+		this.reasoningType = reasoningType;
+	}
+
+	/**
+	 * @return the connectionProperties
+	 */
+	public Properties getConnectionProperties() {
+		return connectionProperties;
+	}
+
+	/**
+	 * @param connectionProperties the connectionProperties to set
+	 */
+	public void setConnectionProperties(Properties connectionProperties) {
+		this.connectionProperties = connectionProperties;
+	}
+
+	/**
+	 * @return the defaultDatabase
+	 */
+	public String getDefaultDatabase() {
+		return defaultDatabase;
+	}
+
+	/**
+	 * Database used when the DatabaseContextHolder has none, null to require one
+	 * 
+	 * @param defaultDatabase the defaultDatabase to set
+	 */
+	public void setDefaultDatabase(String defaultDatabase) {
+		this.defaultDatabase = defaultDatabase;
+	}
+
+	/**
+	 * @return the minPool
+	 */
+	public int getMinPool() {
+		return minPool;
+	}
+
+	/**
+	 * Connections kept open per database, 0 so that inactive databases hold none
+	 * 
+	 * @param minPool the minPool to set
+	 */
+	public void setMinPool(int minPool) {
+		this.minPool = minPool;
+	}
+
+	/**
+	 * @return the maxPool
+	 */
+	public int getMaxPool() {
+		return maxPool;
+	}
+
+	/**
+	 * Connections per database
+	 * 
+	 * @param maxPool the maxPool to set
+	 */
+	public void setMaxPool(int maxPool) {
+		this.maxPool = maxPool;
+	}
+
+	/**
+	 * @return the maxIdle
+	 */
+	public int getMaxIdle() {
+		return maxIdle;
+	}
+
+	/**
+	 * @param maxIdle the maxIdle to set
+	 */
+	public void setMaxIdle(int maxIdle) {
+		this.maxIdle = maxIdle;
+	}
+
+	/**
+	 * @return the expirationTime
+	 */
+	public long getExpirationTime() {
+		return expirationTime;
+	}
+
+	/**
+	 * @param expirationTime the expirationTime to set
+	 */
+	public void setExpirationTime(long expirationTime) {
+		this.expirationTime = expirationTime;
+	}
+
+	/**
+	 * @return the expirationTimeUnit
+	 */
+	public TimeUnit getExpirationTimeUnit() {
+		return expirationTimeUnit;
+	}
+
+	/**
+	 * @param expirationTimeUnit the expirationTimeUnit to set
+	 */
+	public void setExpirationTimeUnit(TimeUnit expirationTimeUnit) {
+		this.expirationTimeUnit = expirationTimeUnit;
+	}
+
+	/**
+	 * @return the blockCapacityTime
+	 */
+	public long getBlockCapacityTime() {
+		return blockCapacityTime;
+	}
+
+	/**
+	 * How long a checkout waits for a connection, per database and across all databases
+	 * 
+	 * @param blockCapacityTime the blockCapacityTime to set
+	 */
+	public void setBlockCapacityTime(long blockCapacityTime) {
+		this.blockCapacityTime = blockCapacityTime;
+	}
+
+	/**
+	 * @return the blockCapacityTimeUnit
+	 */
+	public TimeUnit getBlockCapacityTimeUnit() {
+		return blockCapacityTimeUnit;
+	}
+
+	/**
+	 * @param blockCapacityTimeUnit the blockCapacityTimeUnit to set
+	 */
+	public void setBlockCapacityTimeUnit(TimeUnit blockCapacityTimeUnit) {
+		this.blockCapacityTimeUnit = blockCapacityTimeUnit;
+	}
+
+	/**
+	 * @return the noExpiration
+	 */
+	public boolean isNoExpiration() {
+		return noExpiration;
+	}
+
+	/**
+	 * @param noExpiration the noExpiration to set
+	 */
+	public void setNoExpiration(boolean noExpiration) {
+		this.noExpiration = noExpiration;
+	}
+
+	/**
+	 * @return the failAtCapacity
+	 */
+	public boolean isFailAtCapacity() {
+		return failAtCapacity;
+	}
+
+	/**
+	 * @param failAtCapacity the failAtCapacity to set
+	 */
+	public void setFailAtCapacity(boolean failAtCapacity) {
+		this.failAtCapacity = failAtCapacity;
+	}
+
+	/**
+	 * @return the growAtCapacity
+	 */
+	public boolean isGrowAtCapacity() {
+		return growAtCapacity;
+	}
+
+	/**
+	 * @param growAtCapacity the growAtCapacity to set
+	 */
+	public void setGrowAtCapacity(boolean growAtCapacity) {
+		this.growAtCapacity = growAtCapacity;
+	}
+
+	/**
+	 * @return the maxConnections
+	 */
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * Connections checked out across all databases at once, applied in afterPropertiesSet.
+	 * Idle connections held by the pools do not count, see maxIdle and maxPools.
+	 * 
+	 * @param maxConnections the maxConnections to set
+	 */
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	/**
+	 * @return the maxPools
+	 */
+	public int getMaxPools() {
+		return maxPools;
+	}
+
+	/**
+	 * Databases with an open pool, least recently used idle pools are closed beyond this
+	 * 
+	 * @param maxPools the maxPools to set
+	 */
+	public void setMaxPools(int maxPools) {
+		this.maxPools = maxPools;
+	}
+
+	/**
+	 * @return the idleTime
+	 */
+	public long getIdleTime() {
+		return idleTime;
+	}
+
+	/**
+	 * How long a pool may go unused before it is closed, 0 disables idle eviction
+	 * 
+	 * @param idleTime the idleTime to set
+	 */
+	public void setIdleTime(long idleTime) {
+		this.idleTime = idleTime;
+	}
+
+	/**
+	 * @return the idleTimeUnit
+	 */
+	public TimeUnit getIdleTimeUnit() {
+		return idleTimeUnit;
+	}
+
+	/**
+	 * @param idleTimeUnit the idleTimeUnit to set
+	 */
+	public void setIdleTimeUnit(TimeUnit idleTimeUnit) {
+		this.idleTimeUnit = idleTimeUnit;
+	}
+
+}
@@ -0,0 +1,33 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * RowCodec
+ * 
+ * Serializes mapped rows for a SpillingResultBuffer, see SnarlTemplate.query with a
+ * RowCodec.  Implementations should be compact, as every spilled row goes through them.
+ */
+public interface RowCodec<T> {
+
+	void write(T row, DataOutput out) throws IOException;
+
+	T read(DataInput in) throws IOException;
+}
@@ -19,20 +19,32 @@ package com.stardog.ext.spring;
 import com.complexible.stardog.Contexts;
 import com.complexible.stardog.StardogException;
 import com.complexible.stardog.api.*;
+import com.stardog.ext.spring.AdaptiveConcurrencyLimiter.Operation;
+import com.stardog.ext.spring.mapper.StatementMapper;
 import com.stardog.ext.spring.utils.TypeConverter;
 import com.google.common.collect.ImmutableSet;
 import com.stardog.stark.*;
+import com.stardog.stark.io.RDFFormat;
+import com.stardog.stark.io.RDFWriters;
 import com.stardog.stark.query.QueryExecutionFailure;
 import com.stardog.stark.query.GraphQueryResult;
 import com.stardog.stark.query.SelectQueryResult;
+import com.stardog.stark.query.io.QueryResultFormat;
+import com.stardog.stark.query.io.QueryResultWriters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -52,8 +64,27 @@ public class SnarlTemplate {
 
 	final Logger log = LoggerFactory.getLogger(SnarlTemplate.class);
 
+	/**
+	 * Subjects buffered by constructGrouped when no limit is given
+	 */
+	public static final int DEFAULT_GROUPED_SUBJECTS = 1000;
+
 	private DataSource dataSource;
 
+	private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+	private ConnectionPriority priority;
+
+	private int spillThreshold = 100000;
+
+	private File spillDirectory;
+
+	private ValueCache valueCache;
+
+	private PersistentResultCache resultCache;
+
+	private ResultFormat resultFormat;
+
 	/**
 	 * @return the dataSource
 	 */
@@ -67,7 +98,259 @@ public class SnarlTemplate {
 	public void setDataSource(DataSource dataSource) {
 		this.dataSource = dataSource;
 	}
-	
+
+	/**
+	 * @return the resultFormat set on this template, null when the DataSource's is used
+	 */
+	public ResultFormat getResultFormat() {
+		return resultFormat;
+	}
+
+	/**
+	 * Encoding requested for the results of SELECT, CONSTRUCT and DESCRIBE queries, overrides
+	 * the resultFormat of the DataSource when set
+	 * 
+	 * @param resultFormat the resultFormat to set
+	 */
+	public void setResultFormat(ResultFormat resultFormat) {
+		this.resultFormat = resultFormat;
+	}
+
+	/**
+	 * @return the concurrencyLimiter
+	 */
+	public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+		return concurrencyLimiter;
+	}
+
+	/**
+	 * Limits the operations in flight against Stardog, operations over the limit
+	 * fail with a ConcurrencyLimitExceededException
+	 * 
+	 * @param concurrencyLimiter the concurrencyLimiter to set
+	 */
+	public void setConcurrencyLimiter(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	/**
+	 * @return the priority
+	 */
+	public ConnectionPriority getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Priority of the connections this template obtains, unless the calling thread
+	 * sets one through ConnectionPriorityHolder or withPriority
+	 * 
+	 * @param priority the priority to set
+	 */
+	public void setPriority(ConnectionPriority priority) {
+		this.priority = priority;
+	}
+
+	/**
+	 * @return the spillThreshold
+	 */
+	public int getSpillThreshold() {
+		return spillThreshold;
+	}
+
+	/**
+	 * Rows kept in memory by query calls given a RowCodec before they spill to disk
+	 * 
+	 * @param spillThreshold the spillThreshold to set
+	 */
+	public void setSpillThreshold(int spillThreshold) {
+		this.spillThreshold = spillThreshold;
+	}
+
+	/**
+	 * @return the spillDirectory
+	 */
+	public File getSpillDirectory() {
+		return spillDirectory;
+	}
+
+	/**
+	 * Directory for spilled results, null for java.io.tmpdir
+	 * 
+	 * @param spillDirectory the spillDirectory to set
+	 */
+	public void setSpillDirectory(File spillDirectory) {
+		this.spillDirectory = spillDirectory;
+	}
+
+	/**
+	 * @return the valueCache
+	 */
+	public ValueCache getValueCache() {
+		return valueCache;
+	}
+
+	/**
+	 * Interning cache for the IRIs and literals of the write methods, null to
+	 * create new values on every call
+	 * 
+	 * @param valueCache the valueCache to set
+	 */
+	public void setValueCache(ValueCache valueCache) {
+		this.valueCache = valueCache;
+	}
+
+	/**
+	 * @return the resultCache
+	 */
+	public PersistentResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * On-disk cache of the queryCached methods, null to always query the server
+	 * 
+	 * @param resultCache the resultCache to set
+	 */
+	public void setResultCache(PersistentResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	/**
+	 * <code>withPriority</code>
+	 * Runs template operations with the given connection priority
+	 * 
+	 * @param priority priority of the connections obtained by the action
+	 * @param action template operations to run
+	 * @param <T> generic type of the action result
+	 * @return result of the action
+	 */
+	public <T> T withPriority(ConnectionPriority priority, Supplier<T> action) {
+		ConnectionPriority previous = ConnectionPriorityHolder.getPriority(null);
+		ConnectionPriorityHolder.setPriority(priority);
+		try {
+			return action.get();
+		} finally {
+			ConnectionPriorityHolder.setPriority(previous);
+		}
+	}
+
+	/*
+	 * Connection handling that participates in a StardogTransactionManager transaction when
+	 * one is bound to the thread - the transaction manager then owns begin/commit and release
+	 * 
+	 * The concurrency limiter, if any, admits the operation before a connection is requested
+	 */
+	private Connection getConnection() {
+		if (concurrencyLimiter != null) {
+			concurrencyLimiter.acquire();
+		}
+		try {
+			return DataSourceUtils.getConnection(dataSource,
+					ConnectionPriorityHolder.getPriority(priority != null ? priority : ConnectionPriority.NORMAL));
+		} catch (RuntimeException e) {
+			if (concurrencyLimiter != null) {
+				concurrencyLimiter.release();
+			}
+			throw e;
+		}
+	}
+
+	private void releaseConnection(Connection connection) {
+		releaseConnection(connection, true);
+	}
+
+	/*
+	 * A connection that could not be rolled back is dropped rather than pooled, so the
+	 * next borrower cannot inherit its open transaction
+	 */
+	private void releaseConnection(Connection connection, boolean reusable) {
+		try {
+			if (reusable) {
+				DataSourceUtils.releaseConnection(connection, dataSource);
+			} else {
+				dataSource.invalidateConnection(connection);
+			}
+		} finally {
+			if (concurrencyLimiter != null) {
+				concurrencyLimiter.release();
+			}
+		}
+	}
+
+	/*
+	 * Applies the query timeout of the DataSource, see ConnectionOptions, and the result format
+	 */
+	private <Q extends Query<?>> Q prepare(Q query) {
+		long timeout = dataSource.getQueryTimeout();
+		if (timeout > 0) {
+			query.timeout(timeout);
+		}
+		ResultFormat format = resultFormat != null ? resultFormat : dataSource.getResultFormat();
+		if (format != null && format != ResultFormat.DEFAULT) {
+			if (query instanceof SelectQuery) {
+				((SelectQuery) query).format(format.getSelectFormat());
+			} else if (query instanceof GraphQuery) {
+				((GraphQuery) query).format(format.getGraphFormat());
+			}
+		}
+		return query;
+	}
+
+	private IRI iri(String iri) {
+		return valueCache != null ? valueCache.iri(iri) : Values.iri(iri);
+	}
+
+	private Value literal(Object object) {
+		return valueCache != null ? valueCache.literal(object) : TypeConverter.asLiteral(object);
+	}
+
+	private void begin(Connection connection) {
+		if (!DataSourceUtils.isConnectionTransactional(connection, dataSource)) {
+			connection.begin();
+		}
+	}
+
+	private void commit(Connection connection) {
+		if (!DataSourceUtils.isConnectionTransactional(connection, dataSource)) {
+			timed(Operation.WRITE, () -> {
+				connection.commit();
+				return null;
+			});
+		}
+	}
+
+	/*
+	 * Reports the duration of a server round-trip to the concurrency limiter, which must not
+	 * see the time spent waiting for a connection or in the caller's callbacks
+	 */
+	private <T> T timed(Operation operation, Supplier<T> call) {
+		if (concurrencyLimiter == null) {
+			return call.get();
+		}
+		long start = System.nanoTime();
+		T result = call.get();
+		concurrencyLimiter.sample(operation, System.nanoTime() - start);
+		return result;
+	}
+
+	/*
+	 * Undoes the writes of a failed operation, unless a StardogTransactionManager owns the
+	 * transaction and rolls it back itself.  Returns false if the rollback failed, in which
+	 * case the connection must not go back to the pool
+	 */
+	private boolean rollback(Connection connection) {
+		if (DataSourceUtils.isConnectionTransactional(connection, dataSource)) {
+			return true;
+		}
+		try {
+			connection.rollback();
+			return true;
+		} catch (RuntimeException e) {
+			log.warn("Error rolling back Stardog transaction, discarding the connection", e);
+			return false;
+		}
+	}
+
 	/**
 	 * <code>execute</code>
 	 * 
@@ -81,14 +364,22 @@ public class SnarlTemplate {
 	 */
 	public <T> T execute(ConnectionCallback<T> action) { 
 
-		try (Connection connection = dataSource.getConnection()) {
-			connection.begin();
+		Connection connection = getConnection();
+		boolean reusable = true;
+		try {
+			begin(connection);
 			T t =  action.doWithConnection(connection);
-			connection.commit();
+			commit(connection);
 			return t;
 		} catch (StardogException e) {
+			reusable = rollback(connection);
 			log.error("Error executing ConnectionCallback", e);
 			throw new RuntimeException(e);
+		} catch (RuntimeException | Error e) {
+			reusable = rollback(connection);
+			throw e;
+		} finally {
+			releaseConnection(connection, reusable);
 		}
 	}
 	
@@ -99,28 +390,36 @@ public class SnarlTemplate {
 		Resource context = null;
 		
 		if (subject != null) { 
-			subjectResource = Values.iri(subject);
+			subjectResource = iri(subject);
 		}
 		if (predicate != null) {
-			predicateResource = Values.iri(predicate);
+			predicateResource = iri(predicate);
 		}
 		
 		if (graphUri != null) { 
-			context = Values.iri(graphUri);
+			context = iri(graphUri);
 		}
 		
 		Value objectValue = null;
 		if (object != null) {
-			objectValue = TypeConverter.asLiteral(object);
+			objectValue = literal(object);
 		}
 		
-		try (Connection connection = dataSource.getConnection()) {
-			connection.begin();
+		Connection connection = getConnection();
+		boolean reusable = true;
+		try {
+			begin(connection);
 			connection.remove().statements(subjectResource, predicateResource, objectValue, context);
-			connection.commit();
+			commit(connection);
 		} catch (StardogException e) {
+			reusable = rollback(connection);
 			log.error("Error with remove statement", e);
 			throw new RuntimeException(e);
+		} catch (RuntimeException | Error e) {
+			reusable = rollback(connection);
+			throw e;
+		} finally {
+			releaseConnection(connection, reusable);
 		}
 	}
 	
@@ -130,13 +429,21 @@ public class SnarlTemplate {
      * {@link Contexts#DEFAULT}, this will remove the default graph (no context). 
 	 */
 	public void remove(String graphUri) {
-		try (Connection connection = dataSource.getConnection()) {
-			connection.begin();
-			connection.remove().context(Values.iri(graphUri));
-			connection.commit();
+		Connection connection = getConnection();
+		boolean reusable = true;
+		try {
+			begin(connection);
+			connection.remove().context(iri(graphUri));
+			commit(connection);
 		} catch (StardogException e) {
+			reusable = rollback(connection);
 			log.error("Error removing graph from Stardog", e);
 			throw new RuntimeException(e);
+		} catch (RuntimeException | Error e) {
+			reusable = rollback(connection);
+			throw e;
+		} finally {
+			releaseConnection(connection, reusable);
 		}
 	}
 	
@@ -146,26 +453,34 @@ public class SnarlTemplate {
 		Resource context = null;
 		
 		if (subject != null) { 
-			subjectResource = Values.iri(subject);
+			subjectResource = iri(subject);
 		}
 		if (predicate != null) {
-			predicateResource = Values.iri(predicate);
+			predicateResource = iri(predicate);
 		}
 		
 		if (graphUri != null) { 
-			context = Values.iri(graphUri);
+			context = iri(graphUri);
 		}
 		
-		Value objectValue = TypeConverter.asLiteral(object);
+		Value objectValue = literal(object);
 
-		try (Connection connection = dataSource.getConnection()) {
-			connection.begin();
+		Connection connection = getConnection();
+		boolean reusable = true;
+		try {
+			begin(connection);
 			connection.remove().statements(subjectResource, predicateResource, null, context);
 			connection.add().statement(subjectResource, predicateResource, objectValue, context);
-			connection.commit();
+			commit(connection);
 		} catch (StardogException e) {
+			reusable = rollback(connection);
 			log.error("Error with remove statement", e);
 			throw new RuntimeException(e);
+		} catch (RuntimeException | Error e) {
+			reusable = rollback(connection);
+			throw e;
+		} finally {
+			releaseConnection(connection, reusable);
 		}
 	}
 	
@@ -184,15 +499,16 @@ public class SnarlTemplate {
 			return list;
 		}
 
-		try (Connection connection = dataSource.getConnection()) {
+		Connection connection = getConnection();
+		try {
 			Getter getter = connection.get();
 			
 			if (subject != null) { 
-				getter.subject(Values.iri(subject));
+				getter.subject(iri(subject));
 			}
 			
 			if (predicate != null) { 
-				getter.predicate(Values.iri(predicate));
+				getter.predicate(iri(predicate));
 			}
 			
 			Stream<Statement> iterator = getter.statements();
@@ -205,6 +521,8 @@ public class SnarlTemplate {
 		} catch (StardogException e) {
 			log.error("Error with getter", e);
 			throw new RuntimeException(e);
+		} finally {
+			releaseConnection(connection);
 		}
 		
 	}
@@ -218,18 +536,54 @@ public class SnarlTemplate {
 	 * @return generic type T
 	 */
 	public <T> T doWithAdder(AdderCallback<T> action) {
-		try (Connection connection = dataSource.getConnection()) {
-			connection.begin();
+		Connection connection = getConnection();
+		boolean reusable = true;
+		try {
+			begin(connection);
 			Adder adder = connection.add();
 			T t = action.add(adder);
-			connection.commit();
+			commit(connection);
 			return t;
 		} catch (StardogException e) {
+			reusable = rollback(connection);
 			log.error("Error with adder ", e);
 			throw new RuntimeException(e);
+		} catch (RuntimeException | Error e) {
+			reusable = rollback(connection);
+			throw e;
+		} finally {
+			releaseConnection(connection, reusable);
 		}
 	}
 	
+	/**
+	 * <code>addAll</code>
+	 * Writes objects with a StatementMapper in one transaction
+	 * 
+	 * @param items objects to write
+	 * @param mapper mapper of the objects' class
+	 * @param <T> type of the objects
+	 * @return number of statements added
+	 */
+	public <T> int addAll(Iterable<? extends T> items, StatementMapper<T> mapper) {
+		return addAll(items, mapper, null);
+	}
+
+	/**
+	 * <code>addAll</code>
+	 * Writes objects with a StatementMapper in one transaction
+	 * 
+	 * @param items objects to write
+	 * @param mapper mapper of the objects' class
+	 * @param graphUri named graph, null for the default graph
+	 * @param <T> type of the objects
+	 * @return number of statements added
+	 */
+	public <T> int addAll(Iterable<? extends T> items, StatementMapper<T> mapper, String graphUri) {
+		Resource context = (graphUri == null ? null : iri(graphUri));
+		return doWithAdder(adder -> mapper.write(items, adder, context, valueCache));
+	}
+
 	/**
 	 * <code>doWithRemover</code>
 	 * Template's callback interface for working with a Remover, using
@@ -239,15 +593,23 @@ public class SnarlTemplate {
 	 * @return generic type T
 	 */
 	public <T> T doWithRemover(RemoverCallback<T> action) {
-		try (Connection connection = dataSource.getConnection()) {
-			connection.begin();
+		Connection connection = getConnection();
+		boolean reusable = true;
+		try {
+			begin(connection);
 			Remover remover = connection.remove();
 			T t = action.remove(remover);
-			connection.commit();
+			commit(connection);
 			return t;
 		} catch (StardogException e) {
+			reusable = rollback(connection);
 			log.error("Error with remover ", e);
 			throw new RuntimeException(e);
+		} catch (RuntimeException | Error e) {
+			reusable = rollback(connection);
+			throw e;
+		} finally {
+			releaseConnection(connection, reusable);
 		}
 	}
 	
@@ -257,8 +619,9 @@ public class SnarlTemplate {
 	
 	public <T> List<T> construct(String sparql,  Map<String, Object> args, GraphMapper<T> mapper) {
 
-		try (Connection connection = dataSource.getConnection()) {
-			GraphQuery query = connection.graph(sparql);
+		Connection connection = getConnection();
+		try {
+			GraphQuery query = prepare(connection.graph(sparql));
 			
 			if (args != null) { 
 				for (Entry<String, Object> arg : args.entrySet()) { 					
@@ -268,7 +631,7 @@ public class SnarlTemplate {
 			
 			ArrayList<T> list = new ArrayList<T>();
 
-			try (GraphQueryResult result = query.execute()) {
+			try (GraphQueryResult result = timed(Operation.GRAPH, query::execute)) {
 				// return empty lists for empty queries
 				if (result == null) {
 					return list;
@@ -286,39 +649,350 @@ public class SnarlTemplate {
 		} catch (QueryExecutionFailure e) {
 			log.error("Error evaluating SPARQL construct query", e);
 			throw new RuntimeException(e);
+		} finally {
+			releaseConnection(connection);
+		}
+	}
+
+	public <T> List<T> constructGrouped(String sparql, SubjectGraphMapper<T> mapper) {
+		return constructGrouped(sparql, null, mapper, DEFAULT_GROUPED_SUBJECTS);
+	}
+
+	public <T> List<T> constructGrouped(String sparql, Map<String, Object> args, SubjectGraphMapper<T> mapper) {
+		return constructGrouped(sparql, args, mapper, DEFAULT_GROUPED_SUBJECTS);
+	}
+
+	/**
+	 * <code>doWithGraphResult</code>
+	 * Construct call handing the open GraphQueryResult to a callback, for consumers
+	 * that stream the statements into their own structures
+	 * 
+	 * @param sparql the SPARQL CONSTRUCT or DESCRIBE query to execute
+	 * @param args map of string and object to pass bind as input parameters
+	 * @param action callback reading the result, which is closed once it returns
+	 * @param <T> generic type of the callback result
+	 * @return the result of the callback, or null for an empty query
+	 */
+	public <T> T doWithGraphResult(String sparql, Map<String, Object> args, GraphResultCallback<T> action) {
+		Connection connection = getConnection();
+		try {
+			GraphQuery query = prepare(connection.graph(sparql));
+			
+			if (args != null) { 
+				for (Entry<String, Object> arg : args.entrySet()) { 					
+					query.parameter(arg.getKey(), arg.getValue());
+				}
+			}
+
+			try (GraphQueryResult result = timed(Operation.GRAPH, query::execute)) {
+				if (result == null) {
+					return null;
+				}
+				return action.doWithResult(result);
+			}
+		} catch (StardogException e) {
+			log.error("Error sending construct query to Stardog", e);
+			throw new RuntimeException(e);
+		} catch (QueryExecutionFailure e) {
+			log.error("Error evaluating SPARQL construct query", e);
+			throw new RuntimeException(e);
+		} finally {
+			releaseConnection(connection);
+		}
+	}
+
+	/**
+	 * <code>constructGrouped</code>
+	 * Groups the statements of a CONSTRUCT query by subject in a single pass, and calls
+	 * the mapper once per subject
+	 * 
+	 * Up to maxSubjects subjects are buffered at a time; when another subject arrives,
+	 * the one seen first is mapped.  With ORDER BY ?s in the query a buffer of 1 is enough,
+	 * otherwise a subject whose statements are spread further apart than the buffer
+	 * is mapped more than once.
+	 * 
+	 * @param sparql the SPARQL query to execute
+	 * @param args map of string and object to pass bind as input parameters, may be null
+	 * @param mapper implementation of the SubjectGraphMapper interface
+	 * @param maxSubjects number of subjects buffered while grouping
+	 * @param <T> generic type of SubjectGraphMapper
+	 * @return List of results from the SubjectGraphMapper calls, null results are skipped
+	 */
+	public <T> List<T> constructGrouped(String sparql, Map<String, Object> args, SubjectGraphMapper<T> mapper, int maxSubjects) {
+		if (maxSubjects < 1) {
+			throw new IllegalArgumentException("maxSubjects must be at least 1");
+		}
+
+		Connection connection = getConnection();
+		try {
+			GraphQuery query = prepare(connection.graph(sparql));
+			
+			if (args != null) { 
+				for (Entry<String, Object> arg : args.entrySet()) { 					
+					query.parameter(arg.getKey(), arg.getValue());
+				}
+			}
+			
+			ArrayList<T> list = new ArrayList<T>();
+
+			try (GraphQueryResult result = timed(Operation.GRAPH, query::execute)) {
+				// return empty lists for empty queries
+				if (result == null) {
+					return list;
+				}
+
+				// insertion ordered, the eldest entry is the subject seen first
+				LinkedHashMap<Resource, List<Statement>> open = new LinkedHashMap<Resource, List<Statement>>();
+				Resource current = null;
+				List<Statement> statements = null;
+				while (result.hasNext()) {
+					Statement statement = result.next();
+					Resource subject = statement.subject();
+					// consecutive statements usually share a subject, skip the map lookup
+					if (!subject.equals(current)) {
+						current = subject;
+						statements = open.get(subject);
+						if (statements == null) {
+							if (open.size() >= maxSubjects) {
+								Iterator<Entry<Resource, List<Statement>>> eldest = open.entrySet().iterator();
+								Entry<Resource, List<Statement>> entry = eldest.next();
+								eldest.remove();
+								addMapped(list, mapper.mapSubject(entry.getKey(), entry.getValue()));
+							}
+							statements = new ArrayList<Statement>();
+							open.put(subject, statements);
+						}
+					}
+					statements.add(statement);
+				}
+
+				for (Entry<Resource, List<Statement>> entry : open.entrySet()) {
+					addMapped(list, mapper.mapSubject(entry.getKey(), entry.getValue()));
+				}
+
+				return list;
+			}
+		} catch (StardogException e) {
+			log.error("Error sending construct query to Stardog", e);
+			throw new RuntimeException(e);
+		} catch (QueryExecutionFailure e) {
+			log.error("Error evaluating SPARQL construct query", e);
+			throw new RuntimeException(e);
+		} finally {
+			releaseConnection(connection);
+		}
+	}
+
+	private static <T> void addMapped(List<T> list, T mapped) {
+		if (mapped != null) {
+			list.add(mapped);
 		}
 	}
 
+	/**
+	 * <code>serializeConstruct</code>
+	 * Re-serializes the results of a CONSTRUCT or DESCRIBE query to the output, statement by
+	 * statement, without collecting them in memory.  This is not a byte-for-byte copy of the
+	 * server response: SNARL parses the results, and each statement is encoded again in the
+	 * requested format, so the cost is that of a parse plus a write
+	 * 
+	 * @param sparql the SPARQL query to execute
+	 * @param args map of string and object to pass bind as input parameters, may be null
+	 * @param out stream the results are written to, not closed
+	 * @param format RDF format to write
+	 */
+	public void serializeConstruct(String sparql, Map<String, Object> args, OutputStream out, RDFFormat format) {
+		Connection connection = getConnection();
+		try {
+			GraphQuery query = prepare(connection.graph(sparql));
+			
+			if (args != null) { 
+				for (Entry<String, Object> arg : args.entrySet()) { 					
+					query.parameter(arg.getKey(), arg.getValue());
+				}
+			}
+
+			try (GraphQueryResult result = timed(Operation.GRAPH, query::execute)) {
+				if (result != null) {
+					writeGraph(result, out, format);
+				}
+			}
+		} catch (StardogException e) {
+			log.error("Error sending construct query to Stardog", e);
+			throw new RuntimeException(e);
+		} catch (QueryExecutionFailure e) {
+			log.error("Error evaluating SPARQL construct query", e);
+			throw new RuntimeException(e);
+		} catch (IOException e) {
+			log.error("Error writing SPARQL construct results", e);
+			throw new RuntimeException(e);
+		} finally {
+			releaseConnection(connection);
+		}
+	}
+
+	public void serializeConstruct(String sparql, OutputStream out, RDFFormat format) {
+		serializeConstruct(sparql, null, out, format);
+	}
+
+	/**
+	 * <code>serializeQuery</code>
+	 * Re-serializes the results of a SELECT query to the output, row by row, without
+	 * collecting them in memory, e.g. for an export to an HTTP response.  SNARL hands out
+	 * parsed results, so every value is decoded and encoded again rather than the server
+	 * response being copied through
+	 * 
+	 * @param sparql the SPARQL query to execute
+	 * @param args map of string and object to pass bind as input parameters, may be null
+	 * @param out stream the results are written to, not closed
+	 * @param format query result format to write, e.g. QueryResultFormats.JSON
+	 */
+	public void serializeQuery(String sparql, Map<String, Object> args, OutputStream out, QueryResultFormat format) {
+		Connection connection = getConnection();
+		try {
+			SelectQuery query = prepare(connection.select(sparql));
+			
+			if (args != null) { 
+				for (Entry<String, Object> arg : args.entrySet()) { 					
+					query.parameter(arg.getKey(), arg.getValue());
+				}
+			}
+
+			try (SelectQueryResult result = timed(Operation.SELECT, query::execute)) {
+				if (result != null) {
+					writeSelect(result, out, format);
+				}
+			}
+		} catch (StardogException e) {
+			log.error("Error sending query to Stardog", e);
+			throw new RuntimeException(e);
+		} catch (QueryExecutionFailure e) {
+			log.error("Error evaluating SPARQL query", e);
+			throw new RuntimeException(e);
+		} catch (IOException e) {
+			log.error("Error writing SPARQL query results", e);
+			throw new RuntimeException(e);
+		} finally {
+			releaseConnection(connection);
+		}
+	}
+
+	public void serializeQuery(String sparql, OutputStream out, QueryResultFormat format) {
+		serializeQuery(sparql, null, out, format);
+	}
+
+	private static void writeSelect(SelectQueryResult result, OutputStream out, QueryResultFormat format) throws IOException {
+		QueryResultWriters.write(result, out, format);
+	}
+
+	private static void writeGraph(GraphQueryResult result, OutputStream out, RDFFormat format) throws IOException {
+		// single use view, the writer iterates the result once
+		Iterable<Statement> statements = () -> result;
+		RDFWriters.write(out, format, statements);
+	}
+
 	/**
 	 * <code>as</code>
 	 * Return the connection viewed as a different type of connection.
+	 * 
+	 * The underlying connection is never returned to the pool, prefer
+	 * {@link #as(Class, ConnectionViewCallback)}
+	 * 
 	 * @param <T> generic type of Connection
 	 * @param theClass the class of the different type of connection
 	 * @return specified Stardog Connection type
 	 */
+	@Deprecated
 	public <T extends Connection> T as(Class<T> theClass){
 		return dataSource.getConnection().as(theClass);
 	}
 
+	/**
+	 * <code>as</code>
+	 * Calls back with the connection viewed as a different type of connection,
+	 * releasing the connection when the callback returns
+	 * 
+	 * @param theClass the class of the different type of connection
+	 * @param action callback to run
+	 * @param <C> generic type of Connection
+	 * @param <T> generic type of the callback result
+	 * @return generic type T
+	 */
+	public <C extends Connection, T> T as(Class<C> theClass, ConnectionViewCallback<C, T> action) {
+		Connection connection = getConnection();
+		try {
+			return action.doWithConnection(connection.as(theClass));
+		} catch (StardogException e) {
+			log.error("Error with connection view", e);
+			throw new RuntimeException(e);
+		} finally {
+			releaseConnection(connection);
+		}
+	}
+
 	/**
 	 * <code>get</code>
 	 * Gets a Stardog connection
+	 * 
+	 * The underlying connection is never returned to the pool, prefer
+	 * {@link #get(ScopedGetterCallback)}
+	 * 
 	 * @return Stardog Connection
 	 */
+	@Deprecated
 	public Getter get(){
 		return dataSource.getConnection().get();
 	}
 
+	/**
+	 * <code>get</code>
+	 * Calls back with a Getter, releasing the connection when the callback returns
+	 * 
+	 * @param action callback to run
+	 * @param <T> generic type of the callback result
+	 * @return generic type T
+	 */
+	public <T> T get(ScopedGetterCallback<T> action) {
+		Connection connection = getConnection();
+		try {
+			return action.doWithGetter(connection.get());
+		} catch (StardogException e) {
+			log.error("Error with getter", e);
+			throw new RuntimeException(e);
+		} finally {
+			releaseConnection(connection);
+		}
+	}
+
 	/**
 	 * <code>reasoning</code>
 	 * Gets a Stardog connection with reasoning either enabled or disabled.
+	 * 
+	 * The underlying connection is never returned to the pool, prefer
+	 * {@link #reasoning(boolean, ScopedGetterCallback)}
+	 * 
 	 * @param reasoningBool the value if reasoning will be enabled or disabled
 	 * @return Stardog Connection
 	 */
+	@Deprecated
 	public Getter reasoning(boolean reasoningBool) {
 		return dataSource.getConnection().get().reasoning(reasoningBool);
 	}
 
+	/**
+	 * <code>reasoning</code>
+	 * Calls back with a Getter with reasoning either enabled or disabled, releasing
+	 * the connection when the callback returns
+	 * 
+	 * @param reasoningBool the value if reasoning will be enabled or disabled
+	 * @param action callback to run
+	 * @param <T> generic type of the callback result
+	 * @return generic type T
+	 */
+	public <T> T reasoning(boolean reasoningBool, ScopedGetterCallback<T> action) {
+		return get(getter -> action.doWithGetter(getter.reasoning(reasoningBool)));
+	}
+
 	/**
 	 * Creates a new pool with an updated reasoning type.
 	 * @param reasoningBool the new reasoning value
@@ -353,8 +1027,9 @@ public class SnarlTemplate {
 	 * @return List of results from the RowMapper calls
 	 */
 	public <T> List<T> query(String sparql, Map<String, Object> args, RowMapper<T> mapper) {
-		try (Connection connection = dataSource.getConnection()) {
-			SelectQuery query = connection.select(sparql);
+		Connection connection = getConnection();
+		try {
+			SelectQuery query = prepare(connection.select(sparql));
 			
 			if (args != null) { 
 				for (Entry<String, Object> arg : args.entrySet()) { 					
@@ -364,7 +1039,7 @@ public class SnarlTemplate {
 			
 			ArrayList<T> list = new ArrayList<T>();
 
-			try (SelectQueryResult result = query.execute()) {
+			try (SelectQueryResult result = timed(Operation.SELECT, query::execute)) {
 				// return empty lists for empty queries
 				if (result == null) {
 					return list;
@@ -382,6 +1057,239 @@ public class SnarlTemplate {
 		} catch (QueryExecutionFailure e) {
 			log.error("Error evaluating SPARQL query", e);
 			throw new RuntimeException(e);
+		} finally {
+			releaseConnection(connection);
+		}
+	}
+
+	public <T> List<T> query(String sparql, RowMapper<T> mapper, RowCodec<T> codec) {
+		return query(sparql, null, mapper, codec);
+	}
+
+	/**
+	 * <code>query</code>
+	 * Query call for results that may not fit on the heap: past spillThreshold rows,
+	 * mapped rows are serialized with the codec to a memory-mapped temp file
+	 * 
+	 * @param sparql the SPARQL query to execute
+	 * @param args map of string and object to pass bind as input parameters
+	 * @param mapper implementation of the RowMapper interface
+	 * @param codec serializes the mapped rows, e.g. SimpleRowCodec for SimpleRowMapper
+	 * @param <T> generic type of RowMapper
+	 * @return List of results from the RowMapper calls, read-only if spilled to disk
+	 */
+	public <T> List<T> query(String sparql, Map<String, Object> args, RowMapper<T> mapper, RowCodec<T> codec) {
+		Connection connection = getConnection();
+		SpillingResultBuffer<T> buffer = new SpillingResultBuffer<T>(codec, spillThreshold, spillDirectory);
+		try {
+			SelectQuery query = prepare(connection.select(sparql));
+			
+			if (args != null) { 
+				for (Entry<String, Object> arg : args.entrySet()) { 					
+					query.parameter(arg.getKey(), arg.getValue());
+				}
+			}
+
+			try (SelectQueryResult result = timed(Operation.SELECT, query::execute)) {
+				if (result != null) {
+					while (result.hasNext()) {
+						buffer.add(mapper.mapRow(result.next()));
+					}
+				}
+			}
+			return buffer.toList();
+		} catch (StardogException e) {
+			log.error("Error sending query to Stardog", e);
+			throw new RuntimeException(e);
+		} catch (QueryExecutionFailure e) {
+			log.error("Error evaluating SPARQL query", e);
+			throw new RuntimeException(e);
+		} finally {
+			buffer.close();
+			releaseConnection(connection);
+		}
+	}
+
+	/**
+	 * <code>queryCached</code>
+	 * @param name name of the cached results, different for every mapper and codec
+	 * @param sparql the SPARQL query to execute
+	 * @param mapper implementation of the RowMapper interface
+	 * @param codec serializes the mapped rows for the cache
+	 * @param <T> generic type of RowMapper
+	 * @return List of results from the RowMapper calls, or from the resultCache
+	 */
+	public <T> List<T> queryCached(String name, String sparql, RowMapper<T> mapper, RowCodec<T> codec) {
+		return queryCached(name, sparql, null, mapper, codec);
+	}
+
+	/**
+	 * <code>queryCached</code>
+	 * Query call answered from the resultCache when it holds a current result under the
+	 * same name, query and arguments against the same server, database and reasoning setting,
+	 * otherwise sent to the server and stored.  Inside a StardogTransactionManager transaction
+	 * the cache is bypassed, so the rows reflect the transaction's own writes.  The name
+	 * stands for the mapper and codec in the key, since a lambda has no class name that is
+	 * stable from one run to the next; results mapped differently need different names.
+	 * Without a resultCache this is query with a RowCodec
+	 * 
+	 * @param name name of the cached results, different for every mapper and codec
+	 * @param sparql the SPARQL query to execute
+	 * @param args map of string and object to pass bind as input parameters
+	 * @param mapper implementation of the RowMapper interface
+	 * @param codec serializes the mapped rows for the cache
+	 * @param <T> generic type of RowMapper
+	 * @return List of results from the RowMapper calls, or a read-only view of the rows in
+	 * the resultCache
+	 * @throws IllegalArgumentException if the name is empty
+	 */
+	public <T> List<T> queryCached(String name, String sparql, Map<String, Object> args, RowMapper<T> mapper, RowCodec<T> codec) {
+		if (name == null || name.isEmpty()) {
+			throw new IllegalArgumentException("Cached results need a name");
+		}
+		if (resultCache == null || DataSourceUtils.isTransactionActive(dataSource)) {
+			return query(sparql, args, mapper, codec);
+		}
+		String key = resultCache.fingerprint(name, dataSource.getCacheScope(), sparql, args);
+		List<T> rows = resultCache.get(key, codec);
+		if (rows == null) {
+			rows = query(sparql, args, mapper, codec);
+			resultCache.put(key, rows, codec);
+		}
+		return rows;
+	}
+
+	public DictionaryResultSet queryEncoded(String sparql) {
+		return queryEncoded(sparql, null);
+	}
+
+	/**
+	 * <code>queryEncoded</code>
+	 * Query call that stores each distinct value once and the rows as term ids, for
+	 * large results that repeat the same values
+	 * 
+	 * @param sparql the SPARQL query to execute
+	 * @param args map of string and object to pass bind as input parameters
+	 * @return the encoded results
+	 */
+	public DictionaryResultSet queryEncoded(String sparql, Map<String, Object> args) {
+		Connection connection = getConnection();
+		try {
+			SelectQuery query = prepare(connection.select(sparql));
+			
+			if (args != null) { 
+				for (Entry<String, Object> arg : args.entrySet()) { 					
+					query.parameter(arg.getKey(), arg.getValue());
+				}
+			}
+
+			try (SelectQueryResult result = timed(Operation.SELECT, query::execute)) {
+				// return empty results for empty queries
+				if (result == null) {
+					return new DictionaryResultSet(new ArrayList<String>());
+				}
+
+				DictionaryResultSet results = new DictionaryResultSet(result.variables());
+				while (result.hasNext()) {
+					results.add(result.next());
+				}
+				return results;
+			}
+		} catch (StardogException e) {
+			log.error("Error sending query to Stardog", e);
+			throw new RuntimeException(e);
+		} catch (QueryExecutionFailure e) {
+			log.error("Error evaluating SPARQL query", e);
+			throw new RuntimeException(e);
+		} finally {
+			releaseConnection(connection);
+		}
+	}
+
+	public ColumnarResultSet queryForColumns(String sparql, ColumnSchema schema) {
+		return queryForColumns(sparql, null, schema);
+	}
+
+	/**
+	 * <code>queryForColumns</code>
+	 * Query call that decodes each projected variable straight into a primitive column,
+	 * for numeric analytics over large results
+	 * 
+	 * @param sparql the SPARQL query to execute
+	 * @param args map of string and object to pass bind as input parameters
+	 * @param schema variables to decode and their types
+	 * @return the columns
+	 */
+	public ColumnarResultSet queryForColumns(String sparql, Map<String, Object> args, ColumnSchema schema) {
+		Connection connection = getConnection();
+		try {
+			SelectQuery query = prepare(connection.select(sparql));
+			
+			if (args != null) { 
+				for (Entry<String, Object> arg : args.entrySet()) { 					
+					query.parameter(arg.getKey(), arg.getValue());
+				}
+			}
+
+			ColumnarResultSet results = new ColumnarResultSet(schema);
+			try (SelectQueryResult result = timed(Operation.SELECT, query::execute)) {
+				// return empty columns for empty queries
+				if (result == null) {
+					return results;
+				}
+
+				while (result.hasNext()) {
+					results.add(result.next());
+				}
+				return results;
+			}
+		} catch (StardogException e) {
+			log.error("Error sending query to Stardog", e);
+			throw new RuntimeException(e);
+		} catch (QueryExecutionFailure e) {
+			log.error("Error evaluating SPARQL query", e);
+			throw new RuntimeException(e);
+		} finally {
+			releaseConnection(connection);
+		}
+	}
+
+	/**
+	 * <code>doWithResult</code>
+	 * Query call handing the open SelectQueryResult to a callback, for consumers
+	 * that stream the rows into their own format
+	 * 
+	 * @param sparql the SPARQL query to execute
+	 * @param args map of string and object to pass bind as input parameters
+	 * @param action callback reading the result, which is closed once it returns
+	 * @param <T> generic type of the callback result
+	 * @return the result of the callback, or null for an empty query
+	 */
+	public <T> T doWithResult(String sparql, Map<String, Object> args, SelectResultCallback<T> action) {
+		Connection connection = getConnection();
+		try {
+			SelectQuery query = prepare(connection.select(sparql));
+			
+			if (args != null) { 
+				for (Entry<String, Object> arg : args.entrySet()) { 					
+					query.parameter(arg.getKey(), arg.getValue());
+				}
+			}
+
+			try (SelectQueryResult result = timed(Operation.SELECT, query::execute)) {
+				if (result == null) {
+					return null;
+				}
+				return action.doWithResult(result);
+			}
+		} catch (StardogException e) {
+			log.error("Error sending query to Stardog", e);
+			throw new RuntimeException(e);
+		} catch (QueryExecutionFailure e) {
+			log.error("Error evaluating SPARQL query", e);
+			throw new RuntimeException(e);
+		} finally {
+			releaseConnection(connection);
 		}
 	}
 
@@ -411,8 +1319,9 @@ public class SnarlTemplate {
 	 * @return single result of the RowMapper call
 	 */
 	public <T> T queryForObject(String sparql, Map<String, Object> args, RowMapper<T> mapper) {
-		try (Connection connection = dataSource.getConnection()) {
-			SelectQuery query = connection.select(sparql);
+		Connection connection = getConnection();
+		try {
+			SelectQuery query = prepare(connection.select(sparql));
 			
 			if (args != null) { 
 				for (Entry<String, Object> arg : args.entrySet()) { 		
@@ -420,7 +1329,7 @@ public class SnarlTemplate {
 				}
 			}
 			
-			try (SelectQueryResult result = query.execute()) {
+			try (SelectQueryResult result = timed(Operation.SELECT, query::execute)) {
 				T returnObject = null;
 				// return null; for empty queries
 				if (result == null) {
@@ -439,6 +1348,8 @@ public class SnarlTemplate {
 		} catch (QueryExecutionFailure e) {
 			log.error("Error evaluating SPARQL query", e);
 			throw new RuntimeException(e);
+		} finally {
+			releaseConnection(connection);
 		}
 	}
 
@@ -451,8 +1362,9 @@ public class SnarlTemplate {
 	 * @return boolean if the query matches in the database
 	 */
 	public boolean ask(String sparql, Map<String, Object> args) {
-		try (Connection connection = dataSource.getConnection()) {
-			BooleanQuery query = connection.ask(sparql);
+		Connection connection = getConnection();
+		try {
+			BooleanQuery query = prepare(connection.ask(sparql));
 			
 			if (args != null) { 
 				for (Entry<String, Object> arg : args.entrySet()) { 					
@@ -460,10 +1372,12 @@ public class SnarlTemplate {
 				}
 			}
 
-			return query.execute();
+			return timed(Operation.ASK, query::execute);
 		} catch (StardogException e) {
 			log.error("Error sending query to Stardog", e);
 			throw new RuntimeException(e);
+		} finally {
+			releaseConnection(connection);
 		}
 	}
 	
@@ -497,8 +1411,9 @@ public class SnarlTemplate {
 	 *
 	 */
 	public void update(String sparql, Map<String, Object> args) {
-		try (Connection connection = dataSource.getConnection()) {
-			UpdateQuery query = connection.update(sparql);
+		Connection connection = getConnection();
+		try {
+			UpdateQuery query = prepare(connection.update(sparql));
 			
 			if (args != null) { 
 				for (Entry<String, Object> arg : args.entrySet()) { 					
@@ -506,11 +1421,13 @@ public class SnarlTemplate {
 				}
 			}
 
-			query.execute();
+			timed(Operation.UPDATE, query::execute);
 
 		} catch (StardogException e) {
 			log.error("Error sending query to Stardog", e);
 			throw new RuntimeException(e);
+		} finally {
+			releaseConnection(connection);
 		}
 	}
 
@@ -526,18 +1443,26 @@ public class SnarlTemplate {
 	 */
 	@Deprecated
 	public void add(Collection<Statement> graph, String graphUri) {
-		Resource context = (graphUri == null ? null : Values.iri(graphUri));
-		try (Connection connection = dataSource.getConnection()) {
-			connection.begin();
+		Resource context = (graphUri == null ? null : iri(graphUri));
+		Connection connection = getConnection();
+		boolean reusable = true;
+		try {
+			begin(connection);
 			if (context != null) { 
 				connection.add().graph(graph, context);
 			} else { 
 				connection.add().graph(graph);
 			}
-			connection.commit();
+			commit(connection);
 		} catch (StardogException e) {
+			reusable = rollback(connection);
 			log.error("Error adding graph to Stardog", e);
 			throw new RuntimeException(e);
+		} catch (RuntimeException | Error e) {
+			reusable = rollback(connection);
+			throw e;
+		} finally {
+			releaseConnection(connection, reusable);
 		}
 	}
 	
@@ -561,9 +1486,9 @@ public class SnarlTemplate {
 
 
 		add(ImmutableSet.of(Values.statement(
-				Values.iri(subject),
-				Values.iri(predicate),
-				Values.literal(object)
+				iri(subject),
+				iri(predicate),
+				literal(object)
 		)));
 	}
 	
@@ -586,9 +1511,9 @@ public class SnarlTemplate {
 	public void add(java.net.URI subject, java.net.URI predicate, java.net.URI object) {
 
 		add(ImmutableSet.of(Values.statement(
-				Values.iri(subject.toString()),
-				Values.iri(predicate.toString()),
-				Values.iri(object.toString())
+				iri(subject.toString()),
+				iri(predicate.toString()),
+				iri(object.toString())
 		)));
 	}
 }
@@ -0,0 +1,359 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SpillingResultBuffer
+ * 
+ * Collects query results in memory up to a threshold, then writes them with a RowCodec
+ * to a temp file, so very large results do not exhaust the heap.  toList returns the
+ * in-memory list when nothing was spilled, otherwise a read-only view over the file
+ * mapped into memory.
+ * 
+ * The view decodes rows as they are read; iterate it rather than calling get, which
+ * scans forward from the nearest indexed row.
+ */
+public class SpillingResultBuffer<T> implements Closeable {
+
+	final Logger log = LoggerFactory.getLogger(SpillingResultBuffer.class);
+
+	// every INDEX_INTERVAL-th row offset is kept, to bound the cost of get(i)
+	private static final int INDEX_INTERVAL = 64;
+
+	// mapped segments start at a row and end after the row crossing this size
+	private static final long SEGMENT_SIZE = 256L * 1024 * 1024;
+
+	private final long segmentSize;
+
+	private final RowCodec<T> codec;
+
+	private final int memoryThreshold;
+
+	private final File directory;
+
+	private List<T> rows = new ArrayList<T>();
+
+	private int size = 0;
+
+	private File file;
+
+	private CountingOutputStream counter;
+
+	private DataOutputStream out;
+
+	private long[] index = new long[16];
+
+	private long[] segments = new long[] { 0 };
+
+	private int segmentCount = 1;
+
+	private List<T> view;
+
+	/**
+	 * @param codec serializes rows once the threshold is reached
+	 * @param memoryThreshold number of rows kept in memory before spilling to disk
+	 * @param directory directory of the temp file, null for java.io.tmpdir
+	 */
+	public SpillingResultBuffer(RowCodec<T> codec, int memoryThreshold, File directory) {
+		this(codec, memoryThreshold, directory, SEGMENT_SIZE);
+	}
+
+	SpillingResultBuffer(RowCodec<T> codec, int memoryThreshold, File directory, long segmentSize) {
+		this.codec = codec;
+		this.memoryThreshold = memoryThreshold;
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * <code>add</code>
+	 * @param row mapped row
+	 */
+	public void add(T row) {
+		if (view != null) {
+			throw new IllegalStateException("Result buffer is already read");
+		}
+		try {
+			if (out == null && rows.size() >= memoryThreshold) {
+				spill();
+			}
+			if (out == null) {
+				rows.add(row);
+			} else {
+				write(row);
+			}
+			size++;
+		} catch (IOException e) {
+			log.error("Error spilling query results to " + file, e);
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return number of rows added
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the rows were written to disk
+	 */
+	public boolean isSpilled() {
+		return file != null;
+	}
+
+	/**
+	 * <code>toList</code>
+	 * Ends writing and returns the rows
+	 * 
+	 * @return the rows, read-only if they were spilled
+	 */
+	public List<T> toList() {
+		if (view != null) {
+			return view;
+		}
+		if (out == null) {
+			view = rows;
+			return view;
+		}
+		try {
+			out.close();
+			out = null;
+			view = new SpilledList(map());
+			rows = null;
+			return view;
+		} catch (IOException e) {
+			log.error("Error mapping spilled query results " + file, e);
+			throw new RuntimeException(e);
+		} finally {
+			deleteFile();
+		}
+	}
+
+	/**
+	 * <code>close</code>
+	 * Releases the temp file of a buffer that is not read, the list returned by toList
+	 * stays valid
+	 */
+	@Override
+	public void close() {
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				log.warn("Error closing spilled query results " + file, e);
+			}
+			out = null;
+		}
+		deleteFile();
+	}
+
+	private void spill() throws IOException {
+		file = File.createTempFile("stardog-results", ".bin", directory);
+		log.debug("Spilling query results over " + memoryThreshold + " rows to " + file);
+		counter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+		out = new DataOutputStream(counter);
+		List<T> spilled = rows;
+		rows = null;
+		int n = 0;
+		for (T row : spilled) {
+			write(row, n++);
+		}
+	}
+
+	private void write(T row) throws IOException {
+		write(row, size);
+	}
+
+	private void write(T row, int position) throws IOException {
+		long offset = counter.count;
+		if (position % INDEX_INTERVAL == 0) {
+			int slot = position / INDEX_INTERVAL;
+			if (slot == index.length) {
+				index = Arrays.copyOf(index, index.length * 2);
+			}
+			index[slot] = offset;
+		}
+		if (offset - segments[segmentCount - 1] >= segmentSize) {
+			if (segmentCount == segments.length) {
+				segments = Arrays.copyOf(segments, segments.length * 2);
+			}
+			segments[segmentCount++] = offset;
+		}
+		codec.write(row, out);
+	}
+
+	private ByteBuffer[] map() throws IOException {
+		long length = counter.count;
+		ByteBuffer[] mapped = new ByteBuffer[segmentCount];
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			for (int i = 0; i < segmentCount; i++) {
+				long start = segments[i];
+				long end = i + 1 < segmentCount ? segments[i + 1] : length;
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+				mapped[i] = buffer;
+			}
+		}
+		return mapped;
+	}
+
+	private void deleteFile() {
+		// the mapping outlives the file on Unix, elsewhere the delete waits for exit
+		if (file != null && !file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+
+	/**
+	 * Read-only view decoding rows from the mapped segments
+	 */
+	private class SpilledList extends AbstractList<T> {
+
+		private final ByteBuffer[] mapped;
+
+		private final long[] starts;
+
+		private final int rowCount;
+
+		private final long[] offsets;
+
+		SpilledList(ByteBuffer[] mapped) {
+			this.mapped = mapped;
+			this.starts = Arrays.copyOf(segments, segmentCount);
+			this.rowCount = size;
+			this.offsets = Arrays.copyOf(index, (size + INDEX_INTERVAL - 1) / INDEX_INTERVAL);
+		}
+
+		@Override
+		public int size() {
+			return rowCount;
+		}
+
+		@Override
+		public T get(int i) {
+			if (i < 0 || i >= rowCount) {
+				throw new IndexOutOfBoundsException("Index " + i + ", size " + rowCount);
+			}
+			Reader reader = new Reader(offsets[i / INDEX_INTERVAL]);
+			for (int skip = i % INDEX_INTERVAL; skip > 0; skip--) {
+				reader.read();
+			}
+			return reader.read();
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			return new Iterator<T>() {
+
+				private final Reader reader = new Reader(0);
+
+				private int next = 0;
+
+				@Override
+				public boolean hasNext() {
+					return next < rowCount;
+				}
+
+				@Override
+				public T next() {
+					if (next >= rowCount) {
+						throw new NoSuchElementException();
+					}
+					next++;
+					return reader.read();
+				}
+			};
+		}
+
+		/**
+		 * Sequential decoder, moving on to the next segment at its end
+		 */
+		private class Reader {
+
+			private final ByteBufferInputStream in;
+
+			private final DataInputStream data;
+
+			private int segment;
+
+			Reader(long offset) {
+				int found = Arrays.binarySearch(starts, offset);
+				segment = found >= 0 ? found : -found - 2;
+				ByteBuffer buffer = mapped[segment].duplicate();
+				buffer.position((int) (offset - starts[segment]));
+				in = new ByteBufferInputStream(buffer);
+				data = new DataInputStream(in);
+			}
+
+			T read() {
+				if (!in.buffer.hasRemaining() && segment + 1 < mapped.length) {
+					segment++;
+					in.buffer = mapped[segment].duplicate();
+				}
+				try {
+					return codec.read(data);
+				} catch (IOException e) {
+					throw new RuntimeException("Error reading spilled query results", e);
+				}
+			}
+		}
+	}
+
+	private static class CountingOutputStream extends FilterOutputStream {
+
+		private long count = 0;
+
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+}
@@ -0,0 +1,203 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.InvalidIsolationLevelException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.ResourceTransactionManager;
+import org.springframework.transaction.support.SmartTransactionObject;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.complexible.stardog.StardogException;
+import com.complexible.stardog.api.Connection;
+
+/**
+ * StardogTransactionManager
+ *
+ * Spring PlatformTransactionManager for a single Stardog DataSource, similar to
+ * Spring's DataSourceTransactionManager
+ *
+ * Binds one connection to the thread for the length of the transaction, so that
+ * every SnarlTemplate call inside a @Transactional method shares the connection
+ * and is committed (or rolled back) once at the transaction boundary
+ */
+public class StardogTransactionManager extends AbstractPlatformTransactionManager
+		implements ResourceTransactionManager, InitializingBean {
+
+	private static final long serialVersionUID = 1L;
+
+	final Logger log = LoggerFactory.getLogger(StardogTransactionManager.class);
+
+	private DataSource dataSource;
+
+	public StardogTransactionManager() { }
+
+	public StardogTransactionManager(DataSource dataSource) {
+		this.dataSource = dataSource;
+		afterPropertiesSet();
+	}
+
+	/**
+	 * @return the dataSource
+	 */
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	/**
+	 * @param dataSource the dataSource to set
+	 */
+	public void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		if (dataSource == null) {
+			throw new IllegalArgumentException("Property 'dataSource' is required");
+		}
+	}
+
+	@Override
+	public Object getResourceFactory() {
+		return dataSource;
+	}
+
+	@Override
+	protected Object doGetTransaction() {
+		StardogTransactionObject txObject = new StardogTransactionObject();
+		txObject.setConnectionHolder((ConnectionHolder) TransactionSynchronizationManager.getResource(dataSource));
+		return txObject;
+	}
+
+	@Override
+	protected boolean isExistingTransaction(Object transaction) {
+		StardogTransactionObject txObject = (StardogTransactionObject) transaction;
+		return txObject.getConnectionHolder() != null && txObject.getConnectionHolder().isTransactionActive();
+	}
+
+	@Override
+	protected void doBegin(Object transaction, TransactionDefinition definition) {
+		if (definition.getIsolationLevel() != TransactionDefinition.ISOLATION_DEFAULT) {
+			throw new InvalidIsolationLevelException("Stardog does not support custom isolation levels");
+		}
+
+		StardogTransactionObject txObject = (StardogTransactionObject) transaction;
+		Connection connection = null;
+		try {
+			connection = dataSource.getConnection();
+			connection.begin();
+
+			ConnectionHolder holder = new ConnectionHolder(connection);
+			holder.setSynchronizedWithTransaction(true);
+			holder.setTransactionActive(true);
+			int timeout = determineTimeout(definition);
+			if (timeout != TransactionDefinition.TIMEOUT_DEFAULT) {
+				holder.setTimeoutInSeconds(timeout);
+			}
+			txObject.setConnectionHolder(holder);
+
+			TransactionSynchronizationManager.bindResource(dataSource, holder);
+		} catch (RuntimeException e) {
+			if (connection != null) {
+				dataSource.releaseConnection(connection);
+			}
+			throw new CannotCreateTransactionException("Could not begin Stardog transaction", e);
+		}
+	}
+
+	@Override
+	protected Object doSuspend(Object transaction) {
+		StardogTransactionObject txObject = (StardogTransactionObject) transaction;
+		txObject.setConnectionHolder(null);
+		return TransactionSynchronizationManager.unbindResource(dataSource);
+	}
+
+	@Override
+	protected void doResume(Object transaction, Object suspendedResources) {
+		TransactionSynchronizationManager.bindResource(dataSource, suspendedResources);
+	}
+
+	@Override
+	protected void doCommit(DefaultTransactionStatus status) {
+		StardogTransactionObject txObject = (StardogTransactionObject) status.getTransaction();
+		try {
+			txObject.getConnectionHolder().getConnection().commit();
+		} catch (StardogException e) {
+			log.error("Error committing Stardog transaction", e);
+			throw new TransactionSystemException("Could not commit Stardog transaction", e);
+		}
+	}
+
+	@Override
+	protected void doRollback(DefaultTransactionStatus status) {
+		StardogTransactionObject txObject = (StardogTransactionObject) status.getTransaction();
+		try {
+			txObject.getConnectionHolder().getConnection().rollback();
+		} catch (StardogException e) {
+			log.error("Error rolling back Stardog transaction", e);
+			throw new TransactionSystemException("Could not roll back Stardog transaction", e);
+		}
+	}
+
+	@Override
+	protected void doSetRollbackOnly(DefaultTransactionStatus status) {
+		StardogTransactionObject txObject = (StardogTransactionObject) status.getTransaction();
+		txObject.getConnectionHolder().setRollbackOnly();
+	}
+
+	@Override
+	protected void doCleanupAfterCompletion(Object transaction) {
+		StardogTransactionObject txObject = (StardogTransactionObject) transaction;
+		TransactionSynchronizationManager.unbindResource(dataSource);
+
+		ConnectionHolder holder = txObject.getConnectionHolder();
+		Connection connection = holder.getConnection();
+		holder.clear();
+		dataSource.releaseConnection(connection);
+	}
+
+	/**
+	 * Transaction object handed around by AbstractPlatformTransactionManager
+	 */
+	private static class StardogTransactionObject implements SmartTransactionObject {
+
+		private ConnectionHolder connectionHolder;
+
+		public ConnectionHolder getConnectionHolder() {
+			return connectionHolder;
+		}
+
+		public void setConnectionHolder(ConnectionHolder connectionHolder) {
+			this.connectionHolder = connectionHolder;
+		}
+
+		@Override
+		public boolean isRollbackOnly() {
+			return connectionHolder != null && connectionHolder.isRollbackOnly();
+		}
+
+		@Override
+		public void flush() { }
+	}
+}
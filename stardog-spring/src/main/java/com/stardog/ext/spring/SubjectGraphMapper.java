@@ -0,0 +1,35 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.util.List;
+
+import com.stardog.stark.Resource;
+import com.stardog.stark.Statement;
+
+/**
+ * SubjectGraphMapper
+ * 
+ * Generic interface for users of the SnarlTemplate
+ * 
+ * Like GraphMapper, but called once per subject with all of the statements about
+ * it, so one CONSTRUCT query can load a list of domain objects, see
+ * SnarlTemplate.constructGrouped
+ */
+public interface SubjectGraphMapper<T> {
+
+	T mapSubject(Resource subject, List<Statement> statements);
+}
@@ -0,0 +1,98 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.stardog.stark.Value;
+
+/**
+ * TermDictionary
+ * 
+ * Interns the distinct Values of a result, so each is held once and rows can refer
+ * to it by an int id.  String forms are computed once per term, on first use.
+ * 
+ * Not thread safe while being filled.
+ */
+public class TermDictionary {
+
+	private final Map<Value, Integer> ids = new HashMap<Value, Integer>();
+
+	private Value[] terms = new Value[64];
+
+	private String[] strings = new String[64];
+
+	private int size = 0;
+
+	/**
+	 * <code>intern</code>
+	 * @param value term to add
+	 * @return id of the term, the same id for equal terms
+	 */
+	public int intern(Value value) {
+		Integer id = ids.get(value);
+		if (id != null) {
+			return id;
+		}
+		if (size == terms.length) {
+			terms = Arrays.copyOf(terms, size * 2);
+			strings = Arrays.copyOf(strings, size * 2);
+		}
+		terms[size] = value;
+		ids.put(value, size);
+		return size++;
+	}
+
+	/**
+	 * <code>id</code>
+	 * @param value term to look up, without adding it
+	 * @return id of the term, -1 if it is not in the dictionary
+	 */
+	public int id(Value value) {
+		Integer id = ids.get(value);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param id term id
+	 * @return the term
+	 */
+	public Value term(int id) {
+		return terms[id];
+	}
+
+	/**
+	 * @param id term id
+	 * @return the string form of the term, shared by every row using it
+	 */
+	public String string(int id) {
+		String string = strings[id];
+		if (string == null) {
+			string = terms[id].toString();
+			strings[id] = string;
+		}
+		return string;
+	}
+
+	/**
+	 * @return number of distinct terms
+	 */
+	public int size() {
+		return size;
+	}
+}
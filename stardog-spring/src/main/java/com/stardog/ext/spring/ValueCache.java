@@ -0,0 +1,160 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.stardog.ext.spring.utils.TypeConverter;
+import com.stardog.stark.IRI;
+import com.stardog.stark.Value;
+import com.stardog.stark.Values;
+
+/**
+ * ValueCache
+ * 
+ * Bounded interning cache for the IRIs and literals of a small, heavily reused
+ * vocabulary, so that repeated writes with the same predicates and graphs do not
+ * build a new IRI each time, and callers can compare cached values by identity.
+ * 
+ * The cache is a fixed array of slots indexed by hash, read and written without
+ * locks; a value that hashes to an occupied slot replaces the previous one.  The
+ * same instance is returned for a key as long as it stays in its slot, which for
+ * a vocabulary well under the capacity is in practice always.
+ * 
+ * Only immutable keys are cached as literals: strings, booleans, integral boxes
+ * and characters.  Other objects are converted by TypeConverter on every call.
+ */
+public class ValueCache {
+
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	private final AtomicReferenceArray<Entry> iris;
+
+	private final AtomicReferenceArray<Entry> literals;
+
+	private final int mask;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	public ValueCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity number of IRI slots, and of literal slots, rounded up to a power of two
+	 */
+	public ValueCache(int capacity) {
+		int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		this.iris = new AtomicReferenceArray<Entry>(size);
+		this.literals = new AtomicReferenceArray<Entry>(size);
+		this.mask = size - 1;
+	}
+
+	/**
+	 * <code>iri</code>
+	 * @param iri IRI string
+	 * @return the cached IRI, created on a miss
+	 */
+	public IRI iri(String iri) {
+		int slot = slot(iri);
+		Entry entry = iris.get(slot);
+		if (entry != null && entry.key.equals(iri)) {
+			hits.increment();
+			return (IRI) entry.value;
+		}
+		misses.increment();
+		IRI value = Values.iri(iri);
+		iris.set(slot, new Entry(iri, value));
+		return value;
+	}
+
+	/**
+	 * <code>literal</code>
+	 * @param object object to convert, see TypeConverter
+	 * @return the cached literal for immutable keys, otherwise a new one
+	 */
+	public Value literal(Object object) {
+		if (!isCacheable(object)) {
+			return TypeConverter.asLiteral(object);
+		}
+		int slot = slot(object);
+		Entry entry = literals.get(slot);
+		// Integer 1 and Long 1 are different literals, equals tells them apart
+		if (entry != null && entry.key.equals(object)) {
+			hits.increment();
+			return entry.value;
+		}
+		misses.increment();
+		Value value = TypeConverter.asLiteral(object);
+		literals.set(slot, new Entry(object, value));
+		return value;
+	}
+
+	/**
+	 * @return number of lookups answered from the cache
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return number of lookups that created a value
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * <code>clear</code>
+	 * Empties every slot
+	 */
+	public void clear() {
+		for (int i = 0; i <= mask; i++) {
+			iris.set(i, null);
+			literals.set(i, null);
+		}
+	}
+
+	private int slot(Object key) {
+		int h = key.hashCode();
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private static boolean isCacheable(Object object) {
+		return object instanceof String || object instanceof Boolean || object instanceof Integer
+				|| object instanceof Long || object instanceof Short || object instanceof Byte
+				|| object instanceof Character;
+	}
+
+	/**
+	 * Key and value are published together, so a reader never sees a value
+	 * paired with another key
+	 */
+	private static final class Entry {
+
+		final Object key;
+
+		final Value value;
+
+		Entry(Object key, Value value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,281 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring.arrow;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.ipc.ArrowWriter;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.stardog.ext.spring.ColumnSchema;
+import com.stardog.ext.spring.SnarlTemplate;
+import com.stardog.ext.spring.utils.ValueDecoder;
+import com.stardog.stark.Value;
+import com.stardog.stark.query.BindingSet;
+import com.stardog.stark.query.SelectQueryResult;
+
+/**
+ * ArrowResultWriter
+ * 
+ * Streams SELECT results into Apache Arrow record batches, decoding each variable
+ * of a ColumnSchema straight into an off-heap vector.  Batches are written as they
+ * fill, to an Arrow IPC stream or file, or handed to an in-process consumer, so
+ * the whole result is never held in memory.
+ * 
+ * LONG, DOUBLE, BOOLEAN and STRING columns become BigInt, Float8, Bit and Utf8
+ * vectors, unbound values are Arrow nulls.
+ * 
+ * Arrow is an optional dependency, add arrow-vector and an allocator implementation
+ * such as arrow-memory-netty to use this class.
+ */
+public class ArrowResultWriter {
+
+	final Logger log = LoggerFactory.getLogger(ArrowResultWriter.class);
+
+	public static final int DEFAULT_BATCH_SIZE = 4096;
+
+	private final SnarlTemplate snarlTemplate;
+
+	private final BufferAllocator allocator;
+
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	/**
+	 * @param snarlTemplate template to run the queries with
+	 * @param allocator allocator for the vectors, owned by the caller
+	 */
+	public ArrowResultWriter(SnarlTemplate snarlTemplate, BufferAllocator allocator) {
+		this.snarlTemplate = snarlTemplate;
+		this.allocator = allocator;
+	}
+
+	/**
+	 * @return the batchSize
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @param batchSize the batchSize to set, rows per record batch
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be positive");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * <code>toArrowSchema</code>
+	 * @param columns variables and their types
+	 * @return the Arrow schema of the record batches, all fields nullable
+	 */
+	public static Schema toArrowSchema(ColumnSchema columns) {
+		List<Field> fields = new ArrayList<Field>(columns.size());
+		for (int i = 0; i < columns.size(); i++) {
+			String name = columns.getVariables().get(i);
+			switch (columns.getType(i)) {
+				case LONG: fields.add(Field.nullable(name, new ArrowType.Int(64, true))); break;
+				case DOUBLE: fields.add(Field.nullable(name, new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE))); break;
+				case BOOLEAN: fields.add(Field.nullable(name, ArrowType.Bool.INSTANCE)); break;
+				default: fields.add(Field.nullable(name, ArrowType.Utf8.INSTANCE)); break;
+			}
+		}
+		return new Schema(fields);
+	}
+
+	/**
+	 * <code>write</code>
+	 * Writes the results in the Arrow IPC streaming format
+	 * 
+	 * @param sparql the SPARQL query to execute
+	 * @param args map of string and object to pass bind as input parameters
+	 * @param columns variables to export and their types
+	 * @param channel destination, not closed
+	 * @return number of rows written
+	 */
+	public long write(String sparql, Map<String, Object> args, ColumnSchema columns, WritableByteChannel channel) {
+		return stream(sparql, args, columns, root -> new ArrowStreamWriter(root, null, channel), null);
+	}
+
+	/**
+	 * <code>writeFile</code>
+	 * Writes the results to an Arrow IPC file, replacing any existing file
+	 * 
+	 * @param sparql the SPARQL query to execute
+	 * @param args map of string and object to pass bind as input parameters
+	 * @param columns variables to export and their types
+	 * @param file destination file
+	 * @return number of rows written
+	 */
+	public long writeFile(String sparql, Map<String, Object> args, ColumnSchema columns, Path file) {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			return stream(sparql, args, columns, root -> new ArrowFileWriter(root, null, channel), null);
+		} catch (IOException e) {
+			log.error("Error writing Arrow file " + file, e);
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * <code>forEachBatch</code>
+	 * Hands each record batch to the consumer.  The same VectorSchemaRoot is refilled
+	 * for every batch, so it is only valid for the length of the call; use
+	 * VectorSchemaRoot.slice or a TransferPair to keep the data
+	 * 
+	 * @param sparql the SPARQL query to execute
+	 * @param args map of string and object to pass bind as input parameters
+	 * @param columns variables to export and their types
+	 * @param consumer called once per batch
+	 * @return number of rows read
+	 */
+	public long forEachBatch(String sparql, Map<String, Object> args, ColumnSchema columns, Consumer<VectorSchemaRoot> consumer) {
+		return stream(sparql, args, columns, null, consumer);
+	}
+
+	private long stream(String sparql, Map<String, Object> args, ColumnSchema columns,
+			WriterFactory writerFactory, Consumer<VectorSchemaRoot> consumer) {
+		Schema schema = toArrowSchema(columns);
+		Long rows = snarlTemplate.doWithResult(sparql, args, result -> {
+			try (VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator);
+					ArrowWriter writer = writerFactory == null ? null : writerFactory.create(root)) {
+				if (writer != null) {
+					writer.start();
+				}
+				long count = copy(result, columns, root, writer, consumer);
+				if (writer != null) {
+					writer.end();
+				}
+				return count;
+			} catch (IOException e) {
+				log.error("Error writing Arrow record batch", e);
+				throw new RuntimeException(e);
+			}
+		});
+		return rows == null ? 0 : rows;
+	}
+
+	private long copy(SelectQueryResult result, ColumnSchema columns, VectorSchemaRoot root,
+			ArrowWriter writer, Consumer<VectorSchemaRoot> consumer) throws IOException {
+		List<FieldVector> vectors = root.getFieldVectors();
+		root.allocateNew();
+		long total = 0;
+		int row = 0;
+		while (result.hasNext()) {
+			BindingSet bindingSet = result.next();
+			for (int i = 0; i < vectors.size(); i++) {
+				String variable = columns.getVariables().get(i);
+				Value value = bindingSet.get(variable);
+				try {
+					set(vectors.get(i), row, value);
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Cannot decode ?" + variable + " of row " + (total + row) + " as "
+							+ columns.getType(i) + ": " + value, e);
+				}
+			}
+			row++;
+			if (row == batchSize) {
+				flush(root, row, writer, consumer);
+				total += row;
+				row = 0;
+			}
+		}
+		if (row > 0) {
+			flush(root, row, writer, consumer);
+			total += row;
+		}
+		return total;
+	}
+
+	private static void flush(VectorSchemaRoot root, int rows, ArrowWriter writer, Consumer<VectorSchemaRoot> consumer) throws IOException {
+		root.setRowCount(rows);
+		if (writer != null) {
+			writer.writeBatch();
+		}
+		if (consumer != null) {
+			consumer.accept(root);
+		}
+		// keeps the buffers for the next batch, clearing values and validity
+		for (FieldVector vector : root.getFieldVectors()) {
+			vector.reset();
+		}
+	}
+
+	private static void set(FieldVector vector, int row, Value value) {
+		if (vector instanceof BigIntVector) {
+			BigIntVector longs = (BigIntVector) vector;
+			if (value == null) {
+				longs.setNull(row);
+			} else {
+				longs.setSafe(row, ValueDecoder.longValue(value));
+			}
+		} else if (vector instanceof Float8Vector) {
+			Float8Vector doubles = (Float8Vector) vector;
+			if (value == null) {
+				doubles.setNull(row);
+			} else {
+				doubles.setSafe(row, ValueDecoder.doubleValue(value));
+			}
+		} else if (vector instanceof BitVector) {
+			BitVector booleans = (BitVector) vector;
+			if (value == null) {
+				booleans.setNull(row);
+			} else {
+				booleans.setSafe(row, ValueDecoder.booleanValue(value) ? 1 : 0);
+			}
+		} else {
+			VarCharVector strings = (VarCharVector) vector;
+			if (value == null) {
+				strings.setNull(row);
+			} else {
+				strings.setSafe(row, ValueDecoder.label(value).getBytes(StandardCharsets.UTF_8));
+			}
+		}
+	}
+
+	/**
+	 * Creates the IPC writer once the VectorSchemaRoot exists
+	 */
+	private interface WriterFactory {
+
+		ArrowWriter create(VectorSchemaRoot root) throws IOException;
+	}
+}
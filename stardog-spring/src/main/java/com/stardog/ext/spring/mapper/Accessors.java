@@ -0,0 +1,163 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring.mapper;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Accessors
+ * 
+ * Compiles constructors, getters and setters into functional interfaces for the
+ * mappers.  Public members of public classes are compiled with LambdaMetafactory,
+ * anything else is called through a method handle from privateLookupIn, since a
+ * metafactory lambda can only link against members visible to this class.
+ */
+final class Accessors {
+
+	private Accessors() {
+	}
+
+	/**
+	 * @param type class whose members are accessed
+	 * @return a lookup with private access to the class
+	 * @throws IllegalAccessException if the class is in a module not open to this one
+	 */
+	static MethodHandles.Lookup lookup(Class<?> type) throws IllegalAccessException {
+		return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+	}
+
+	@SuppressWarnings("unchecked")
+	static Supplier<Object> factory(MethodHandles.Lookup lookup, Constructor<?> c) throws Throwable {
+		MethodHandle handle = lookup.unreflectConstructor(c);
+		if (isVisible(c.getDeclaringClass()) && Modifier.isPublic(c.getModifiers())) {
+			CallSite site = LambdaMetafactory.metafactory(MethodHandles.lookup(), "get",
+					MethodType.methodType(Supplier.class), MethodType.methodType(Object.class),
+					handle, MethodType.methodType(c.getDeclaringClass()));
+			return (Supplier<Object>) site.getTarget().invokeExact();
+		}
+		MethodHandle generic = handle.asType(MethodType.methodType(Object.class));
+		return () -> {
+			try {
+				return (Object) generic.invokeExact();
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new RuntimeException(e);
+			}
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	static BiConsumer<Object, Object> setter(MethodHandles.Lookup lookup, Method method) throws Throwable {
+		MethodHandle handle = lookup.unreflect(method);
+		if (isCompilable(method) && isVisible(method.getParameterTypes()[0])) {
+			// the instantiated type boxes a primitive argument, the lambda unboxes it
+			MethodType instantiated = MethodType.methodType(void.class, method.getDeclaringClass(),
+					MethodType.methodType(method.getParameterTypes()[0]).wrap().returnType());
+			CallSite site = LambdaMetafactory.metafactory(MethodHandles.lookup(), "accept",
+					MethodType.methodType(BiConsumer.class), MethodType.methodType(void.class, Object.class, Object.class),
+					handle, instantiated);
+			return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+		}
+		return setter(handle);
+	}
+
+	static BiConsumer<Object, Object> setter(MethodHandles.Lookup lookup, Field field) throws IllegalAccessException {
+		return setter(lookup.unreflectSetter(field));
+	}
+
+	@SuppressWarnings("unchecked")
+	static Function<Object, Object> getter(MethodHandles.Lookup lookup, Method method) throws Throwable {
+		MethodHandle handle = lookup.unreflect(method);
+		if (isCompilable(method) && isVisible(method.getReturnType())) {
+			// the instantiated type boxes a primitive result
+			MethodType instantiated = MethodType.methodType(MethodType.methodType(method.getReturnType()).wrap().returnType(),
+					method.getDeclaringClass());
+			CallSite site = LambdaMetafactory.metafactory(MethodHandles.lookup(), "apply",
+					MethodType.methodType(Function.class), MethodType.methodType(Object.class, Object.class),
+					handle, instantiated);
+			return (Function<Object, Object>) site.getTarget().invokeExact();
+		}
+		return getter(handle);
+	}
+
+	static Function<Object, Object> getter(MethodHandles.Lookup lookup, Field field) throws IllegalAccessException {
+		return getter(lookup.unreflectGetter(field));
+	}
+
+	private static BiConsumer<Object, Object> setter(MethodHandle handle) {
+		MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+		return (bean, value) -> {
+			try {
+				generic.invokeExact(bean, value);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new RuntimeException(e);
+			}
+		};
+	}
+
+	private static Function<Object, Object> getter(MethodHandle handle) {
+		MethodHandle generic = handle.asType(MethodType.methodType(Object.class, Object.class));
+		return bean -> {
+			try {
+				return (Object) generic.invokeExact(bean);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new RuntimeException(e);
+			}
+		};
+	}
+
+	private static boolean isCompilable(Method method) {
+		return Modifier.isPublic(method.getModifiers()) && isVisible(method.getDeclaringClass());
+	}
+
+	/**
+	 * Public, and loaded by a class loader this class can see
+	 */
+	private static boolean isVisible(Class<?> type) {
+		while (type.isArray()) {
+			type = type.getComponentType();
+		}
+		if (type.isPrimitive()) {
+			return true;
+		}
+		for (Class<?> c = type; c != null; c = c.getEnclosingClass()) {
+			if (!Modifier.isPublic(c.getModifiers())) {
+				return false;
+			}
+		}
+		try {
+			return Class.forName(type.getName(), false, Accessors.class.getClassLoader()) == type;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+}
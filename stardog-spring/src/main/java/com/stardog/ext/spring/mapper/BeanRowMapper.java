@@ -0,0 +1,393 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring.mapper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.stardog.ext.spring.RowMapper;
+import com.stardog.ext.spring.utils.ValueDecoder;
+import com.stardog.stark.Value;
+import com.stardog.stark.query.BindingSet;
+
+/**
+ * BeanRowMapper
+ * 
+ * RowMapper that maps SPARQL variables to the properties of a class by name: to
+ * setters, to fields, or when there is no no-arg constructor, to the parameters of
+ * the constructor (the canonical constructor of a record).  SparqlVariable renames
+ * a property, or maps one whose type is not picked up by convention.
+ * 
+ * Everything is resolved once, when the mapper is created, and compiled to lambdas
+ * or method handles (see Accessors), so mapping a row does no reflection.
+ * Create the mapper once and reuse it, or use <code>of</code>.
+ * 
+ * Properties may be String, long, int, double, float, boolean and their boxes,
+ * BigDecimal, BigInteger, Instant, LocalDate, java.net.URI, enums, or a Stark Value
+ * type.  Literals are read from their lexical form, see ValueDecoder.  Unbound
+ * variables leave the property untouched, or pass null, 0 or false to the constructor.
+ */
+public class BeanRowMapper<T> implements RowMapper<T> {
+
+	private static final ClassValue<BeanRowMapper<?>> mappers = new ClassValue<BeanRowMapper<?>>() {
+		@Override
+		protected BeanRowMapper<?> computeValue(Class<?> type) {
+			return new BeanRowMapper<>(type);
+		}
+	};
+
+	private final Class<T> type;
+
+	private final Supplier<Object> factory;
+
+	private final MethodHandle constructor;
+
+	private final String[] parameterNames;
+
+	private final Function<Value, Object>[] parameterConverters;
+
+	private final Object[] parameterDefaults;
+
+	private final Property[] properties;
+
+	/**
+	 * <code>of</code>
+	 * @param type class to map rows to
+	 * @param <T> type of the class
+	 * @return the shared mapper of the class
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> BeanRowMapper<T> of(Class<T> type) {
+		return (BeanRowMapper<T>) mappers.get(type);
+	}
+
+	/**
+	 * @param type class to map rows to
+	 * @throws IllegalArgumentException if the class cannot be mapped
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public BeanRowMapper(Class<T> type) {
+		this.type = type;
+		try {
+			MethodHandles.Lookup lookup = Accessors.lookup(type);
+			Set<String> mapped = new HashSet<String>();
+
+			Constructor<?> noArg = findNoArgConstructor(type);
+			if (noArg != null) {
+				factory = Accessors.factory(lookup, noArg);
+				constructor = null;
+				parameterNames = new String[0];
+				parameterConverters = new Function[0];
+				parameterDefaults = new Object[0];
+			} else {
+				Constructor<?> c = findConstructor(type);
+				Parameter[] parameters = c.getParameters();
+				String[] componentNames = recordComponentNames(type);
+				factory = null;
+				parameterNames = new String[parameters.length];
+				parameterConverters = new Function[parameters.length];
+				parameterDefaults = new Object[parameters.length];
+				for (int i = 0; i < parameters.length; i++) {
+					Parameter parameter = parameters[i];
+					String name = variable(parameter.getAnnotation(SparqlVariable.class), null);
+					if (name == null) {
+						if (componentNames != null && componentNames.length == parameters.length) {
+							name = componentNames[i];
+						} else if (parameter.isNamePresent()) {
+							name = parameter.getName();
+						} else {
+							throw new IllegalArgumentException("Parameter names of " + c + " are not known, annotate them"
+									+ " with @SparqlVariable or compile with -parameters");
+						}
+					}
+					Function<Value, Object> converter = converter(parameter.getType());
+					if (converter == null) {
+						throw new IllegalArgumentException("Cannot map ?" + name + " to " + parameter.getType().getName());
+					}
+					parameterNames[i] = name;
+					parameterConverters[i] = converter;
+					parameterDefaults[i] = defaultValue(parameter.getType());
+					mapped.add(name);
+				}
+				constructor = lookup.unreflectConstructor(c)
+						.asSpreader(Object[].class, parameters.length)
+						.asType(MethodType.methodType(Object.class, Object[].class));
+			}
+
+			List<Property> found = new ArrayList<Property>();
+			for (Map.Entry<String, Method> setter : findSetters(type).entrySet()) {
+				if (mapped.add(setter.getKey())) {
+					Method method = setter.getValue();
+					found.add(new Property(setter.getKey(), converter(method.getParameterTypes()[0]), Accessors.setter(lookup, method)));
+				}
+			}
+			for (Map.Entry<String, Field> field : findFields(type).entrySet()) {
+				if (mapped.add(field.getKey())) {
+					Field f = field.getValue();
+					found.add(new Property(field.getKey(), converter(f.getType()), Accessors.setter(lookup, f)));
+				}
+			}
+			properties = found.toArray(new Property[0]);
+		} catch (IllegalArgumentException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalArgumentException("Cannot map rows to " + type.getName(), e);
+		}
+	}
+
+	@Override
+	public T mapRow(BindingSet bindingSet) {
+		Object bean;
+		if (factory != null) {
+			bean = factory.get();
+		} else {
+			Object[] args = new Object[parameterNames.length];
+			for (int i = 0; i < args.length; i++) {
+				Value value = bindingSet.get(parameterNames[i]);
+				args[i] = value == null ? parameterDefaults[i] : parameterConverters[i].apply(value);
+			}
+			try {
+				bean = (Object) constructor.invokeExact(args);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new RuntimeException(e);
+			}
+		}
+		for (Property property : properties) {
+			Value value = bindingSet.get(property.name);
+			if (value != null) {
+				property.setter.accept(bean, property.converter.apply(value));
+			}
+		}
+		return type.cast(bean);
+	}
+
+	/**
+	 * @return the variables mapped, constructor parameters first
+	 */
+	public List<String> getVariables() {
+		List<String> variables = new ArrayList<String>();
+		for (String name : parameterNames) {
+			variables.add(name);
+		}
+		for (Property property : properties) {
+			variables.add(property.name);
+		}
+		return variables;
+	}
+
+	private static Constructor<?> findNoArgConstructor(Class<?> type) {
+		for (Constructor<?> c : type.getDeclaredConstructors()) {
+			if (c.getParameterCount() == 0) {
+				return c;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * A constructor with every parameter annotated, otherwise the one with the most parameters
+	 */
+	private static Constructor<?> findConstructor(Class<?> type) {
+		Constructor<?> widest = null;
+		for (Constructor<?> c : type.getDeclaredConstructors()) {
+			boolean annotated = true;
+			for (Parameter parameter : c.getParameters()) {
+				annotated &= parameter.isAnnotationPresent(SparqlVariable.class);
+			}
+			if (annotated) {
+				return c;
+			}
+			if (widest == null || c.getParameterCount() > widest.getParameterCount()) {
+				widest = c;
+			}
+		}
+		if (widest == null) {
+			throw new IllegalArgumentException("No constructor in " + type.getName());
+		}
+		return widest;
+	}
+
+	/**
+	 * Public setX methods, and annotated single argument methods of any visibility
+	 */
+	private static Map<String, Method> findSetters(Class<?> type) {
+		Map<String, Method> setters = new LinkedHashMap<String, Method>();
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Method method : c.getDeclaredMethods()) {
+				if (Modifier.isStatic(method.getModifiers()) || method.isBridge() || method.getParameterCount() != 1) {
+					continue;
+				}
+				SparqlVariable annotation = method.getAnnotation(SparqlVariable.class);
+				String property = null;
+				if (method.getName().length() > 3 && method.getName().startsWith("set")) {
+					property = Character.toLowerCase(method.getName().charAt(3)) + method.getName().substring(4);
+				}
+				String name = variable(annotation, property);
+				if (name == null || setters.containsKey(name)) {
+					continue;
+				}
+				if (annotation == null && (!Modifier.isPublic(method.getModifiers()) || converter(method.getParameterTypes()[0]) == null)) {
+					continue;
+				}
+				if (converter(method.getParameterTypes()[0]) == null) {
+					throw new IllegalArgumentException("Cannot map ?" + name + " to " + method);
+				}
+				setters.put(name, method);
+			}
+		}
+		return setters;
+	}
+
+	/**
+	 * Non-final instance fields of supported types, and annotated fields
+	 */
+	private static Map<String, Field> findFields(Class<?> type) {
+		Map<String, Field> fields = new LinkedHashMap<String, Field>();
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || field.isSynthetic()) {
+					continue;
+				}
+				SparqlVariable annotation = field.getAnnotation(SparqlVariable.class);
+				String name = variable(annotation, field.getName());
+				if (fields.containsKey(name)) {
+					continue;
+				}
+				if (converter(field.getType()) == null) {
+					if (annotation != null) {
+						throw new IllegalArgumentException("Cannot map ?" + name + " to " + field);
+					}
+					continue;
+				}
+				fields.put(name, field);
+			}
+		}
+		return fields;
+	}
+
+	private static String variable(SparqlVariable annotation, String property) {
+		if (annotation != null && !annotation.value().isEmpty()) {
+			return annotation.value();
+		}
+		return property;
+	}
+
+	/**
+	 * Records are only known to Java 16 and later, so their components are looked up by name
+	 */
+	private static String[] recordComponentNames(Class<?> type) {
+		try {
+			Object[] components = (Object[]) Class.class.getMethod("getRecordComponents").invoke(type);
+			if (components == null) {
+				return null;
+			}
+			String[] names = new String[components.length];
+			for (int i = 0; i < components.length; i++) {
+				names[i] = (String) components[i].getClass().getMethod("getName").invoke(components[i]);
+			}
+			return names;
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if (type == long.class) {
+			return 0L;
+		} else if (type == int.class) {
+			return 0;
+		} else if (type == double.class) {
+			return 0d;
+		} else if (type == float.class) {
+			return 0f;
+		} else if (type == boolean.class) {
+			return false;
+		}
+		return null;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Function<Value, Object> converter(Class<?> type) {
+		if (type == String.class || type == CharSequence.class) {
+			return ValueDecoder::label;
+		} else if (type == long.class || type == Long.class) {
+			return ValueDecoder::longValue;
+		} else if (type == int.class || type == Integer.class) {
+			return v -> Math.toIntExact(ValueDecoder.longValue(v));
+		} else if (type == double.class || type == Double.class) {
+			return ValueDecoder::doubleValue;
+		} else if (type == float.class || type == Float.class) {
+			return v -> (float) ValueDecoder.doubleValue(v);
+		} else if (type == boolean.class || type == Boolean.class) {
+			return ValueDecoder::booleanValue;
+		} else if (type == BigDecimal.class) {
+			return v -> new BigDecimal(ValueDecoder.label(v).trim());
+		} else if (type == BigInteger.class) {
+			return v -> new BigInteger(ValueDecoder.label(v).trim());
+		} else if (type == Instant.class) {
+			return ValueDecoder::instant;
+		} else if (type == LocalDate.class) {
+			return ValueDecoder::localDate;
+		} else if (type == java.net.URI.class) {
+			return v -> java.net.URI.create(ValueDecoder.label(v));
+		} else if (type.isEnum()) {
+			return v -> Enum.valueOf((Class) type, ValueDecoder.label(v).trim());
+		} else if (Value.class.isAssignableFrom(type)) {
+			return v -> type.cast(v);
+		}
+		return null;
+	}
+
+	/**
+	 * One mapped setter or field
+	 */
+	private static final class Property {
+
+		final String name;
+
+		final Function<Value, Object> converter;
+
+		final BiConsumer<Object, Object> setter;
+
+		Property(String name, Function<Value, Object> converter, BiConsumer<Object, Object> setter) {
+			this.name = name;
+			this.converter = converter;
+			this.setter = setter;
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring.mapper;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * RdfProperty
+ * 
+ * Marks a field or getter written by a StatementMapper as the object of a statement
+ * with the given predicate.  Literals are converted by TypeConverter; an Iterable or
+ * array writes one statement per element, and null writes nothing.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.FIELD, ElementType.METHOD })
+public @interface RdfProperty {
+
+	/**
+	 * @return predicate IRI
+	 */
+	String value();
+
+	/**
+	 * @return true to write the value as an IRI rather than a literal
+	 */
+	boolean reference() default false;
+}
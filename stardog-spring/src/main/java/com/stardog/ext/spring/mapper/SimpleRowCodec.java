@@ -0,0 +1,74 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring.mapper;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.stardog.ext.spring.RowCodec;
+
+/**
+ * SimpleRowCodec
+ * 
+ * RowCodec for the rows of the SimpleRowMapper, writing each entry as length prefixed
+ * UTF-8 strings
+ */
+public class SimpleRowCodec implements RowCodec<Map<String, String>> {
+
+	@Override
+	public void write(Map<String, String> row, DataOutput out) throws IOException {
+		out.writeInt(row.size());
+		for (Entry<String, String> entry : row.entrySet()) {
+			writeString(entry.getKey(), out);
+			writeString(entry.getValue(), out);
+		}
+	}
+
+	@Override
+	public Map<String, String> read(DataInput in) throws IOException {
+		int size = in.readInt();
+		Map<String, String> row = new HashMap<String, String>(size * 4 / 3 + 1);
+		for (int i = 0; i < size; i++) {
+			row.put(readString(in), readString(in));
+		}
+		return row;
+	}
+
+	private static void writeString(String value, DataOutput out) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
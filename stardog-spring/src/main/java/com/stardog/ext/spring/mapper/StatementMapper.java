@@ -0,0 +1,311 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring.mapper;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.complexible.stardog.api.Adder;
+import com.stardog.ext.spring.ValueCache;
+import com.stardog.ext.spring.utils.TypeConverter;
+import com.stardog.stark.IRI;
+import com.stardog.stark.Resource;
+import com.stardog.stark.Statement;
+import com.stardog.stark.Value;
+import com.stardog.stark.Values;
+
+/**
+ * StatementMapper
+ * 
+ * Writes objects as statements, the reverse of BeanRowMapper.  The subject comes
+ * from the RdfSubject member, each RdfProperty member becomes a statement with its
+ * predicate, and RdfType on the class adds rdf:type statements.
+ * 
+ * Members are resolved and compiled once, when the mapper is created (see Accessors),
+ * and the predicate and class IRIs are built once, so writing an object does no
+ * reflection.  Create the mapper once and reuse it, or use <code>of</code>.  Use with
+ * SnarlTemplate.addAll or doWithAdder, or StatementMapperCallback in a batch job.
+ */
+public class StatementMapper<T> {
+
+	public static final IRI RDF_TYPE = Values.iri("http://www.w3.org/1999/02/22-rdf-syntax-ns#type");
+
+	private static final ClassValue<StatementMapper<?>> mappers = new ClassValue<StatementMapper<?>>() {
+		@Override
+		protected StatementMapper<?> computeValue(Class<?> type) {
+			return new StatementMapper<>(type);
+		}
+	};
+
+	private final Class<T> type;
+
+	private final Function<Object, Object> subject;
+
+	private final String subjectPrefix;
+
+	private final IRI[] types;
+
+	private final Property[] properties;
+
+	/**
+	 * <code>of</code>
+	 * @param type class of the objects to write
+	 * @param <T> type of the class
+	 * @return the shared mapper of the class
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> StatementMapper<T> of(Class<T> type) {
+		return (StatementMapper<T>) mappers.get(type);
+	}
+
+	/**
+	 * @param type class of the objects to write
+	 * @throws IllegalArgumentException if the class has no RdfSubject
+	 */
+	public StatementMapper(Class<T> type) {
+		this.type = type;
+		RdfType rdfType = type.getAnnotation(RdfType.class);
+		if (rdfType != null) {
+			types = new IRI[rdfType.value().length];
+			for (int i = 0; i < types.length; i++) {
+				types[i] = Values.iri(rdfType.value()[i]);
+			}
+		} else {
+			types = new IRI[0];
+		}
+
+		Function<Object, Object> subjectGetter = null;
+		String prefix = null;
+		List<Property> found = new ArrayList<Property>();
+		// a record component annotation lands on both the field and the accessor
+		Set<String> mapped = new HashSet<String>();
+		try {
+			MethodHandles.Lookup lookup = Accessors.lookup(type);
+			for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+				for (Method method : c.getDeclaredMethods()) {
+					if (Modifier.isStatic(method.getModifiers()) || method.isBridge() || method.getParameterCount() != 0
+							|| method.getReturnType() == void.class) {
+						continue;
+					}
+					RdfSubject s = method.getAnnotation(RdfSubject.class);
+					RdfProperty p = method.getAnnotation(RdfProperty.class);
+					if ((s == null && p == null) || !mapped.add(property(method.getName()))) {
+						continue;
+					}
+					if (s != null && subjectGetter == null) {
+						subjectGetter = Accessors.getter(lookup, method);
+						prefix = s.value();
+					}
+					if (p != null) {
+						found.add(new Property(Values.iri(p.value()), p.reference(), Accessors.getter(lookup, method)));
+					}
+				}
+				for (Field field : c.getDeclaredFields()) {
+					if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+						continue;
+					}
+					RdfSubject s = field.getAnnotation(RdfSubject.class);
+					RdfProperty p = field.getAnnotation(RdfProperty.class);
+					if ((s == null && p == null) || !mapped.add(field.getName())) {
+						continue;
+					}
+					if (s != null && subjectGetter == null) {
+						subjectGetter = Accessors.getter(lookup, field);
+						prefix = s.value();
+					}
+					if (p != null) {
+						found.add(new Property(Values.iri(p.value()), p.reference(), Accessors.getter(lookup, field)));
+					}
+				}
+			}
+		} catch (Throwable e) {
+			throw new IllegalArgumentException("Cannot write statements for " + type.getName(), e);
+		}
+		if (subjectGetter == null) {
+			throw new IllegalArgumentException("No @RdfSubject in " + type.getName());
+		}
+		this.subject = subjectGetter;
+		this.subjectPrefix = prefix;
+		this.properties = found.toArray(new Property[0]);
+	}
+
+	/**
+	 * <code>subject</code>
+	 * @param item object to write
+	 * @return the subject of its statements
+	 * @throws IllegalArgumentException if the subject member is null
+	 */
+	public Resource subject(T item) {
+		Object id = subject.apply(item);
+		if (id == null) {
+			throw new IllegalArgumentException("No subject for " + item);
+		}
+		if (id instanceof Resource) {
+			return (Resource) id;
+		}
+		return Values.iri(subjectPrefix + id);
+	}
+
+	/**
+	 * <code>write</code>
+	 * @param item object to write
+	 * @param adder adder to write to
+	 * @return number of statements written
+	 */
+	public int write(T item, Adder adder) {
+		return write(item, adder, null, null);
+	}
+
+	/**
+	 * <code>write</code>
+	 * @param item object to write
+	 * @param adder adder to write to
+	 * @param context named graph, null for the default graph
+	 * @param valueCache interning cache for objects, may be null
+	 * @return number of statements written
+	 */
+	public int write(T item, Adder adder, Resource context, ValueCache valueCache) {
+		if (context == null) {
+			return emit(item, valueCache, (s, p, o) -> adder.statement(s, p, o));
+		}
+		return emit(item, valueCache, (s, p, o) -> adder.statement(s, p, o, context));
+	}
+
+	/**
+	 * <code>write</code>
+	 * @param items objects to write
+	 * @param adder adder to write to
+	 * @param context named graph, null for the default graph
+	 * @param valueCache interning cache for objects, may be null
+	 * @return number of statements written
+	 */
+	public int write(Iterable<? extends T> items, Adder adder, Resource context, ValueCache valueCache) {
+		int count = 0;
+		for (T item : items) {
+			count += write(item, adder, context, valueCache);
+		}
+		return count;
+	}
+
+	/**
+	 * <code>statements</code>
+	 * @param item object to write
+	 * @return its statements, in the default graph
+	 */
+	public List<Statement> statements(T item) {
+		List<Statement> statements = new ArrayList<Statement>();
+		emit(item, null, (s, p, o) -> statements.add(Values.statement(s, p, o)));
+		return statements;
+	}
+
+	/**
+	 * @return the class of the objects written
+	 */
+	public Class<T> getType() {
+		return type;
+	}
+
+	private int emit(T item, ValueCache valueCache, Sink sink) {
+		Resource s = subject(item);
+		for (IRI rdfType : types) {
+			sink.accept(s, RDF_TYPE, rdfType);
+		}
+		int count = types.length;
+		for (Property property : properties) {
+			Object value = property.getter.apply(item);
+			if (value == null) {
+				continue;
+			}
+			if (value instanceof Iterable) {
+				for (Object element : (Iterable<?>) value) {
+					count += emit(s, property, element, valueCache, sink);
+				}
+			} else if (value instanceof Object[]) {
+				for (Object element : (Object[]) value) {
+					count += emit(s, property, element, valueCache, sink);
+				}
+			} else {
+				count += emit(s, property, value, valueCache, sink);
+			}
+		}
+		return count;
+	}
+
+	private static int emit(Resource s, Property property, Object value, ValueCache valueCache, Sink sink) {
+		if (value == null) {
+			return 0;
+		}
+		sink.accept(s, property.predicate, property.reference ? reference(value, valueCache) : literal(value, valueCache));
+		return 1;
+	}
+
+	private static Value reference(Object value, ValueCache valueCache) {
+		if (value instanceof Resource) {
+			return (Resource) value;
+		}
+		return valueCache != null ? valueCache.iri(value.toString()) : Values.iri(value.toString());
+	}
+
+	private static Value literal(Object value, ValueCache valueCache) {
+		return valueCache != null ? valueCache.literal(value) : TypeConverter.asLiteral(value);
+	}
+
+	/**
+	 * Property name of a getter, or of a record accessor
+	 */
+	private static String property(String method) {
+		if (method.length() > 3 && method.startsWith("get")) {
+			return Character.toLowerCase(method.charAt(3)) + method.substring(4);
+		}
+		if (method.length() > 2 && method.startsWith("is")) {
+			return Character.toLowerCase(method.charAt(2)) + method.substring(3);
+		}
+		return method;
+	}
+
+	/**
+	 * Destination of the statements
+	 */
+	private interface Sink {
+
+		void accept(Resource subject, IRI predicate, Value object);
+	}
+
+	/**
+	 * One mapped member
+	 */
+	private static final class Property {
+
+		final IRI predicate;
+
+		final boolean reference;
+
+		final Function<Object, Object> getter;
+
+		Property(IRI predicate, boolean reference, Function<Object, Object> getter) {
+			this.predicate = predicate;
+			this.reference = reference;
+			this.getter = getter;
+		}
+	}
+}
@@ -15,23 +15,47 @@
 */
 package com.stardog.ext.spring.utils;
 
+import com.stardog.stark.IRI;
 import com.stardog.stark.Value;
 import com.stardog.stark.Values;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.Period;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.Date;
+import java.util.Deque;
 import java.util.GregorianCalendar;
-
-import javax.xml.datatype.DatatypeConfigurationException;
-import javax.xml.datatype.DatatypeFactory;
-import javax.xml.datatype.XMLGregorianCalendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 
 /**
  * TypeConverter
  * 
- * Conversion methods from standard JDK types (java.net.URI, java.util.Date, etc) to
- * OpenRDF types (URI, Value, etc)
+ * Conversion methods from standard JDK types (java.net.URI, java.util.Date, java.time, etc) to
+ * Stark types (IRI, Value, etc)
+ * 
+ * Conversions are looked up by class in a registry, which can be extended with
+ * <code>register</code>.  A class without a registration of its own uses the nearest
+ * registered superclass or interface, and the result of that lookup is cached per class.
+ * Registering replaces the registry as a whole, together with its lookup cache, so a
+ * lookup racing a registration sees either the old or the new registry, never a mix.
  * 
  * @author Clark and Parsia, LLC
  * @author Al Baker
@@ -39,31 +63,97 @@ import javax.xml.datatype.XMLGregorianCalendar;
  */
 public class TypeConverter {
 
+	public static final String XSD = "http://www.w3.org/2001/XMLSchema#";
+
+	public static final IRI XSD_STRING = Values.iri(XSD + "string");
+
+	public static final IRI XSD_DATETIME = Values.iri(XSD + "dateTime");
+
+	public static final IRI XSD_DATE = Values.iri(XSD + "date");
+
+	public static final IRI XSD_TIME = Values.iri(XSD + "time");
+
+	public static final IRI XSD_GYEAR = Values.iri(XSD + "gYear");
+
+	public static final IRI XSD_GYEARMONTH = Values.iri(XSD + "gYearMonth");
+
+	public static final IRI XSD_DURATION = Values.iri(XSD + "duration");
+
+	public static final IRI XSD_DAYTIMEDURATION = Values.iri(XSD + "dayTimeDuration");
+
+	private static final Function<Object, Value> UNSUPPORTED = o -> null;
+
+	private static volatile Registry registry = new Registry(new HashMap<Class<?>, Function<Object, Value>>());
+
+	static {
+		register(Value.class, v -> v);
+		register(String.class, s -> Values.literal(s));
+		register(URI.class, uri -> Values.literal(uri.toString()));
+		register(Integer.class, i -> Values.literal(i.intValue()));
+		register(Long.class, l -> Values.literal(l.longValue()));
+		register(Short.class, s -> Values.literal(s.shortValue()));
+		register(Byte.class, b -> Values.literal(b.byteValue()));
+		register(Double.class, d -> Values.literal(d.doubleValue()));
+		register(Float.class, f -> Values.literal(f.floatValue()));
+		register(BigDecimal.class, d -> Values.literal(d));
+		register(BigInteger.class, i -> Values.literal(i));
+		register(Boolean.class, b -> Values.literal(b.booleanValue()));
+		register(Character.class, c -> Values.literal(c.toString()));
+		register(UUID.class, uuid -> Values.literal(uuid.toString(), XSD_STRING));
+		register(Date.class, date -> asLiteral(date));
+		register(GregorianCalendar.class, c -> Values.literal(c));
+		register(Instant.class, i -> Values.literal(DateTimeFormatter.ISO_INSTANT.format(i), XSD_DATETIME));
+		register(OffsetDateTime.class, d -> Values.literal(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(d), XSD_DATETIME));
+		register(ZonedDateTime.class, d -> Values.literal(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(d), XSD_DATETIME));
+		register(LocalDateTime.class, d -> Values.literal(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(d), XSD_DATETIME));
+		register(LocalDate.class, d -> Values.literal(DateTimeFormatter.ISO_LOCAL_DATE.format(d), XSD_DATE));
+		register(LocalTime.class, t -> Values.literal(DateTimeFormatter.ISO_LOCAL_TIME.format(t), XSD_TIME));
+		register(OffsetTime.class, t -> Values.literal(DateTimeFormatter.ISO_OFFSET_TIME.format(t), XSD_TIME));
+		register(Year.class, y -> Values.literal(y.toString(), XSD_GYEAR));
+		register(YearMonth.class, ym -> Values.literal(ym.toString(), XSD_GYEARMONTH));
+		register(Duration.class, d -> Values.literal(lexical(d), XSD_DAYTIMEDURATION));
+		register(Period.class, p -> Values.literal(lexical(p), XSD_DURATION));
+	}
+
+	/**
+	 * <code>register</code>
+	 * Adds or replaces the conversion for a class and its subclasses
+	 * 
+	 * @param type class of the objects to convert
+	 * @param converter conversion to a Stardog Value
+	 * @param <T> type of the objects
+	 */
+	@SuppressWarnings("unchecked")
+	public static synchronized <T> void register(Class<T> type, Function<? super T, ? extends Value> converter) {
+		Map<Class<?>, Function<Object, Value>> registered = new HashMap<Class<?>, Function<Object, Value>>(registry.registered);
+		registered.put(type, (Function<Object, Value>) converter);
+		registry = new Registry(registered);
+	}
+
+	/**
+	 * <code>asLiteral</code>
+	 * @param o object to convert
+	 * @return the Stardog Value, null for a null object or a class without a registered conversion
+	 */
 	public static Value asLiteral(Object o) {
-		if (o instanceof String) {
-			return asLiteral((String)o);
-		} else if (o instanceof URI) {
-			return asLiteral((URI) o);
-		} else if (o instanceof Date) {
-			return asLiteral((Date)o);
-		} else if (o instanceof Integer) {
-			return asLiteral((Integer) o);
-		} else {
+		if (o == null) {
 			return null;
 		}
+		return registry.converter(o.getClass()).apply(o);
+	}
+
+	/**
+	 * <code>isSupported</code>
+	 * @param type class of the objects to convert
+	 * @return true if asLiteral can convert instances of the class
+	 */
+	public static boolean isSupported(Class<?> type) {
+		return registry.converter(type) != UNSUPPORTED;
 	}
 	
 	public static Value asLiteral(Date date) { 
-		GregorianCalendar c = new GregorianCalendar();
-		c.setTime((Date)date);
-		XMLGregorianCalendar date2 = null;
-		try {
-			date2 = DatatypeFactory.newInstance().newXMLGregorianCalendar(c);
-		} catch (DatatypeConfigurationException e) {
-			throw new RuntimeException(e);
-		}
-		return Values.literal(c);
-
+		// java.sql.Date and Time do not support toInstant
+		return Values.literal(DateTimeFormatter.ISO_INSTANT.format(Instant.ofEpochMilli(date.getTime())), XSD_DATETIME);
 	}
 	
 	public static Value asResource(java.net.URI uri) {
@@ -75,11 +165,80 @@ public class TypeConverter {
 	}
 	
 	public static Value asLiteral(Integer i) {
-		return Values.literal(Integer.valueOf(i));
+		return Values.literal(i.intValue());
 	}
 	
 	public static Value asLiteral(String s) { 
 		return Values.literal(s);
 	}
+
+	/**
+	 * Registered conversions, never modified once published, and the conversions resolved
+	 * from them for classes without a registration of their own
+	 */
+	private static final class Registry {
+
+		private final Map<Class<?>, Function<Object, Value>> registered;
+
+		private final Map<Class<?>, Function<Object, Value>> resolved = new ConcurrentHashMap<Class<?>, Function<Object, Value>>();
+
+		Registry(Map<Class<?>, Function<Object, Value>> registered) {
+			this.registered = registered;
+		}
+
+		Function<Object, Value> converter(Class<?> type) {
+			Function<Object, Value> converter = resolved.get(type);
+			if (converter == null) {
+				converter = resolved.computeIfAbsent(type, this::resolve);
+			}
+			return converter;
+		}
+
+		/**
+		 * Nearest registration, superclasses before interfaces
+		 */
+		private Function<Object, Value> resolve(Class<?> type) {
+			for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+				Function<Object, Value> converter = registered.get(c);
+				if (converter != null) {
+					return converter;
+				}
+			}
+			Deque<Class<?>> interfaces = new ArrayDeque<Class<?>>();
+			for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+				for (Class<?> i : c.getInterfaces()) {
+					interfaces.add(i);
+				}
+			}
+			while (!interfaces.isEmpty()) {
+				Class<?> i = interfaces.poll();
+				Function<Object, Value> converter = registered.get(i);
+				if (converter != null) {
+					return converter;
+				}
+				for (Class<?> parent : i.getInterfaces()) {
+					interfaces.add(parent);
+				}
+			}
+			return UNSUPPORTED;
+		}
+	}
+
+	/**
+	 * xsd durations carry the sign in front, java.time on each field
+	 */
+	private static String lexical(Duration duration) {
+		return duration.isNegative() ? "-" + duration.negated() : duration.toString();
+	}
+
+	private static String lexical(Period period) {
+		if (period.getYears() <= 0 && period.getMonths() <= 0 && period.getDays() <= 0 && !period.isZero()) {
+			return "-" + period.negated();
+		}
+		if (period.getYears() < 0 || period.getMonths() < 0 || period.getDays() < 0) {
+			throw new IllegalArgumentException("Period with mixed signs has no xsd:duration form: " + period);
+		}
+		return period.toString();
+	}
 	
 }
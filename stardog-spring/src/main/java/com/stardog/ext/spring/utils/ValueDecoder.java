@@ -0,0 +1,224 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring.utils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+
+import com.stardog.stark.Literal;
+import com.stardog.stark.Value;
+import com.stardog.stark.query.BindingSet;
+
+/**
+ * ValueDecoder
+ * 
+ * Conversion methods from Stark values to Java types, the reverse of TypeConverter.
+ * 
+ * Literals are decoded from their lexical form as is, without the datatype-tagged
+ * string of toString, and numbers are parsed in place rather than from a trimmed copy,
+ * so decoding a numeric cell allocates nothing.
+ */
+public class ValueDecoder {
+
+	private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ISO_DATE_TIME;
+
+	private static final DateTimeFormatter DATE = DateTimeFormatter.ISO_DATE;
+
+	/**
+	 * <code>label</code>
+	 * @param value any value
+	 * @return the lexical form of a literal, otherwise the string of the IRI or bnode
+	 */
+	public static String label(Value value) {
+		return value instanceof Literal ? ((Literal) value).label() : value.toString();
+	}
+
+	/**
+	 * <code>longValue</code>
+	 * @param value integer literal
+	 * @return the value
+	 * @throws NumberFormatException if the value is not an integer
+	 */
+	public static long longValue(Value value) {
+		String label = label(value);
+		int start = start(label);
+		int end = end(label, start);
+		if (start == end) {
+			throw new NumberFormatException("Not an integer: \"" + label + "\"");
+		}
+		return Long.parseLong(label, start, end, 10);
+	}
+
+	/**
+	 * <code>doubleValue</code>
+	 * @param value numeric literal
+	 * @return the value, xsd INF and NaN included
+	 * @throws NumberFormatException if the value is not a number
+	 */
+	public static double doubleValue(Value value) {
+		String label = label(value);
+		int start = start(label);
+		int end = end(label, start);
+		// xsd spells infinity INF, Java Infinity
+		if (end - start >= 3 && label.startsWith("INF", end - 3)) {
+			if (end - start == 3 || (end - start == 4 && label.charAt(start) == '+')) {
+				return Double.POSITIVE_INFINITY;
+			}
+			if (end - start == 4 && label.charAt(start) == '-') {
+				return Double.NEGATIVE_INFINITY;
+			}
+		}
+		return Double.parseDouble(start == 0 && end == label.length() ? label : label.substring(start, end));
+	}
+
+	/**
+	 * <code>booleanValue</code>
+	 * @param value boolean literal
+	 * @return the value
+	 * @throws NumberFormatException if the value is not true, false, 1 or 0
+	 */
+	public static boolean booleanValue(Value value) {
+		String label = label(value);
+		int start = start(label);
+		int end = end(label, start);
+		int length = end - start;
+		if ((length == 4 && label.startsWith("true", start)) || (length == 1 && label.charAt(start) == '1')) {
+			return true;
+		}
+		if ((length == 5 && label.startsWith("false", start)) || (length == 1 && label.charAt(start) == '0')) {
+			return false;
+		}
+		throw new NumberFormatException("Not an xsd:boolean: \"" + label + "\"");
+	}
+
+	/**
+	 * <code>instant</code>
+	 * @param value xsd:dateTime literal, read as UTC when it has no timezone
+	 * @return the instant
+	 * @throws java.time.format.DateTimeParseException if the value is not a dateTime
+	 */
+	public static Instant instant(Value value) {
+		TemporalAccessor parsed = DATE_TIME.parseBest(label(value).trim(), OffsetDateTime::from, LocalDateTime::from);
+		if (parsed instanceof OffsetDateTime) {
+			return ((OffsetDateTime) parsed).toInstant();
+		}
+		return ((LocalDateTime) parsed).toInstant(ZoneOffset.UTC);
+	}
+
+	/**
+	 * <code>localDate</code>
+	 * @param value xsd:date literal, or xsd:dateTime whose date is taken
+	 * @return the date, any timezone dropped
+	 * @throws java.time.format.DateTimeParseException if the value is not a date
+	 */
+	public static LocalDate localDate(Value value) {
+		String label = label(value).trim();
+		if (label.indexOf('T') > 0) {
+			return LocalDate.from(DATE_TIME.parse(label));
+		}
+		return LocalDate.from(DATE.parse(label));
+	}
+
+	/**
+	 * <code>longValue</code>
+	 * @param bindingSet row
+	 * @param name variable
+	 * @param defaultValue value when the variable is unbound
+	 * @return the value
+	 */
+	public static long longValue(BindingSet bindingSet, String name, long defaultValue) {
+		Value value = bindingSet.get(name);
+		return value == null ? defaultValue : longValue(value);
+	}
+
+	/**
+	 * <code>doubleValue</code>
+	 * @param bindingSet row
+	 * @param name variable
+	 * @param defaultValue value when the variable is unbound
+	 * @return the value
+	 */
+	public static double doubleValue(BindingSet bindingSet, String name, double defaultValue) {
+		Value value = bindingSet.get(name);
+		return value == null ? defaultValue : doubleValue(value);
+	}
+
+	/**
+	 * <code>booleanValue</code>
+	 * @param bindingSet row
+	 * @param name variable
+	 * @param defaultValue value when the variable is unbound
+	 * @return the value
+	 */
+	public static boolean booleanValue(BindingSet bindingSet, String name, boolean defaultValue) {
+		Value value = bindingSet.get(name);
+		return value == null ? defaultValue : booleanValue(value);
+	}
+
+	/**
+	 * <code>instant</code>
+	 * @param bindingSet row
+	 * @param name variable
+	 * @return the instant, null when unbound
+	 */
+	public static Instant instant(BindingSet bindingSet, String name) {
+		Value value = bindingSet.get(name);
+		return value == null ? null : instant(value);
+	}
+
+	/**
+	 * <code>localDate</code>
+	 * @param bindingSet row
+	 * @param name variable
+	 * @return the date, null when unbound
+	 */
+	public static LocalDate localDate(BindingSet bindingSet, String name) {
+		Value value = bindingSet.get(name);
+		return value == null ? null : localDate(value);
+	}
+
+	/**
+	 * <code>label</code>
+	 * @param bindingSet row
+	 * @param name variable
+	 * @return the lexical form, null when unbound
+	 */
+	public static String label(BindingSet bindingSet, String name) {
+		Value value = bindingSet.get(name);
+		return value == null ? null : label(value);
+	}
+
+	private static int start(String label) {
+		int start = 0;
+		while (start < label.length() && label.charAt(start) <= ' ') {
+			start++;
+		}
+		return start;
+	}
+
+	private static int end(String label, int start) {
+		int end = label.length();
+		while (end > start && label.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		return end;
+	}
+}
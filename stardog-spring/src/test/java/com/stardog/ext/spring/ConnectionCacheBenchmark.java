@@ -0,0 +1,108 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.complexible.stardog.api.Connection;
+
+/**
+ * ConnectionCacheBenchmark
+ * 
+ * Contention benchmark for the ConnectionCache: threads repeatedly obtain and release a
+ * connection, either straight against a pool guarded by a single lock (standing in for the
+ * shared state of the Stardog ConnectionPool), or through the ConnectionCache in front of it.
+ * 
+ * Not a unit test, run the main method:
+ * 
+ * java -cp ... com.stardog.ext.spring.ConnectionCacheBenchmark [seconds per run]
+ */
+public class ConnectionCacheBenchmark {
+
+	/**
+	 * Pool stand-in, every obtain and release goes through one monitor
+	 */
+	private static class LockedPool {
+
+		private final Deque<Connection> idle = new ArrayDeque<Connection>();
+
+		synchronized Connection obtain() {
+			Connection c = idle.poll();
+			if (c == null) {
+				c = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+						new Class<?>[] { Connection.class }, (proxy, method, args) -> null);
+			}
+			return c;
+		}
+
+		synchronized void release(Connection connection) {
+			idle.push(connection);
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		long seconds = args.length > 0 ? Long.parseLong(args[0]) : 2;
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		System.out.println("threads\tpool ops/s\tcached ops/s");
+		for (int threads = 1; threads <= cores * 2; threads *= 2) {
+			LockedPool pool = new LockedPool();
+			long direct = run(threads, seconds, pool::obtain, pool::release);
+
+			LockedPool cachedPool = new LockedPool();
+			ConnectionCache cache = new ConnectionCache(cores * 2, 1, TimeUnit.SECONDS, cachedPool::obtain, cachedPool::release);
+			long cached = run(threads, seconds, cache::obtain, cache::release);
+
+			System.out.println(threads + "\t" + direct + "\t" + cached);
+		}
+	}
+
+	private static long run(int threads, long seconds, Supplier<Connection> obtain, Consumer<Connection> release)
+			throws InterruptedException {
+		LongAdder ops = new LongAdder();
+		CountDownLatch start = new CountDownLatch(1);
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				long local = 0;
+				while ((local & 1023) != 0 || System.nanoTime() < end) {
+					release.accept(obtain.get());
+					local++;
+				}
+				ops.add(local);
+			});
+			workers[i].start();
+		}
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		return ops.sum() / seconds;
+	}
+}
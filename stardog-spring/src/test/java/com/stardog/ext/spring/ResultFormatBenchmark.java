@@ -0,0 +1,98 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+import com.stardog.stark.query.Binding;
+
+/**
+ * ResultFormatBenchmark
+ * 
+ * Compares the ResultFormat options of SnarlTemplate on a wide SELECT and a CONSTRUCT
+ * against a running Stardog server.  Reports the wall clock time and the client
+ * CPU time per query, the latter being mostly result parsing.
+ * 
+ * Not a unit test, run the main method against a loaded database, e.g. the testdb of the
+ * integration tests:
+ * 
+ * java -cp ... com.stardog.ext.spring.ResultFormatBenchmark [url] [database] [runs] [limit]
+ */
+public class ResultFormatBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		String url = args.length > 0 ? args[0] : "http://localhost:5820";
+		String database = args.length > 1 ? args[1] : "testdb";
+		int runs = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		int limit = args.length > 3 ? Integer.parseInt(args[3]) : 100000;
+
+		String select = "SELECT ?s ?p ?o ?g WHERE { GRAPH ?g { ?s ?p ?o } } LIMIT " + limit;
+		String construct = "CONSTRUCT { ?s ?p ?o } WHERE { ?s ?p ?o } LIMIT " + limit;
+
+		DataSourceFactoryBean factoryBean = new DataSourceFactoryBean();
+		factoryBean.setUrl(url);
+		factoryBean.setTo(database);
+		factoryBean.setUsername("admin");
+		factoryBean.setPassword("admin");
+		factoryBean.setMinPool(1);
+		factoryBean.afterPropertiesSet();
+		try {
+			SnarlTemplate template = new SnarlTemplate();
+			template.setDataSource(factoryBean.getObject());
+
+			System.out.println("format\tselect ms\tselect cpu ms\tconstruct ms\tconstruct cpu ms");
+			for (ResultFormat format : ResultFormat.values()) {
+				template.setResultFormat(format);
+				try {
+					long[] selectTimes = time(runs, () -> template.query(select, bindings -> {
+						// touch every value, as a real mapper would
+						int width = 0;
+						for (Binding binding : bindings) {
+							width += binding.value().toString().length();
+						}
+						return width;
+					}));
+					long[] constructTimes = time(runs, () -> template.construct(construct, statement -> statement.object().toString()));
+
+					System.out.println(format + "\t" + selectTimes[0] + "\t" + selectTimes[1]
+							+ "\t" + constructTimes[0] + "\t" + constructTimes[1]);
+				} catch (RuntimeException e) {
+					System.out.println(format + "\tnot supported: " + e.getMessage());
+				}
+			}
+		} finally {
+			factoryBean.destroy();
+		}
+	}
+
+	/*
+	 * Average wall clock and CPU milliseconds per run, after a warm up run
+	 */
+	private static long[] time(int runs, java.util.function.Supplier<List<?>> query) {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		query.get();
+		long start = System.nanoTime();
+		long cpuStart = threads.getCurrentThreadCpuTime();
+		for (int i = 0; i < runs; i++) {
+			query.get();
+		}
+		long wall = (System.nanoTime() - start) / runs / 1000000L;
+		long cpu = (threads.getCurrentThreadCpuTime() - cpuStart) / runs / 1000000L;
+		return new long[] { wall, cpu };
+	}
+}
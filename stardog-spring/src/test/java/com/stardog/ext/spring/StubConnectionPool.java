@@ -0,0 +1,156 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import com.complexible.stardog.api.Adder;
+import com.complexible.stardog.api.BooleanQuery;
+import com.complexible.stardog.api.Connection;
+import com.complexible.stardog.api.ConnectionPool;
+import com.complexible.stardog.api.GraphQuery;
+import com.complexible.stardog.api.SelectQuery;
+
+/**
+ * Stand-in for the Stardog ConnectionPool in unit tests.  Its connections answer ASK
+ * queries until marked invalid, SELECT and CONSTRUCT queries with no result, and record
+ * the settings made on their queries.  Statements added in a transaction are counted in
+ * committed on commit, and dropped on rollback, which fails once marked invalid.  Closed
+ * connections are discarded on release, and idle ones are closed on shutdown, as the
+ * Stardog pool does.
+ */
+class StubConnectionPool implements ConnectionPool {
+
+	final Deque<Connection> idle = new ArrayDeque<Connection>();
+
+	final List<Connection> created = new ArrayList<Connection>();
+
+	final List<Connection> invalid = new ArrayList<Connection>();
+
+	// query setter calls, e.g. "timeout 30000"
+	final List<String> settings = new ArrayList<String>();
+
+	int obtained = 0;
+
+	int committed = 0;
+
+	int active = 0;
+
+	boolean shutdown = false;
+
+	@Override
+	public synchronized Connection obtain() {
+		obtained++;
+		active++;
+		Connection connection = idle.poll();
+		return connection != null ? connection : create();
+	}
+
+	@Override
+	public synchronized void release(Connection connection) {
+		active--;
+		if (connection.isOpen()) {
+			idle.push(connection);
+		}
+	}
+
+	@Override
+	public synchronized void shutdown() {
+		shutdown = true;
+		for (Connection connection : idle) {
+			connection.close();
+		}
+		idle.clear();
+	}
+
+	synchronized int closed() {
+		int closed = 0;
+		for (Connection connection : created) {
+			if (!connection.isOpen()) {
+				closed++;
+			}
+		}
+		return closed;
+	}
+
+	private Connection create() {
+		boolean[] open = { true };
+		// statements added since the last commit or rollback
+		int[] pending = { 0 };
+		Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "equals":
+							return proxy == args[0];
+						case "isOpen":
+							return open[0];
+						case "close":
+							open[0] = false;
+							return null;
+						case "add":
+							return Proxy.newProxyInstance(Adder.class.getClassLoader(), new Class<?>[] { Adder.class },
+									(adder, write, values) -> {
+										pending[0]++;
+										return adder;
+									});
+						case "commit":
+							synchronized (this) {
+								committed += pending[0];
+							}
+							pending[0] = 0;
+							return null;
+						case "rollback":
+							if (invalid.contains(proxy)) {
+								throw new IllegalStateException("Connection reset");
+							}
+							pending[0] = 0;
+							return null;
+						case "ask":
+							if (invalid.contains(proxy)) {
+								throw new IllegalStateException("Connection reset");
+							}
+							return query(BooleanQuery.class, Boolean.TRUE);
+						case "select":
+							return query(SelectQuery.class, null);
+						case "graph":
+							return query(GraphQuery.class, null);
+						default:
+							return null;
+					}
+				});
+		created.add(connection);
+		return connection;
+	}
+
+	private Object query(Class<?> type, Object result) {
+		return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+			if (method.getName().equals("execute")) {
+				return result;
+			}
+			if (args != null && args.length == 1 && method.getReturnType().isInstance(proxy)) {
+				settings.add(method.getName() + " " + args[0]);
+				return proxy;
+			}
+			return null;
+		});
+	}
+}
@@ -0,0 +1,173 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.stardog.ext.spring.AdaptiveConcurrencyLimiter.Operation;
+
+/**
+ * Unit tests for AdaptiveConcurrencyLimiter
+ */
+public class TestAdaptiveConcurrencyLimiter {
+
+	@Test
+	public void testNestedAcquireSharesPermit() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+		limiter.setInitialLimit(1);
+		limiter.setMaxQueueDepth(0);
+
+		limiter.acquire();
+		limiter.acquire();
+		assertEquals(1, limiter.getInFlight());
+		limiter.release();
+		assertEquals(1, limiter.getInFlight());
+		limiter.release();
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	public void testFailFastWhenQueueFull() throws InterruptedException {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+		limiter.setInitialLimit(1);
+		limiter.setMinLimit(1);
+		limiter.setMaxQueueDepth(0);
+
+		limiter.acquire();
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread other = new Thread(() -> {
+			try {
+				limiter.acquire();
+				limiter.release();
+			} catch (Throwable t) {
+				failure.set(t);
+			}
+		});
+		other.start();
+		other.join();
+		limiter.release();
+
+		assertTrue(failure.get() instanceof ConcurrencyLimitExceededException);
+	}
+
+	@Test
+	public void testQueuedOperationAdmittedOnRelease() throws InterruptedException {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+		limiter.setInitialLimit(1);
+		limiter.setMaxQueueTime(5);
+		limiter.setMaxQueueTimeUnit(TimeUnit.SECONDS);
+
+		limiter.acquire();
+		CountDownLatch admitted = new CountDownLatch(1);
+		Thread other = new Thread(() -> {
+			limiter.acquire();
+			admitted.countDown();
+			limiter.release();
+		});
+		other.start();
+		assertFalse(admitted.await(50, TimeUnit.MILLISECONDS));
+		limiter.release();
+		assertTrue(admitted.await(5, TimeUnit.SECONDS));
+		other.join();
+	}
+
+	@Test
+	public void testLatencyFloorPerOperation() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+		limiter.setInitialLimit(2);
+		limiter.setMinLimit(1);
+
+		limiter.acquire();
+		try {
+			for (int i = 0; i < 100; i++) {
+				limiter.sample(Operation.ASK, TimeUnit.MILLISECONDS.toNanos(1));
+			}
+			int limit = limiter.getLimit();
+			// slow but steady SELECTs are not mistaken for queueing behind the fast ASKs
+			for (int i = 0; i < 100; i++) {
+				limiter.sample(Operation.SELECT, TimeUnit.MILLISECONDS.toNanos(100));
+			}
+			assertTrue(limiter.getLimit() >= limit);
+			assertEquals(TimeUnit.MILLISECONDS.toNanos(1), limiter.getLatencyFloor(Operation.ASK));
+			assertEquals(TimeUnit.MILLISECONDS.toNanos(100), limiter.getLatencyFloor(Operation.SELECT));
+		} finally {
+			limiter.release();
+		}
+	}
+
+	@Test
+	public void testLatencyFloorWindowed() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+		long fast = TimeUnit.MILLISECONDS.toNanos(1);
+		long slow = TimeUnit.MILLISECONDS.toNanos(50);
+
+		assertEquals(Long.MAX_VALUE, limiter.getLatencyFloor(Operation.SELECT));
+		limiter.sample(Operation.SELECT, fast);
+		// the floor survives the window boundary
+		for (int i = 0; i < 1500; i++) {
+			limiter.sample(Operation.SELECT, slow);
+		}
+		assertEquals(fast, limiter.getLatencyFloor(Operation.SELECT));
+		// and rises once a whole window has gone by without a lower sample
+		for (int i = 0; i < 1000; i++) {
+			limiter.sample(Operation.SELECT, slow);
+		}
+		assertEquals(slow, limiter.getLatencyFloor(Operation.SELECT));
+	}
+
+	@Test
+	public void testQueueingShrinksLimit() throws InterruptedException {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+		limiter.setInitialLimit(20);
+		limiter.setMinLimit(1);
+
+		// keep the limit busy, nested acquires on one thread would share a permit
+		CountDownLatch admitted = new CountDownLatch(15);
+		CountDownLatch done = new CountDownLatch(1);
+		Thread[] threads = new Thread[15];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				limiter.acquire();
+				try {
+					admitted.countDown();
+					done.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					limiter.release();
+				}
+			});
+			threads[i].start();
+		}
+		assertTrue(admitted.await(5, TimeUnit.SECONDS));
+
+		limiter.sample(Operation.SELECT, TimeUnit.MILLISECONDS.toNanos(1));
+		for (int i = 0; i < 5; i++) {
+			limiter.sample(Operation.SELECT, TimeUnit.MILLISECONDS.toNanos(10));
+		}
+		done.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue(limiter.getLimit() < 20);
+	}
+}
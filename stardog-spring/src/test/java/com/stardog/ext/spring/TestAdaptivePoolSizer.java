@@ -0,0 +1,127 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for AdaptivePoolSizer
+ */
+public class TestAdaptivePoolSizer {
+
+	@Test
+	public void testGrowsWhenCallersWait() throws InterruptedException {
+		AdaptivePoolSizer sizer = new AdaptivePoolSizer(2, 10, 1, TimeUnit.MILLISECONDS);
+		sizer.setBlockCapacityTime(1, TimeUnit.SECONDS);
+
+		assertTrue(sizer.acquire());
+		assertTrue(sizer.acquire());
+		// at the limit, this caller raises it after growWaitTime
+		assertTrue(sizer.acquire());
+		assertEquals(3, sizer.getLimit());
+	}
+
+	@Test
+	public void testColdBurstGrowsToDemand() throws InterruptedException {
+		AdaptivePoolSizer sizer = new AdaptivePoolSizer(2, 20, 5, TimeUnit.MILLISECONDS);
+		sizer.setBlockCapacityTime(5, TimeUnit.SECONDS);
+
+		CountDownLatch admitted = new CountDownLatch(12);
+		CountDownLatch done = new CountDownLatch(1);
+		AtomicInteger failed = new AtomicInteger();
+		Thread[] threads = new Thread[12];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				try {
+					if (sizer.acquire()) {
+						admitted.countDown();
+						done.await();
+						sizer.release();
+					} else {
+						failed.incrementAndGet();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			threads[i].start();
+		}
+		// all admitted long before a single adjustment interval
+		assertTrue(admitted.await(1, TimeUnit.SECONDS));
+		assertEquals(12, sizer.getInUse());
+		assertTrue(sizer.getLimit() >= 12);
+		done.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, failed.get());
+	}
+
+	@Test
+	public void testFailsAtMaxPool() throws InterruptedException {
+		AdaptivePoolSizer sizer = new AdaptivePoolSizer(1, 2, 1, TimeUnit.MILLISECONDS);
+		sizer.setBlockCapacityTime(20, TimeUnit.MILLISECONDS);
+
+		assertTrue(sizer.acquire());
+		assertTrue(sizer.acquire());
+		assertFalse(sizer.acquire());
+		assertEquals(2, sizer.getLimit());
+	}
+
+	@Test
+	public void testShrinksWhenIdle() {
+		AdaptivePoolSizer sizer = new AdaptivePoolSizer(2, 10, 1, TimeUnit.MILLISECONDS);
+		sizer.setLimit(10);
+
+		sizer.adjust();
+		assertEquals(9, sizer.getLimit());
+
+		for (int i = 0; i < 20; i++) {
+			sizer.adjust();
+		}
+		assertEquals(2, sizer.getLimit());
+	}
+
+	@Test
+	public void testNoGrowthWithoutGrowAtCapacity() throws InterruptedException {
+		AdaptivePoolSizer sizer = new AdaptivePoolSizer(1, 10, 1, TimeUnit.MILLISECONDS);
+		sizer.setBlockCapacityTime(20, TimeUnit.MILLISECONDS);
+		sizer.setGrowAtCapacity(false);
+
+		assertTrue(sizer.acquire());
+		assertFalse(sizer.acquire());
+		sizer.adjust();
+		assertEquals(1, sizer.getLimit());
+	}
+
+	@Test
+	public void testUnbalancedRelease() throws InterruptedException {
+		AdaptivePoolSizer sizer = new AdaptivePoolSizer(1, 1, 1, TimeUnit.MILLISECONDS);
+		sizer.setBlockCapacityTime(10, TimeUnit.MILLISECONDS);
+
+		assertTrue(sizer.acquire());
+		sizer.release();
+		sizer.release();
+		assertTrue(sizer.acquire());
+		assertFalse(sizer.acquire());
+	}
+}
@@ -0,0 +1,167 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import com.complexible.stardog.api.ConnectionCredentials;
+
+/**
+ * Unit tests for CachingCredentialSupplier
+ */
+public class TestCachingCredentialSupplier {
+
+	private final AtomicInteger calls = new AtomicInteger();
+
+	private final Supplier<ConnectionCredentials> slowSupplier = () -> {
+		calls.incrementAndGet();
+		try {
+			Thread.sleep(50);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return ConnectionCredentials.getUsernamePasswordCredential("admin", "admin");
+	};
+
+	@Test
+	public void testCachesCredentials() {
+		CachingCredentialSupplier supplier = new CachingCredentialSupplier(slowSupplier, 1, 0, TimeUnit.HOURS);
+		ConnectionCredentials first = supplier.get();
+		assertSame(first, supplier.get());
+		assertEquals(1, calls.get());
+		assertFalse(supplier.isExpired());
+	}
+
+	@Test
+	public void testConcurrentRefreshesCollapse() throws InterruptedException {
+		CachingCredentialSupplier supplier = new CachingCredentialSupplier(slowSupplier, 1, 0, TimeUnit.HOURS);
+		List<ConnectionCredentials> results = new CopyOnWriteArrayList<ConnectionCredentials>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 8; i++) {
+			Thread t = new Thread(() -> results.add(supplier.get()));
+			threads.add(t);
+			t.start();
+		}
+		for (Thread t : threads) {
+			t.join(5000);
+		}
+		assertEquals(8, results.size());
+		for (ConnectionCredentials credentials : results) {
+			assertNotNull(credentials);
+			assertSame(results.get(0), credentials);
+		}
+		assertEquals(1, calls.get());
+	}
+
+	@Test
+	public void testRefreshesAheadOfExpiry() throws InterruptedException {
+		CachingCredentialSupplier supplier = new CachingCredentialSupplier(slowSupplier, 300, 200, TimeUnit.MILLISECONDS);
+		supplier.start();
+		try {
+			long deadline = System.currentTimeMillis() + 5000;
+			while (calls.get() < 3 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertTrue(calls.get() >= 3);
+			// refreshed every 100ms, so callers never see expired credentials
+			assertFalse(supplier.isExpired());
+		} finally {
+			supplier.stop();
+		}
+	}
+
+	@Test
+	public void testKeepsCredentialsWhenRefreshFails() {
+		AtomicInteger attempts = new AtomicInteger();
+		ConnectionCredentials credentials = ConnectionCredentials.getUsernamePasswordCredential("admin", "admin");
+		CachingCredentialSupplier supplier = new CachingCredentialSupplier(() -> {
+			if (attempts.incrementAndGet() > 1) {
+				throw new IllegalStateException("identity provider down");
+			}
+			return credentials;
+		}, 1, 0, TimeUnit.HOURS);
+
+		assertSame(credentials, supplier.get());
+		try {
+			supplier.refreshNow().join();
+			fail("Expected the refresh to fail");
+		} catch (RuntimeException e) {
+			// expected
+		}
+		assertSame(credentials, supplier.get());
+	}
+
+	@Test
+	public void testBacksOffAfterFailedRefresh() throws InterruptedException {
+		AtomicInteger attempts = new AtomicInteger();
+		ConnectionCredentials credentials = ConnectionCredentials.getUsernamePasswordCredential("admin", "admin");
+		CachingCredentialSupplier supplier = new CachingCredentialSupplier(() -> {
+			if (attempts.incrementAndGet() > 1) {
+				throw new IllegalStateException("identity provider down");
+			}
+			return credentials;
+		}, 2000, 1950, TimeUnit.MILLISECONDS);
+		supplier.setRetryTime(1, TimeUnit.HOURS);
+
+		assertSame(credentials, supplier.get());
+		// past the refresh point, every get() would start a refresh without the backoff
+		Thread.sleep(100);
+		for (int i = 0; i < 50; i++) {
+			assertSame(credentials, supplier.get());
+			Thread.sleep(1);
+		}
+		long deadline = System.currentTimeMillis() + 5000;
+		while (attempts.get() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(2, attempts.get());
+	}
+
+	@Test
+	public void testExpiredCredentialsFail() throws InterruptedException {
+		AtomicInteger attempts = new AtomicInteger();
+		CachingCredentialSupplier supplier = new CachingCredentialSupplier(() -> {
+			if (attempts.incrementAndGet() > 1) {
+				throw new IllegalStateException("identity provider down");
+			}
+			return ConnectionCredentials.getUsernamePasswordCredential("admin", "admin");
+		}, 20, 0, TimeUnit.MILLISECONDS);
+		supplier.setRetryTime(1, TimeUnit.HOURS);
+
+		assertNotNull(supplier.get());
+		Thread.sleep(40);
+		assertTrue(supplier.isExpired());
+		for (int i = 0; i < 3; i++) {
+			try {
+				supplier.get();
+				fail("Expected expired credentials to fail");
+			} catch (IllegalStateException e) {
+				assertEquals("identity provider down", e.getCause().getMessage());
+			}
+		}
+		// one refresh attempt, the others fail fast during the backoff
+		assertEquals(2, attempts.get());
+	}
+}
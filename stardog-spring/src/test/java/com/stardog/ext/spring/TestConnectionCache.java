@@ -0,0 +1,141 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.complexible.stardog.api.Connection;
+
+/**
+ * Unit tests for ConnectionCache, using stand-in Connections
+ */
+public class TestConnectionCache {
+
+	// filled by the background reaper in testBackgroundReap
+	private final List<Connection> released = new CopyOnWriteArrayList<Connection>();
+
+	private int obtained = 0;
+
+	private Connection obtain() {
+		obtained++;
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+				(proxy, method, args) -> {
+					if (method.getName().equals("hashCode")) {
+						return System.identityHashCode(proxy);
+					}
+					if (method.getName().equals("equals")) {
+						return proxy == args[0];
+					}
+					return null;
+				});
+	}
+
+	private ConnectionCache cache(int stripes, long maxAge) {
+		return new ConnectionCache(stripes, maxAge, TimeUnit.MILLISECONDS, this::obtain, released::add);
+	}
+
+	@Test
+	public void testParkedConnectionIsReused() {
+		ConnectionCache cache = cache(4, 60000);
+		Connection first = cache.obtain();
+		cache.release(first);
+
+		assertSame(first, cache.obtain());
+		assertEquals(1, obtained);
+		assertTrue(released.isEmpty());
+	}
+
+	@Test
+	public void testOldConnectionGoesBackToPool() throws InterruptedException {
+		ConnectionCache cache = cache(4, 10);
+		Connection first = cache.obtain();
+		cache.release(first);
+		Thread.sleep(30);
+
+		Connection second = cache.obtain();
+		assertNotSame(first, second);
+		assertEquals(2, obtained);
+		assertEquals(1, released.size());
+		assertSame(first, released.get(0));
+	}
+
+	@Test
+	public void testSlotCollisionReleasesToPool() {
+		ConnectionCache cache = cache(1, 60000);
+		assertEquals(1, cache.getStripes());
+		Connection a = cache.obtain();
+		Connection b = cache.obtain();
+
+		cache.release(a);
+		cache.release(b);
+		// the single slot holds a, so b goes straight back to the pool
+		assertEquals(1, released.size());
+		assertSame(b, released.get(0));
+		assertSame(a, cache.obtain());
+	}
+
+	@Test
+	public void testReapReleasesOnlyOldConnections() throws InterruptedException {
+		ConnectionCache cache = cache(1, 20);
+		Connection parked = cache.obtain();
+		cache.release(parked);
+
+		assertEquals(0, cache.reap());
+		Thread.sleep(40);
+		assertEquals(1, cache.reap());
+		assertSame(parked, released.get(0));
+
+		// the slot is empty again, so the next obtain goes to the pool
+		cache.obtain();
+		assertEquals(2, obtained);
+	}
+
+	@Test
+	public void testBackgroundReap() throws InterruptedException {
+		ConnectionCache cache = cache(1, 10);
+		cache.start();
+		try {
+			cache.release(cache.obtain());
+			long deadline = System.currentTimeMillis() + 5000;
+			while (released.isEmpty() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+		} finally {
+			cache.stop();
+		}
+		assertEquals(1, released.size());
+	}
+
+	@Test
+	public void testDrain() {
+		ConnectionCache cache = cache(4, 60000);
+		Connection parked = cache.obtain();
+		cache.release(parked);
+
+		cache.drain();
+		assertEquals(1, released.size());
+		assertSame(parked, released.get(0));
+		cache.drain();
+		assertEquals(1, released.size());
+	}
+}
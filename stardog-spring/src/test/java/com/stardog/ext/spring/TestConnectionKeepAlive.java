@@ -0,0 +1,117 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.complexible.stardog.api.Connection;
+import com.complexible.stardog.api.ConnectionConfiguration;
+import com.complexible.stardog.api.ConnectionPool;
+import com.complexible.stardog.api.ConnectionPoolConfig;
+
+/**
+ * Unit tests for ConnectionKeepAlive, with the Stardog pool stubbed out
+ */
+public class TestConnectionKeepAlive {
+
+	private StubConnectionPool pool;
+
+	private DataSource dataSource;
+
+	@Before
+	public void setUp() {
+		pool = new StubConnectionPool();
+		dataSource = new DataSource(ConnectionConfiguration.to("test")) {
+			@Override
+			ConnectionPool createPool(ConnectionPoolConfig configuration) {
+				return pool;
+			}
+		};
+	}
+
+	@After
+	public void tearDown() {
+		dataSource.destroy();
+	}
+
+	@Test
+	public void testEvictsInvalidConnections() {
+		dataSource.afterPropertiesSet();
+		dataSource.releaseConnection(dataSource.getConnection());
+		assertEquals(1, pool.idle.size());
+		Connection broken = pool.idle.peek();
+		pool.invalid.add(broken);
+
+		ConnectionKeepAlive keepAlive = new ConnectionKeepAlive(dataSource, 0, TimeUnit.MILLISECONDS, 3, "ASK {}");
+		assertEquals(1, keepAlive.maintain());
+
+		// closed and dropped by the pool, the two other connections went back
+		assertFalse(broken.isOpen());
+		assertFalse(pool.idle.contains(broken));
+		assertEquals(2, pool.idle.size());
+		assertEquals(0, pool.active);
+
+		assertEquals(0, keepAlive.maintain());
+	}
+
+	@Test
+	public void testLeavesLastPermitToRegularTraffic() {
+		PriorityConnectionGate gate = new PriorityConnectionGate(2, 0);
+		dataSource.setPriorityGate(gate);
+		dataSource.afterPropertiesSet();
+
+		Connection held = dataSource.getConnection();
+		ConnectionKeepAlive keepAlive = new ConnectionKeepAlive(dataSource, 0, TimeUnit.MILLISECONDS, 5, "ASK {}");
+		assertEquals(0, keepAlive.maintain());
+		assertEquals(1, pool.obtained);
+		assertEquals(1, gate.getInUse());
+
+		dataSource.releaseConnection(held);
+		keepAlive.maintain();
+		assertEquals(2, pool.obtained);
+		assertEquals(0, gate.getInUse());
+	}
+
+	@Test
+	public void testUsesPoolSizerPermits() {
+		AdaptivePoolSizer sizer = new AdaptivePoolSizer(3, 3, 1, TimeUnit.MILLISECONDS);
+		sizer.setFailAtCapacity(true);
+		dataSource.setPoolSizer(sizer);
+		dataSource.afterPropertiesSet();
+
+		ConnectionKeepAlive keepAlive = new ConnectionKeepAlive(dataSource, 0, TimeUnit.MILLISECONDS, 5, "ASK {}");
+		keepAlive.maintain();
+		// one permit of the three stays free for regular checkouts
+		assertEquals(2, pool.obtained);
+		assertEquals(0, sizer.getInUse());
+	}
+
+	@Test
+	public void testSkipsWhileBusy() {
+		dataSource.afterPropertiesSet();
+		dataSource.releaseConnection(dataSource.getConnection());
+
+		ConnectionKeepAlive keepAlive = new ConnectionKeepAlive(dataSource, 1, TimeUnit.MINUTES, 5, "ASK {}");
+		assertEquals(0, keepAlive.maintain());
+		assertEquals(1, pool.obtained);
+	}
+}
@@ -0,0 +1,81 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.complexible.stardog.api.Connection;
+
+/**
+ * Unit tests for ConnectionLeakDetector, using a stand-in Connection
+ */
+public class TestConnectionLeakDetector {
+
+	private static Connection mockConnection() {
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+				(proxy, method, args) -> method.getName().equals("isOpen") ? Boolean.TRUE : null);
+	}
+
+	@Test
+	public void testCloseReleasesOnce() {
+		List<Connection> released = new ArrayList<Connection>();
+		ConnectionLeakDetector detector = new ConnectionLeakDetector(1, TimeUnit.MINUTES, false, released::add, released::add);
+
+		Connection raw = mockConnection();
+		Connection tracked = detector.track(raw);
+		assertTrue(detector.isTracked(tracked));
+		assertEquals(1, detector.getCheckedOut());
+
+		tracked.close();
+		tracked.close();
+		assertEquals(0, detector.getCheckedOut());
+		assertEquals(1, released.size());
+		assertSame(raw, released.get(0));
+	}
+
+	@Test
+	public void testReclaim() throws InterruptedException {
+		List<Connection> released = new ArrayList<Connection>();
+		List<Connection> reclaimed = new ArrayList<Connection>();
+		ConnectionLeakDetector detector = new ConnectionLeakDetector(10, TimeUnit.MILLISECONDS, true, released::add, reclaimed::add);
+
+		Connection tracked = detector.track(mockConnection());
+		Thread.sleep(50);
+
+		assertEquals(1, detector.check());
+		assertEquals(0, detector.getCheckedOut());
+		assertEquals(0, released.size());
+		assertEquals(1, reclaimed.size());
+
+		try {
+			tracked.isOpen();
+			fail("Expected reclaimed connection to be unusable");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		// the late close by the leaking owner must not release it
+		tracked.close();
+		assertEquals(0, released.size());
+	}
+}
@@ -0,0 +1,195 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.complexible.stardog.api.Connection;
+import com.complexible.stardog.api.ConnectionConfiguration;
+import com.complexible.stardog.api.ConnectionPool;
+import com.complexible.stardog.api.ConnectionPoolConfig;
+
+/**
+ * Unit tests for DataSource checkouts across pool generations, with the Stardog pool stubbed out
+ */
+public class TestDataSource {
+
+	private final List<StubConnectionPool> pools = new ArrayList<StubConnectionPool>();
+
+	private DataSource dataSource;
+
+	@Before
+	public void setUp() {
+		dataSource = new DataSource(ConnectionConfiguration.to("test")) {
+			@Override
+			ConnectionPool createPool(ConnectionPoolConfig configuration) {
+				StubConnectionPool pool = new StubConnectionPool();
+				pools.add(pool);
+				return pool;
+			}
+		};
+		dataSource.afterPropertiesSet();
+	}
+
+	@After
+	public void tearDown() {
+		dataSource.destroy();
+	}
+
+	@Test
+	public void testReleaseReturnsToOwningPool() {
+		Connection held = dataSource.getConnection();
+		dataSource.reconfigure(dataSource.getConnectionConfig(), dataSource.getPoolConfig());
+		assertEquals(2, pools.size());
+		assertEquals(1, dataSource.getDrainingPools());
+
+		dataSource.releaseConnection(dataSource.getConnection());
+		assertEquals(1, pools.get(1).idle.size());
+
+		// the connection obtained before the switch goes back to the old pool, which then shuts down and closes it
+		dataSource.releaseConnection(held);
+		assertEquals(1, pools.get(0).closed());
+		assertEquals(0, pools.get(0).active);
+		assertTrue(pools.get(0).shutdown);
+		assertEquals(0, dataSource.getDrainingPools());
+	}
+
+	@Test
+	public void testReleaseOnlyOnce() {
+		Connection connection = dataSource.getConnection();
+		dataSource.releaseConnection(connection);
+		dataSource.releaseConnection(connection);
+		assertEquals(0, pools.get(0).active);
+		assertEquals(1, pools.get(0).idle.size());
+	}
+
+	@Test
+	public void testForeignConnectionIgnored() {
+		Connection foreign = new StubConnectionPool().obtain();
+		dataSource.releaseConnection(foreign);
+		assertTrue(pools.get(0).idle.isEmpty());
+	}
+
+	@Test
+	public void testConnectionDelegates() {
+		Connection connection = dataSource.getConnection();
+		assertTrue(connection.isOpen());
+		assertTrue(connection.ask("ASK {}").execute());
+		assertEquals(connection, connection);
+		dataSource.releaseConnection(connection);
+	}
+
+	@Test
+	public void testCloseReleases() {
+		PriorityConnectionGate gate = new PriorityConnectionGate(2, 0);
+		gate.setBlockCapacityTime(10, TimeUnit.MILLISECONDS);
+		dataSource.setPriorityGate(gate);
+
+		// more checkouts than permits, each returned by try-with-resources
+		for (int i = 0; i < 5; i++) {
+			try (Connection connection = dataSource.getConnection()) {
+				assertTrue(connection.ask("ASK {}").execute());
+			}
+		}
+		assertEquals(0, gate.getInUse());
+		assertEquals(0, pools.get(0).active);
+		assertEquals(1, pools.get(0).idle.size());
+	}
+
+	@Test
+	public void testCloseDrainsRetiredPool() {
+		try (Connection connection = dataSource.getConnection()) {
+			dataSource.reconfigure(dataSource.getConnectionConfig(), dataSource.getPoolConfig());
+			assertFalse(pools.get(0).shutdown);
+		}
+		assertTrue(pools.get(0).shutdown);
+		assertEquals(0, dataSource.getDrainingPools());
+	}
+
+	@Test
+	public void testClosedConnectionUnusable() {
+		Connection connection = dataSource.getConnection();
+		connection.close();
+		connection.close();
+		dataSource.releaseConnection(connection);
+		assertEquals(0, pools.get(0).active);
+		assertFalse(connection.isOpen());
+		try {
+			connection.ask("ASK {}");
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testReconfigureClosesCachedConnections() {
+		dataSource.setConnectionCacheStripes(4);
+		dataSource.reconfigure(dataSource.getConnectionConfig(), dataSource.getPoolConfig());
+
+		Connection first = dataSource.getConnection();
+		Connection second = dataSource.getConnection();
+		// one parks in this thread's cache slot, the other goes back to the pool
+		dataSource.releaseConnection(first);
+		dataSource.releaseConnection(second);
+		assertEquals(2, pools.get(1).created.size());
+
+		dataSource.reconfigure(dataSource.getConnectionConfig(), dataSource.getPoolConfig());
+		assertTrue(pools.get(1).shutdown);
+		assertEquals(0, pools.get(1).active);
+		assertEquals(2, pools.get(1).closed());
+	}
+
+	@Test
+	public void testReclaimedConnectionEvicted() throws InterruptedException {
+		StubConnectionPool pool = new StubConnectionPool();
+		DataSource leaking = new DataSource(ConnectionConfiguration.to("test")) {
+			@Override
+			ConnectionPool createPool(ConnectionPoolConfig configuration) {
+				return pool;
+			}
+		};
+		leaking.setLeakDetectionTime(10);
+		leaking.setLeakDetectionTimeUnit(TimeUnit.MILLISECONDS);
+		leaking.setReclaimLeakedConnections(true);
+		leaking.afterPropertiesSet();
+		try {
+			Connection leaked = leaking.getConnection();
+			leaked.begin();
+			leaked.add();
+			Thread.sleep(50);
+
+			leaking.checkForLeaks();
+			// rolled back and closed, never handed to the next borrower
+			assertEquals(0, pool.active);
+			assertEquals(0, pool.idle.size());
+			assertEquals(1, pool.closed());
+			leaking.releaseConnection(leaking.getConnection());
+			assertEquals(2, pool.created.size());
+			assertEquals(0, pool.committed);
+		} finally {
+			leaking.destroy();
+		}
+	}
+}
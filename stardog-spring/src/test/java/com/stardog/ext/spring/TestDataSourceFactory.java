@@ -22,12 +22,26 @@ import com.complexible.stardog.api.Connection;
 import com.complexible.stardog.api.Getter;
 import com.complexible.stardog.api.Remover;
 import com.complexible.stardog.api.admin.AdminConnection;
+import com.stardog.ext.spring.arrow.ArrowResultWriter;
+import com.stardog.ext.spring.mapper.BeanRowMapper;
+import com.stardog.ext.spring.mapper.RdfProperty;
+import com.stardog.ext.spring.mapper.RdfSubject;
+import com.stardog.ext.spring.mapper.RdfType;
 import com.stardog.ext.spring.mapper.SimpleRowMapper;
 import com.stardog.ext.spring.mapper.SingleMapper;
+import com.stardog.ext.spring.mapper.SparqlVariable;
+import com.stardog.ext.spring.mapper.StatementMapper;
 import com.google.common.collect.ImmutableSet;
 import com.stardog.stark.*;
 import com.stardog.stark.io.RDFFormats;
+import com.stardog.stark.query.io.QueryResultFormats;
 import com.stardog.stark.query.BindingSet;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -37,9 +51,11 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.net.URI;
+import java.nio.channels.Channels;
 import java.net.URISyntaxException;
 import java.util.*;
 import static org.junit.Assert.*;
@@ -645,6 +661,205 @@ public class TestDataSourceFactory  {
 		assertNotNull(getter);
 	}
 
+	@Test
+	public void testSnarlScopedGetter() {
+		snarlTemplate.add("urn:test:scoped", "urn:test:scopedp", "hello world");
+		long count = snarlTemplate.get(getter -> getter.subject(Values.iri("urn:test:scoped")).statements().count());
+		assertEquals(1, count);
+
+		Boolean reasoning = snarlTemplate.reasoning(true, getter -> getter != null);
+		assertTrue(reasoning);
+	}
+
+	@Test
+	public void testSnarlScopedAs() {
+		Boolean open = snarlTemplate.as(Connection.class, c -> c.isOpen());
+		assertTrue(open);
+	}
+
+	@Test
+	public void testReconfigureWhileInUse() {
+		DataSourceFactoryBean factoryBean = applicationContext.getBean("&dataSource", DataSourceFactoryBean.class);
+		int maxPool = factoryBean.getMaxPool();
+		Connection held = dataSource.getConnection();
+		try {
+			factoryBean.setMaxPool(maxPool + 10);
+			factoryBean.reconfigure();
+			assertEquals(1, dataSource.getDrainingPools());
+
+			// the connection from the old pool keeps working, new checkouts use the new pool
+			assertTrue(held.ask("ASK { ?s ?p ?o }").execute());
+			assertTrue(snarlTemplate.ask("ASK { ?s ?p ?o }"));
+		} finally {
+			dataSource.releaseConnection(held);
+			factoryBean.setMaxPool(maxPool);
+			// later tests share this DataSource, put it back on the configured pool
+			factoryBean.reconfigure();
+		}
+		assertEquals(0, dataSource.getDrainingPools());
+	}
+
+	@Test
+	public void testSerializeQuery() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		snarlTemplate.serializeQuery("SELECT ?s ?p ?o WHERE { ?s ?p ?o } LIMIT 5", out, QueryResultFormats.JSON);
+		assertTrue(out.toString().contains("\"bindings\""));
+	}
+
+	@Test
+	public void testSerializeConstruct() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		snarlTemplate.serializeConstruct("CONSTRUCT { ?s ?p ?o } WHERE { ?s ?p ?o } LIMIT 5", out, RDFFormats.NTRIPLES);
+		assertEquals(5, out.toString().trim().split("\n").length);
+	}
+
+	@Test
+	public void testConstructGrouped() {
+		snarlTemplate.add("urn:group:a", "urn:group:p", "one");
+		snarlTemplate.add("urn:group:a", "urn:group:q", "two");
+		snarlTemplate.add("urn:group:b", "urn:group:p", "three");
+
+		String sparql = "CONSTRUCT { ?s ?p ?o } WHERE { ?s ?p ?o FILTER(STRSTARTS(STR(?s), \"urn:group:\")) }";
+		List<Integer> sizes = snarlTemplate.constructGrouped(sparql, (subject, statements) -> statements.size());
+
+		assertEquals(2, sizes.size());
+		assertTrue(sizes.contains(1));
+		assertTrue(sizes.contains(2));
+	}
+
+	@Test
+	public void testQueryEncoded() {
+		String sparql = "SELECT ?s ?p ?o WHERE { ?s ?p ?o } ORDER BY ?s ?p ?o LIMIT 500";
+		List<Map<String, String>> expected = snarlTemplate.query(sparql, new SimpleRowMapper());
+
+		DictionaryResultSet results = snarlTemplate.queryEncoded(sparql);
+		assertEquals(expected.size(), results.size());
+		assertEquals(expected, results.asStringMaps());
+		// predicates and types repeat, so there are fewer terms than values
+		assertTrue(results.getDictionary().size() < results.size() * results.getVariables().size());
+	}
+
+	@Test
+	public void testQueryForColumns() {
+		String sparql = "SELECT ?p (COUNT(?o) AS ?n) (AVG(STRLEN(STR(?o))) AS ?len) (COUNT(?o) > 10 AS ?many) "
+				+ "WHERE { ?s ?p ?o } GROUP BY ?p ORDER BY ?p";
+		ColumnarResultSet columns = snarlTemplate.queryForColumns(sparql, new ColumnSchema()
+				.addString("p")
+				.addLong("n")
+				.addDouble("len")
+				.addBoolean("many"));
+
+		List<Map<String, String>> rows = snarlTemplate.query("SELECT ?p (COUNT(?o) AS ?n) WHERE { ?s ?p ?o } GROUP BY ?p ORDER BY ?p",
+				new SimpleRowMapper());
+		assertEquals(rows.size(), columns.size());
+		long[] counts = columns.getLongs("n");
+		for (int i = 0; i < rows.size(); i++) {
+			assertEquals(rows.get(i).get("p"), columns.getString("p", i));
+			assertTrue(rows.get(i).get("n").contains("\"" + counts[i] + "\""));
+			assertEquals(counts[i] > 10, columns.getBooleans("many")[i]);
+		}
+		assertTrue(columns.getNulls("len").isEmpty());
+	}
+
+	@RdfType("urn:test:Person")
+	public static class Person {
+
+		@RdfSubject("urn:test:person:")
+		private final String id;
+
+		@RdfProperty("urn:test:name")
+		private final String name;
+
+		@RdfProperty("urn:test:age")
+		private final Integer age;
+
+		@RdfProperty(value = "urn:test:knows", reference = true)
+		private final List<String> knows;
+
+		public Person(String id, String name, Integer age, List<String> knows) {
+			this.id = id;
+			this.name = name;
+			this.age = age;
+			this.knows = knows;
+		}
+	}
+
+	@Test
+	public void testStatementMapper() {
+		StatementMapper<Person> mapper = StatementMapper.of(Person.class);
+		List<Person> people = Arrays.asList(
+				new Person("alice", "Alice", 30, Arrays.asList("urn:test:person:bob")),
+				new Person("bob", "Bob", null, Collections.<String>emptyList()));
+
+		// type and name of both, age of Alice, one knows
+		assertEquals(6, snarlTemplate.addAll(people, mapper));
+
+		assertTrue(snarlTemplate.ask("ASK { <urn:test:person:alice> a <urn:test:Person> ; <urn:test:age> 30 ; "
+				+ "<urn:test:knows> <urn:test:person:bob> }"));
+		assertFalse(snarlTemplate.ask("ASK { <urn:test:person:bob> <urn:test:age> ?age }"));
+		assertEquals(2, mapper.statements(people.get(1)).size());
+	}
+
+	public static class PredicateCount {
+
+		private String predicate;
+
+		private long count;
+
+		public void setPredicate(String predicate) {
+			this.predicate = predicate;
+		}
+
+		@SparqlVariable("n")
+		public void setCount(long count) {
+			this.count = count;
+		}
+	}
+
+	@Test
+	public void testBeanRowMapper() {
+		String sparql = "SELECT ?predicate (COUNT(?o) AS ?n) WHERE { ?s ?predicate ?o } GROUP BY ?predicate ORDER BY ?predicate";
+		List<PredicateCount> beans = snarlTemplate.query(sparql, BeanRowMapper.of(PredicateCount.class));
+		ColumnarResultSet columns = snarlTemplate.queryForColumns(sparql, new ColumnSchema().addString("predicate").addLong("n"));
+
+		assertEquals(columns.size(), beans.size());
+		for (int i = 0; i < beans.size(); i++) {
+			assertEquals(columns.getString("predicate", i), beans.get(i).predicate);
+			assertEquals(columns.getLongs("n")[i], beans.get(i).count);
+		}
+	}
+
+	@Test
+	public void testArrowResultWriter() throws Exception {
+		String sparql = "SELECT ?p (COUNT(?o) AS ?n) WHERE { ?s ?p ?o } GROUP BY ?p ORDER BY ?p";
+		ColumnSchema schema = new ColumnSchema().addString("p").addLong("n");
+		ColumnarResultSet columns = snarlTemplate.queryForColumns(sparql, schema);
+
+		try (BufferAllocator allocator = new RootAllocator()) {
+			ArrowResultWriter writer = new ArrowResultWriter(snarlTemplate, allocator);
+			writer.setBatchSize(2);
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			long rows = writer.write(sparql, null, schema, Channels.newChannel(out));
+			assertEquals(columns.size(), rows);
+
+			int row = 0;
+			try (ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(out.toByteArray()), allocator)) {
+				VectorSchemaRoot root = reader.getVectorSchemaRoot();
+				while (reader.loadNextBatch()) {
+					assertTrue(root.getRowCount() <= 2);
+					BigIntVector counts = (BigIntVector) root.getVector("n");
+					VarCharVector predicates = (VarCharVector) root.getVector("p");
+					for (int i = 0; i < root.getRowCount(); i++, row++) {
+						assertEquals(columns.getLongs("n")[row], counts.get(i));
+						assertEquals(columns.getString("p", row), new String(predicates.get(i), "UTF-8"));
+					}
+				}
+			}
+			assertEquals(rows, row);
+		}
+	}
+
 	@Test
 	public void testSnarlGetDataSource() {
 		DataSource ds = snarlTemplate.getDataSource();
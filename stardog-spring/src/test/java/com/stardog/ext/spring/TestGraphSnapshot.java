@@ -0,0 +1,78 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.stardog.stark.IRI;
+import com.stardog.stark.Resource;
+import com.stardog.stark.Value;
+import com.stardog.stark.Values;
+
+/**
+ * Unit tests for the GraphSnapshot indexes
+ */
+public class TestGraphSnapshot {
+
+	private static final IRI TYPE = Values.iri("http://www.w3.org/1999/02/22-rdf-syntax-ns#type");
+
+	private static final IRI LABEL = Values.iri("http://www.w3.org/2000/01/rdf-schema#label");
+
+	private GraphSnapshot.Index index;
+
+	@Before
+	public void setUp() {
+		GraphSnapshot.Builder builder = new GraphSnapshot.Builder();
+		for (int i = 0; i < 100; i++) {
+			IRI subject = Values.iri("urn:test:s" + i);
+			builder.add(Values.statement(subject, TYPE, Values.iri("urn:test:Class" + (i % 3))));
+			builder.add(Values.statement(subject, LABEL, Values.literal("label " + i)));
+		}
+		// duplicates are dropped
+		builder.add(Values.statement(Values.iri("urn:test:s0"), TYPE, Values.iri("urn:test:Class0")));
+		index = builder.build();
+	}
+
+	@Test
+	public void testPatterns() {
+		assertEquals(200, index.size);
+		assertEquals(2, count(Values.iri("urn:test:s5"), null, null));
+		assertEquals(1, count(Values.iri("urn:test:s5"), LABEL, null));
+		assertEquals(100, count(null, TYPE, null));
+		assertEquals(34, count(null, TYPE, Values.iri("urn:test:Class0")));
+		assertEquals(34, count(null, null, Values.iri("urn:test:Class0")));
+		assertEquals(1, count(Values.iri("urn:test:s3"), null, Values.iri("urn:test:Class0")));
+		assertEquals(200, count(null, null, null));
+	}
+
+	@Test
+	public void testUnknownTerms() {
+		assertEquals(0, count(Values.iri("urn:test:missing"), null, null));
+		assertEquals(0, count(null, Values.iri("urn:test:missing"), null));
+	}
+
+	private int count(Resource s, IRI p, Value o) {
+		int[] count = new int[1];
+		index.scan(s, p, o, (a, b, c) -> {
+			count[0]++;
+			return true;
+		});
+		return count[0];
+	}
+}
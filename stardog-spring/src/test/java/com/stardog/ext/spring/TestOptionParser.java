@@ -0,0 +1,54 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.complexible.common.base.Options;
+import com.complexible.common.base.Pair;
+
+/**
+ * Unit tests for OptionParser and the ConnectionOptions catalog
+ */
+public class TestOptionParser {
+
+	private final OptionParser parser = new OptionParser();
+
+	@Test
+	public void testQueryTimeout() {
+		assertEquals(Long.valueOf(30000), parser.getOptions(Arrays.asList(Pair.create("query.timeout", "30s")))
+				.get(ConnectionOptions.QUERY_TIMEOUT));
+		assertEquals(Long.valueOf(250), parser.getOptions(Arrays.asList(Pair.create("query.timeout", "250")))
+				.get(ConnectionOptions.QUERY_TIMEOUT));
+		assertEquals(Long.valueOf(120000), parser.getOptions(Arrays.asList(Pair.create("query.timeout", "2m")))
+				.get(ConnectionOptions.QUERY_TIMEOUT));
+	}
+
+	@Test
+	public void testUnknownPropertyIgnored() {
+		Options options = parser.getOptions(Arrays.asList(Pair.create("no.such.option", "1")));
+		assertNotNull(options);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidDuration() {
+		parser.getOptions(Arrays.asList(Pair.create("query.timeout", "soon")));
+	}
+}
@@ -0,0 +1,167 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.stardog.ext.spring.mapper.SimpleRowCodec;
+
+/**
+ * Unit tests for PersistentResultCache
+ */
+public class TestPersistentResultCache {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String SCOPE = "http://localhost:5820 testdb";
+
+	private final SimpleRowCodec codec = new SimpleRowCodec();
+
+	private PersistentResultCache cache(File directory, String version) {
+		PersistentResultCache cache = new PersistentResultCache();
+		cache.setDirectory(directory);
+		cache.setVersion(version);
+		cache.afterPropertiesSet();
+		return cache;
+	}
+
+	private static List<Map<String, String>> rows(int count) {
+		List<Map<String, String>> rows = new ArrayList<Map<String, String>>();
+		for (int i = 0; i < count; i++) {
+			Map<String, String> row = new HashMap<String, String>();
+			row.put("s", "urn:test:" + i);
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	@Test
+	public void testSurvivesRestart() throws Exception {
+		File directory = folder.newFolder();
+		PersistentResultCache cache = cache(directory, "1");
+		String key = cache.fingerprint("rows", SCOPE, "SELECT * { ?s ?p ?o }", null);
+		assertNull(cache.get(key, codec));
+		cache.put(key, rows(100), codec);
+
+		PersistentResultCache restarted = cache(directory, "1");
+		assertEquals(rows(100), restarted.get(key, codec));
+		assertEquals(1, restarted.getHits());
+	}
+
+	@Test
+	public void testVersionAndExpiry() throws Exception {
+		File directory = folder.newFolder();
+		PersistentResultCache cache = cache(directory, "1");
+		String key = cache.fingerprint("rows", SCOPE, "SELECT * { ?s ?p ?o }", null);
+		cache.put(key, rows(10), codec);
+
+		assertNull(cache(directory, "2").get(key, codec));
+
+		PersistentResultCache expiring = cache(directory, "1");
+		expiring.setTimeToLive(0);
+		expiring.setTimeUnit(TimeUnit.MILLISECONDS);
+		expiring.put(key, rows(10), codec);
+		assertNull(expiring.get(key, codec));
+	}
+
+	@Test
+	public void testFingerprint() {
+		PersistentResultCache cache = new PersistentResultCache();
+		Map<String, Object> a = new HashMap<String, Object>();
+		a.put("x", "1");
+		a.put("y", "2");
+		Map<String, Object> b = new HashMap<String, Object>();
+		b.put("y", "2");
+		b.put("x", "1");
+
+		assertEquals(cache.fingerprint("rows", SCOPE, "q", a), cache.fingerprint("rows", SCOPE, "q", b));
+		assertNotEquals(cache.fingerprint("rows", SCOPE, "q", a), cache.fingerprint("rows", SCOPE, "q", Collections.<String, Object>emptyMap()));
+		assertNotEquals(cache.fingerprint("rows", SCOPE, "q", null), cache.fingerprint("rows", SCOPE, "r", null));
+		// the same query against another database, or with reasoning
+		assertNotEquals(cache.fingerprint("rows", SCOPE, "q", null), cache.fingerprint("rows", "http://localhost:5820 other", "q", null));
+		assertNotEquals(cache.fingerprint("rows", SCOPE, "q", null), cache.fingerprint("rows", SCOPE + " reasoning", "q", null));
+		// the same query mapped by another mapper
+		assertNotEquals(cache.fingerprint("rows", SCOPE, "q", null), cache.fingerprint("labels", SCOPE, "q", null));
+		try {
+			cache.fingerprint("", SCOPE, "q", null);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testLazyView() throws Exception {
+		PersistentResultCache cache = cache(folder.newFolder(), "1");
+		String key = cache.fingerprint("rows", SCOPE, "SELECT * { ?s ?p ?o }", null);
+		cache.put(key, rows(1000), codec);
+
+		List<Map<String, String>> cached = cache.get(key, codec);
+		assertFalse(cached instanceof ArrayList);
+		assertEquals(1000, cached.size());
+		assertEquals(rows(1000).get(0), cached.get(0));
+		assertEquals(rows(1000).get(63), cached.get(63));
+		assertEquals(rows(1000).get(64), cached.get(64));
+		assertEquals(rows(1000).get(999), cached.get(999));
+		assertEquals(rows(1000), new ArrayList<Map<String, String>>(cached));
+		try {
+			cached.get(1000);
+			fail("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+
+		cache.put(key, rows(0), codec);
+		assertTrue(cache.get(key, codec).isEmpty());
+	}
+
+	@Test
+	public void testReplacedWhileRead() throws Exception {
+		PersistentResultCache cache = cache(folder.newFolder(), "1");
+		String key = cache.fingerprint("rows", SCOPE, "SELECT * { ?s ?p ?o }", null);
+		cache.put(key, rows(100), codec);
+		List<Map<String, String>> cached = cache.get(key, codec);
+
+		cache.put(key, rows(10), codec);
+		assertEquals(rows(100), cached);
+		assertEquals(rows(10), cache.get(key, codec));
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		File directory = folder.newFolder();
+		PersistentResultCache cache = cache(directory, "1");
+		cache.setMaxBytes(20000);
+		for (int i = 0; i < 20; i++) {
+			cache.put(cache.fingerprint("rows", SCOPE, "q" + i, null), rows(100), codec);
+		}
+		assertTrue(cache.getBytes() <= 20000);
+		assertNotNull(cache.get(cache.fingerprint("rows", SCOPE, "q19", null), codec));
+	}
+}
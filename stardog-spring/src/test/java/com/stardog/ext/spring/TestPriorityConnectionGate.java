@@ -0,0 +1,84 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for PriorityConnectionGate
+ */
+public class TestPriorityConnectionGate {
+
+	@Test
+	public void testReserveHeldForHighPriority() throws InterruptedException {
+		PriorityConnectionGate gate = new PriorityConnectionGate(4, 0.25);
+		assertEquals(1, gate.getReserved());
+
+		assertTrue(gate.acquire(ConnectionPriority.NORMAL, 0, TimeUnit.MILLISECONDS));
+		assertTrue(gate.acquire(ConnectionPriority.LOW, 0, TimeUnit.MILLISECONDS));
+		assertTrue(gate.acquire(ConnectionPriority.NORMAL, 0, TimeUnit.MILLISECONDS));
+		// only the reserved slot is left
+		assertFalse(gate.acquire(ConnectionPriority.NORMAL, 10, TimeUnit.MILLISECONDS));
+		assertTrue(gate.acquire(ConnectionPriority.HIGH, 0, TimeUnit.MILLISECONDS));
+		assertEquals(4, gate.getInUse());
+	}
+
+	@Test
+	public void testHighPriorityServedFirst() throws InterruptedException {
+		PriorityConnectionGate gate = new PriorityConnectionGate(1, 0.0);
+		assertTrue(gate.acquire(ConnectionPriority.NORMAL, 0, TimeUnit.MILLISECONDS));
+
+		AtomicBoolean lowAdmitted = new AtomicBoolean(false);
+		CountDownLatch lowDone = new CountDownLatch(1);
+		Thread low = new Thread(() -> {
+			try {
+				lowAdmitted.set(gate.acquire(ConnectionPriority.LOW, 5, TimeUnit.SECONDS));
+			} catch (InterruptedException e) {
+				// ignore
+			}
+			lowDone.countDown();
+		});
+		low.start();
+		// let the low priority caller queue first
+		Thread.sleep(50);
+
+		AtomicBoolean highAdmitted = new AtomicBoolean(false);
+		Thread high = new Thread(() -> {
+			try {
+				highAdmitted.set(gate.acquire(ConnectionPriority.HIGH, 5, TimeUnit.SECONDS));
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		});
+		high.start();
+		Thread.sleep(50);
+
+		gate.release();
+		high.join(5000);
+		assertTrue(highAdmitted.get());
+		assertFalse(lowAdmitted.get());
+
+		gate.release();
+		assertTrue(lowDone.await(5, TimeUnit.SECONDS));
+		assertTrue(lowAdmitted.get());
+	}
+}
@@ -0,0 +1,238 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.complexible.stardog.api.Connection;
+
+/**
+ * Unit tests for RoutingDataSource, with the per database pools stubbed out
+ */
+public class TestRoutingDataSource {
+
+	private final List<String> created = new ArrayList<String>();
+
+	private final List<String> destroyed = new ArrayList<String>();
+
+	private final List<String> invalidated = new ArrayList<String>();
+
+	private RoutingDataSource dataSource;
+
+	@Before
+	public void setUp() {
+		dataSource = new RoutingDataSource() {
+			@Override
+			protected DataSource createDataSource(String database) {
+				created.add(database);
+				return new StubDataSource(database);
+			}
+		};
+		dataSource.setUrl("http://localhost:5820");
+		dataSource.setIdleTime(0);
+		dataSource.setBlockCapacityTime(10);
+		dataSource.setBlockCapacityTimeUnit(TimeUnit.MILLISECONDS);
+	}
+
+	@After
+	public void tearDown() {
+		dataSource.destroy();
+		DatabaseContextHolder.resetDatabase();
+	}
+
+	@Test
+	public void testRoutesByContext() {
+		dataSource.setDefaultDatabase("main");
+		dataSource.afterPropertiesSet();
+
+		dataSource.releaseConnection(dataSource.getConnection());
+		DatabaseContextHolder.setDatabase("tenant1");
+		dataSource.releaseConnection(dataSource.getConnection());
+		dataSource.releaseConnection(dataSource.getConnection());
+
+		assertEquals(Arrays.asList("main", "tenant1"), created);
+		assertEquals(0, dataSource.getCheckedOutConnections());
+	}
+
+	@Test
+	public void testCacheScopeFollowsContext() {
+		dataSource.setDefaultDatabase("main");
+		dataSource.afterPropertiesSet();
+
+		String main = dataSource.getCacheScope();
+		DatabaseContextHolder.setDatabase("tenant1");
+		assertNotEquals(main, dataSource.getCacheScope());
+		DatabaseContextHolder.setDatabase("main");
+		assertEquals(main, dataSource.getCacheScope());
+	}
+
+	@Test
+	public void testCloseReleases() {
+		dataSource.setDefaultDatabase("main");
+		dataSource.setMaxConnections(1);
+		dataSource.afterPropertiesSet();
+
+		for (int i = 0; i < 3; i++) {
+			try (Connection connection = dataSource.getConnection()) {
+				assertEquals(1, dataSource.getCheckedOutConnections());
+			}
+		}
+		assertEquals(0, dataSource.getCheckedOutConnections());
+	}
+
+	@Test
+	public void testInvalidateRoutesToDatabasePool() {
+		dataSource.afterPropertiesSet();
+
+		Connection connection = dataSource.getConnection("a", ConnectionPriority.NORMAL);
+		dataSource.invalidateConnection(connection);
+		assertEquals(Arrays.asList("a"), invalidated);
+		assertEquals(0, dataSource.getCheckedOutConnections());
+		assertFalse(connection.isOpen());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testReconfigureRejected() {
+		dataSource.afterPropertiesSet();
+		dataSource.reconfigure(null, null);
+	}
+
+	@Test
+	public void testFactoryDestroyedWithPool() {
+		List<String> factoriesDestroyed = new ArrayList<String>();
+		RoutingDataSource routing = new RoutingDataSource() {
+			@Override
+			DataSourceFactoryBean createFactory(String database) {
+				DataSource pool = new StubDataSource(database);
+				return new DataSourceFactoryBean() {
+					@Override
+					public void afterPropertiesSet() { }
+
+					@Override
+					public DataSource getDataSource() {
+						return pool;
+					}
+
+					@Override
+					public void destroy() {
+						factoriesDestroyed.add(database);
+						pool.destroy();
+					}
+				};
+			}
+		};
+		routing.setUrl("http://localhost:5820");
+		routing.setIdleTime(0);
+		routing.afterPropertiesSet();
+
+		routing.releaseConnection(routing.getConnection("a", ConnectionPriority.NORMAL));
+		routing.releaseConnection(routing.getConnection("b", ConnectionPriority.NORMAL));
+		assertTrue(routing.evict("a"));
+		assertEquals(Arrays.asList("a"), factoriesDestroyed);
+		routing.destroy();
+		assertEquals(Arrays.asList("a", "b"), factoriesDestroyed);
+		assertEquals(Arrays.asList("a", "b"), destroyed);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNoDatabase() {
+		dataSource.afterPropertiesSet();
+		dataSource.getConnection();
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() {
+		dataSource.setMaxPools(2);
+		dataSource.afterPropertiesSet();
+
+		dataSource.releaseConnection(dataSource.getConnection("a", ConnectionPriority.NORMAL));
+		Connection b = dataSource.getConnection("b", ConnectionPriority.NORMAL);
+		// a is idle and least recently used
+		dataSource.releaseConnection(dataSource.getConnection("c", ConnectionPriority.NORMAL));
+		assertEquals(Arrays.asList("a"), destroyed);
+
+		// b is in use, so c goes even though a pool was opened after b
+		dataSource.releaseConnection(dataSource.getConnection("d", ConnectionPriority.NORMAL));
+		assertEquals(Arrays.asList("a", "c"), destroyed);
+		assertTrue(dataSource.getOpenDatabases().contains("b"));
+
+		dataSource.releaseConnection(b);
+		assertEquals(2, dataSource.evictIdle());
+		assertTrue(dataSource.getOpenDatabases().isEmpty());
+	}
+
+	@Test
+	public void testGlobalConnectionCap() {
+		dataSource.setMaxConnections(1);
+		dataSource.afterPropertiesSet();
+
+		Connection a = dataSource.getConnection("a", ConnectionPriority.NORMAL);
+		try {
+			dataSource.getConnection("b", ConnectionPriority.NORMAL);
+			fail("Expected the global cap to be reached");
+		} catch (RuntimeException e) {
+			// expected
+		}
+		dataSource.releaseConnection(a);
+		dataSource.releaseConnection(dataSource.getConnection("b", ConnectionPriority.NORMAL));
+	}
+
+	private class StubDataSource extends DataSource {
+
+		private final String database;
+
+		StubDataSource(String database) {
+			this.database = database;
+		}
+
+		@Override
+		public Connection getConnection(ConnectionPriority priority) {
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+						if (method.getName().equals("hashCode")) {
+							return System.identityHashCode(proxy);
+						}
+						if (method.getName().equals("equals")) {
+							return proxy == args[0];
+						}
+						return null;
+					});
+		}
+
+		@Override
+		public void releaseConnection(Connection connection) { }
+
+		@Override
+		public void invalidateConnection(Connection connection) {
+			invalidated.add(database);
+		}
+
+		@Override
+		public void destroy() {
+			destroyed.add(database);
+		}
+	}
+}
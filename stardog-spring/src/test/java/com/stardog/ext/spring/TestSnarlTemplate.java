@@ -0,0 +1,216 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.complexible.stardog.api.ConnectionConfiguration;
+import com.complexible.stardog.api.ConnectionPool;
+import com.complexible.stardog.api.ConnectionPoolConfig;
+import com.stardog.ext.spring.mapper.SimpleRowCodec;
+import com.stardog.ext.spring.mapper.SimpleRowMapper;
+
+/**
+ * Unit tests for the query settings SnarlTemplate applies, with the Stardog pool stubbed out
+ */
+public class TestSnarlTemplate {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private StubConnectionPool pool;
+
+	private DataSource dataSource;
+
+	private SnarlTemplate snarlTemplate;
+
+	@Before
+	public void setUp() {
+		pool = new StubConnectionPool();
+		dataSource = new DataSource(ConnectionConfiguration.to("test")) {
+			@Override
+			ConnectionPool createPool(ConnectionPoolConfig configuration) {
+				return pool;
+			}
+		};
+		dataSource.afterPropertiesSet();
+		snarlTemplate = new SnarlTemplate();
+		snarlTemplate.setDataSource(dataSource);
+	}
+
+	@After
+	public void tearDown() {
+		dataSource.destroy();
+	}
+
+	@Test
+	public void testQueryTimeoutFromConnectionProperties() {
+		Properties properties = new Properties();
+		properties.setProperty("query.timeout", "30s");
+		DataSourceFactoryBean factory = new DataSourceFactoryBean();
+		factory.setConnectionProperties(properties);
+		factory.applyQuerySettings(dataSource, factory.createOptions());
+
+		assertTrue(snarlTemplate.ask("ASK {}"));
+		assertTrue(snarlTemplate.query("SELECT * { ?s ?p ?o }", row -> row).isEmpty());
+		assertTrue(snarlTemplate.construct("CONSTRUCT { ?s ?p ?o } WHERE { ?s ?p ?o }", statements -> statements).isEmpty());
+		assertEquals(Arrays.asList("timeout 30000", "timeout 30000", "timeout 30000"), pool.settings);
+	}
+
+	@Test
+	public void testNoQueryTimeoutByDefault() {
+		assertTrue(snarlTemplate.ask("ASK {}"));
+		assertTrue(pool.settings.isEmpty());
+	}
+
+	@Test
+	public void testResultFormatFromDataSource() {
+		DataSourceFactoryBean factory = new DataSourceFactoryBean();
+		factory.setResultFormat(ResultFormat.JSON);
+		factory.applyQuerySettings(dataSource, factory.createOptions());
+
+		assertTrue(snarlTemplate.ask("ASK {}"));
+		assertTrue(snarlTemplate.query("SELECT * { ?s ?p ?o }", row -> row).isEmpty());
+		assertTrue(snarlTemplate.construct("CONSTRUCT { ?s ?p ?o } WHERE { ?s ?p ?o }", statements -> statements).isEmpty());
+		assertEquals(Arrays.asList("format " + ResultFormat.JSON.getSelectFormat(),
+				"format " + ResultFormat.JSON.getGraphFormat()), pool.settings);
+	}
+
+	@Test
+	public void testTemplateResultFormatOverridesDataSource() {
+		dataSource.setResultFormat(ResultFormat.JSON);
+		snarlTemplate.setResultFormat(ResultFormat.TEXT);
+
+		assertTrue(snarlTemplate.query("SELECT * { ?s ?p ?o }", row -> row).isEmpty());
+		assertEquals(Arrays.asList("format " + ResultFormat.TEXT.getSelectFormat()), pool.settings);
+
+		pool.settings.clear();
+		snarlTemplate.setResultFormat(ResultFormat.DEFAULT);
+		assertTrue(snarlTemplate.query("SELECT * { ?s ?p ?o }", row -> row).isEmpty());
+		assertTrue(pool.settings.isEmpty());
+	}
+
+	@Test
+	public void testQueryCachedNeedsName() throws Exception {
+		PersistentResultCache cache = new PersistentResultCache();
+		cache.setDirectory(folder.newFolder());
+		cache.afterPropertiesSet();
+		snarlTemplate.setResultCache(cache);
+		SimpleRowCodec codec = new SimpleRowCodec();
+
+		assertTrue(snarlTemplate.queryCached("rows", "SELECT * { ?s ?p ?o }", new SimpleRowMapper(), codec).isEmpty());
+		assertTrue(snarlTemplate.queryCached("rows", "SELECT * { ?s ?p ?o }", new SimpleRowMapper(), codec).isEmpty());
+		assertEquals(1, cache.getHits());
+		// another name is another entry for the same query, whatever the mapper
+		assertTrue(snarlTemplate.queryCached("other", "SELECT * { ?s ?p ?o }", row -> Collections.<String, String>emptyMap(), codec).isEmpty());
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		try {
+			snarlTemplate.queryCached(null, "SELECT * { ?s ?p ?o }", new SimpleRowMapper(), codec);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testQueryCachedPerDatabase() throws Exception {
+		PersistentResultCache cache = new PersistentResultCache();
+		cache.setDirectory(folder.newFolder());
+		cache.afterPropertiesSet();
+		snarlTemplate.setResultCache(cache);
+		SimpleRowCodec codec = new SimpleRowCodec();
+
+		dataSource.setEndpoint("http://localhost:5820", "a", false);
+		snarlTemplate.queryCached("rows", "SELECT * { ?s ?p ?o }", new SimpleRowMapper(), codec);
+		dataSource.setEndpoint("http://localhost:5820", "b", false);
+		snarlTemplate.queryCached("rows", "SELECT * { ?s ?p ?o }", new SimpleRowMapper(), codec);
+		dataSource.setEndpoint("http://localhost:5820", "b", true);
+		snarlTemplate.queryCached("rows", "SELECT * { ?s ?p ?o }", new SimpleRowMapper(), codec);
+		assertEquals(0, cache.getHits());
+		assertEquals(3, cache.getMisses());
+
+		dataSource.setEndpoint("http://localhost:5820", "a", false);
+		snarlTemplate.queryCached("rows", "SELECT * { ?s ?p ?o }", new SimpleRowMapper(), codec);
+		assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	public void testQueryCachedBypassedInTransaction() throws Exception {
+		PersistentResultCache cache = new PersistentResultCache();
+		cache.setDirectory(folder.newFolder());
+		cache.afterPropertiesSet();
+		snarlTemplate.setResultCache(cache);
+		SimpleRowCodec codec = new SimpleRowCodec();
+		snarlTemplate.queryCached("rows", "SELECT * { ?s ?p ?o }", new SimpleRowMapper(), codec);
+
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new StardogTransactionManager(dataSource));
+		transactionTemplate.execute(status -> snarlTemplate.queryCached("rows", "SELECT * { ?s ?p ?o }", new SimpleRowMapper(), codec));
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testFailedWriteRolledBack() {
+		try {
+			snarlTemplate.doWithAdder(adder -> {
+				adder.statement(null, null, null);
+				adder.statement(null, null, null);
+				throw new IllegalStateException("callback failed");
+			});
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertEquals("callback failed", e.getMessage());
+		}
+		assertEquals(0, pool.committed);
+
+		// the same connection is reused, without the failed writes
+		snarlTemplate.doWithAdder(adder -> adder.statement(null, null, null));
+		assertEquals(1, pool.committed);
+		assertEquals(1, pool.created.size());
+	}
+
+	@Test
+	public void testConnectionDroppedWhenRollbackFails() {
+		try {
+			snarlTemplate.execute(connection -> {
+				connection.add().statement(null, null, null);
+				pool.invalid.addAll(pool.created);
+				throw new IllegalStateException("callback failed");
+			});
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertEquals("callback failed", e.getMessage());
+		}
+		assertFalse(pool.created.get(0).isOpen());
+		assertTrue(pool.idle.isEmpty());
+
+		snarlTemplate.doWithAdder(adder -> adder.statement(null, null, null));
+		assertEquals(1, pool.committed);
+		assertEquals(2, pool.created.size());
+	}
+}
@@ -0,0 +1,82 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.stardog.ext.spring.mapper.SimpleRowCodec;
+
+/**
+ * Unit tests for SpillingResultBuffer
+ */
+public class TestSpillingResultBuffer {
+
+	private static Map<String, String> row(int i) {
+		Map<String, String> row = new HashMap<String, String>();
+		row.put("s", "urn:test:" + i);
+		row.put("label", "r\u00e9sultat " + i);
+		return row;
+	}
+
+	@Test
+	public void testStaysInMemoryBelowThreshold() {
+		SpillingResultBuffer<Map<String, String>> buffer = new SpillingResultBuffer<Map<String, String>>(new SimpleRowCodec(), 10, null);
+		for (int i = 0; i < 10; i++) {
+			buffer.add(row(i));
+		}
+		List<Map<String, String>> rows = buffer.toList();
+		assertFalse(buffer.isSpilled());
+		assertEquals(10, rows.size());
+		assertEquals(row(3), rows.get(3));
+	}
+
+	@Test
+	public void testSpillsPastThreshold() {
+		// small segments, so rows are read across several mappings
+		SpillingResultBuffer<Map<String, String>> buffer = new SpillingResultBuffer<Map<String, String>>(new SimpleRowCodec(), 100, null, 4096);
+		for (int i = 0; i < 10000; i++) {
+			buffer.add(row(i));
+		}
+		List<Map<String, String>> rows = buffer.toList();
+		assertTrue(buffer.isSpilled());
+		assertEquals(10000, rows.size());
+
+		Iterator<Map<String, String>> it = rows.iterator();
+		for (int i = 0; i < 10000; i++) {
+			assertEquals(row(i), it.next());
+		}
+		assertFalse(it.hasNext());
+
+		assertEquals(row(0), rows.get(0));
+		assertEquals(row(63), rows.get(63));
+		assertEquals(row(64), rows.get(64));
+		assertEquals(row(9999), rows.get(9999));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testSpilledListIsReadOnly() {
+		SpillingResultBuffer<Map<String, String>> buffer = new SpillingResultBuffer<Map<String, String>>(new SimpleRowCodec(), 0, null);
+		buffer.add(row(1));
+		buffer.toList().remove(0);
+	}
+}
@@ -0,0 +1,95 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.stardog.ext.spring.mapper.SimpleRowMapper;
+
+/**
+ * Test cases for the StardogTransactionManager
+ *
+ * Uses test-applicationContext in src/test/resources
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations={"/test-applicationContext.xml"})
+public class TestStardogTransactionManager {
+
+	@Autowired
+	DataSource dataSource;
+
+	private SnarlTemplate snarlTemplate;
+
+	private TransactionTemplate txTemplate;
+
+	@Before
+	public void setUp() {
+		snarlTemplate = new SnarlTemplate();
+		snarlTemplate.setDataSource(dataSource);
+		txTemplate = new TransactionTemplate(new StardogTransactionManager(dataSource));
+	}
+
+	@Test
+	public void testCommitAtBoundary() {
+		txTemplate.execute(status -> {
+			snarlTemplate.add("urn:tx:a", "urn:tx:p", "one");
+			snarlTemplate.add("urn:tx:b", "urn:tx:p", "two");
+			// reads inside the transaction share the bound connection
+			assertEquals(2, snarlTemplate.query("SELECT ?a WHERE { ?a <urn:tx:p> ?b }", new SimpleRowMapper()).size());
+			return null;
+		});
+
+		List<Map<String, String>> results = snarlTemplate.query("SELECT ?a WHERE { ?a <urn:tx:p> ?b }", new SimpleRowMapper());
+		assertEquals(2, results.size());
+	}
+
+	@Test
+	public void testRollback() {
+		try {
+			txTemplate.execute(status -> {
+				snarlTemplate.add("urn:tx:c", "urn:tx:q", "three");
+				throw new IllegalStateException("rollback");
+			});
+			fail("Expected exception");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		assertFalse(snarlTemplate.ask("ASK { <urn:tx:c> <urn:tx:q> ?b }"));
+	}
+
+	@Test
+	public void testSetRollbackOnly() {
+		txTemplate.execute(status -> {
+			snarlTemplate.add("urn:tx:d", "urn:tx:r", "four");
+			status.setRollbackOnly();
+			return null;
+		});
+
+		assertFalse(snarlTemplate.ask("ASK { <urn:tx:d> <urn:tx:r> ?b }"));
+	}
+}
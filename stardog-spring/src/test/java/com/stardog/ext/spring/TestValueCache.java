@@ -0,0 +1,63 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.stardog.stark.IRI;
+
+/**
+ * Unit tests for the ValueCache
+ */
+public class TestValueCache {
+
+	@Test
+	public void testInterning() {
+		ValueCache cache = new ValueCache(16);
+		IRI first = cache.iri("urn:test:p");
+		assertSame(first, cache.iri("urn:test:p"));
+		assertSame(cache.literal(5L), cache.literal(5L));
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void testKeysAreTyped() {
+		ValueCache cache = new ValueCache(16);
+		cache.literal(1);
+		cache.literal(1L);
+		cache.literal("1");
+		cache.iri("1");
+		// same hash, different keys, each one a miss
+		assertEquals(0, cache.getHits());
+		assertEquals(4, cache.getMisses());
+	}
+
+	@Test
+	public void testBounded() {
+		ValueCache cache = new ValueCache(4);
+		for (int i = 0; i < 1000; i++) {
+			cache.iri("urn:test:" + i);
+		}
+		assertEquals(1000, cache.getMisses());
+
+		cache.clear();
+		cache.iri("urn:test:0");
+		assertEquals(1001, cache.getMisses());
+	}
+}
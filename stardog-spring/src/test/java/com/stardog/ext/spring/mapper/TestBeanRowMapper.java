@@ -0,0 +1,201 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring.mapper;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.stardog.stark.Value;
+import com.stardog.stark.Values;
+import com.stardog.stark.query.BindingSet;
+
+/**
+ * TestBeanRowMapper
+ * 
+ * Unit tests for BeanRowMapper, against hand built BindingSets
+ */
+public class TestBeanRowMapper {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	public enum Color { RED, GREEN }
+
+	public static class Person {
+
+		private String name;
+
+		private int age;
+
+		private Color color;
+
+		@SparqlVariable("mail")
+		private String email;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+
+	static class Point {
+
+		final long x;
+
+		final double y;
+
+		final String label;
+
+		Point(@SparqlVariable("x") long x, @SparqlVariable("y") double y, @SparqlVariable("label") String label) {
+			this.x = x;
+			this.y = y;
+			this.label = label;
+		}
+	}
+
+	static class Unmappable {
+
+		Unmappable(@SparqlVariable("thread") Thread thread) {
+		}
+	}
+
+	@Test
+	public void testSetterAndPrivateFields() {
+		BeanRowMapper<Person> mapper = BeanRowMapper.of(Person.class);
+		assertEquals(Arrays.asList("name", "age", "color", "mail"), mapper.getVariables());
+
+		Person person = mapper.mapRow(bindings("name", Values.literal("Ann"), "age", Values.literal(42),
+				"color", Values.literal("GREEN"), "mail", Values.literal("ann@example.com")));
+		assertEquals("Ann", person.getName());
+		assertEquals(42, person.age);
+		assertEquals(Color.GREEN, person.color);
+		assertEquals("ann@example.com", person.email);
+	}
+
+	@Test
+	public void testUnboundLeavesProperty() {
+		Person person = BeanRowMapper.of(Person.class).mapRow(bindings("name", Values.literal("Ann")));
+		assertEquals("Ann", person.getName());
+		assertEquals(0, person.age);
+		assertNull(person.color);
+	}
+
+	@Test
+	public void testInvalidEnumConstant() {
+		try {
+			BeanRowMapper.of(Person.class).mapRow(bindings("color", Values.literal("BLUE")));
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testConstructor() {
+		BeanRowMapper<Point> mapper = new BeanRowMapper<Point>(Point.class);
+		assertEquals(Arrays.asList("x", "y", "label"), mapper.getVariables());
+
+		Point point = mapper.mapRow(bindings("x", Values.literal(3L), "y", Values.literal(1.5d), "label", Values.literal("p")));
+		assertEquals(3L, point.x);
+		assertEquals(1.5d, point.y, 0);
+		assertEquals("p", point.label);
+
+		// unbound parameters get the default of their type
+		point = mapper.mapRow(bindings("label", Values.literal("q")));
+		assertEquals(0L, point.x);
+		assertEquals(0d, point.y, 0);
+		assertEquals("q", point.label);
+	}
+
+	@Test
+	public void testUnsupportedParameterType() {
+		try {
+			new BeanRowMapper<Unmappable>(Unmappable.class);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("?thread"));
+		}
+	}
+
+	@Test
+	public void testRecord() throws Exception {
+		// records are compiled at runtime, the sources are built for Java versions without them
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		Assume.assumeTrue(Runtime.version().feature() >= 16 && compiler != null);
+		File dir = folder.newFolder();
+		File source = new File(dir, "Reading.java");
+		Files.write(source.toPath(), "public record Reading(String sensor, long value) { }".getBytes(StandardCharsets.UTF_8));
+		assertEquals(0, compiler.run(null, null, null, "-d", dir.getPath(), source.getPath()));
+
+		try (URLClassLoader loader = new URLClassLoader(new URL[] { dir.toURI().toURL() }, getClass().getClassLoader())) {
+			Class<?> type = loader.loadClass("Reading");
+			BeanRowMapper<?> mapper = new BeanRowMapper<>(type);
+			assertEquals(Arrays.asList("sensor", "value"), mapper.getVariables());
+
+			Object reading = mapper.mapRow(bindings("sensor", Values.literal("t1"), "value", Values.literal(7L)));
+			assertEquals("t1", type.getMethod("sensor").invoke(reading));
+			assertEquals(7L, type.getMethod("value").invoke(reading));
+		}
+	}
+
+	/*
+	 * BindingSet over the given name and value pairs, only the lookups the mapper uses
+	 */
+	private static BindingSet bindings(Object... pairs) {
+		Map<String, Value> values = new HashMap<String, Value>();
+		for (int i = 0; i < pairs.length; i += 2) {
+			values.put((String) pairs[i], (Value) pairs[i + 1]);
+		}
+		return (BindingSet) Proxy.newProxyInstance(BindingSet.class.getClassLoader(), new Class<?>[] { BindingSet.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+						case "get":
+							return values.get(args[0]);
+						case "value":
+							return Optional.ofNullable(values.get(args[0]));
+						case "variables":
+							return values.keySet();
+						case "size":
+							return values.size();
+						case "toString":
+							return values.toString();
+						default:
+							throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+}
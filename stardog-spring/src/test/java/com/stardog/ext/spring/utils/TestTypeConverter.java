@@ -17,11 +17,18 @@ package com.stardog.ext.spring.utils;
 
 import static org.junit.Assert.*;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.Date;
+import java.util.UUID;
 
 import com.stardog.stark.Value;
+import com.stardog.stark.Values;
 import org.junit.Test;
 
 /**
@@ -68,6 +75,65 @@ public class TestTypeConverter {
 	}
 
 
+	/**
+	 * Test method for {@link com.stardog.ext.spring.utils.TypeConverter#asLiteral(java.lang.Object)}
+	 * with numeric, boolean, UUID and java.time values.
+	 */
+	@Test
+	public void testAsLiteralTypes() {
+		assertEquals("\"5\"^^<http://www.w3.org/2001/XMLSchema#long>", TypeConverter.asLiteral(5L).toString());
+		assertTrue(TypeConverter.asLiteral(1.5d).toString().contains("XMLSchema#double"));
+		assertTrue(TypeConverter.asLiteral(1.5f).toString().contains("XMLSchema#float"));
+		assertTrue(TypeConverter.asLiteral(new BigDecimal("1.50")).toString().contains("XMLSchema#decimal"));
+		assertTrue(TypeConverter.asLiteral(BigInteger.TEN).toString().contains("XMLSchema#integer"));
+		assertTrue(TypeConverter.asLiteral(Boolean.TRUE).toString().contains("XMLSchema#boolean"));
+
+		UUID uuid = UUID.randomUUID();
+		assertTrue(TypeConverter.asLiteral(uuid).toString().contains(uuid.toString()));
+
+		assertEquals("\"2020-01-02T03:04:05Z\"^^<http://www.w3.org/2001/XMLSchema#dateTime>",
+				TypeConverter.asLiteral(Instant.parse("2020-01-02T03:04:05Z")).toString());
+		assertEquals("\"2020-01-02\"^^<http://www.w3.org/2001/XMLSchema#date>",
+				TypeConverter.asLiteral(LocalDate.of(2020, 1, 2)).toString());
+		assertEquals("\"-PT1H\"^^<http://www.w3.org/2001/XMLSchema#dayTimeDuration>",
+				TypeConverter.asLiteral(Duration.ofHours(-1)).toString());
+
+		// subclasses use the conversion of the nearest registered superclass
+		assertTrue(TypeConverter.asLiteral(new java.sql.Timestamp(0)).toString().contains("1970-01-01T00:00:00Z"));
+	}
+
+	/**
+	 * Test method for {@link com.stardog.ext.spring.utils.TypeConverter#register(java.lang.Class, java.util.function.Function)}.
+	 */
+	@Test
+	public void testRegister() {
+		assertFalse(TypeConverter.isSupported(Tag.class));
+		assertNull(TypeConverter.asLiteral(new Tag("x")));
+
+		// registered on an interface only this test uses, the registry is global
+		TypeConverter.register(Named.class, n -> Values.literal(n.name()));
+		assertTrue(TypeConverter.isSupported(Tag.class));
+		assertTrue(TypeConverter.asLiteral(new Tag("x")).toString().contains("x"));
+	}
+
+	private interface Named {
+		String name();
+	}
+
+	private static class Tag implements Named {
+
+		private final String name;
+
+		Tag(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String name() {
+			return name;
+		}
+	}
+
 	/**
 	 * Test method for {@link com.stardog.ext.spring.utils.TypeConverter#asResource(java.net.URI)}.
 	 */
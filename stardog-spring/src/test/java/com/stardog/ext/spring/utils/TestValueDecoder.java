@@ -0,0 +1,74 @@
+/*
+* Copyright (c) the original authors
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.stardog.ext.spring.utils;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+import com.stardog.stark.Values;
+import org.junit.Test;
+
+/**
+ * TestValueDecoder
+ * 
+ * Unit tests for ValueDecoder
+ */
+public class TestValueDecoder {
+
+	@Test
+	public void testNumbers() {
+		assertEquals(42L, ValueDecoder.longValue(Values.literal(42L)));
+		assertEquals(-7L, ValueDecoder.longValue(Values.literal(" -7 ")));
+		assertEquals(1.5d, ValueDecoder.doubleValue(Values.literal(1.5d)), 0);
+		assertEquals(Double.NEGATIVE_INFINITY, ValueDecoder.doubleValue(Values.literal("-INF")), 0);
+		assertTrue(Double.isNaN(ValueDecoder.doubleValue(Values.literal("NaN"))));
+		try {
+			ValueDecoder.longValue(Values.literal("4.2"));
+			fail("Expected NumberFormatException");
+		} catch (NumberFormatException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testBooleans() {
+		assertTrue(ValueDecoder.booleanValue(Values.literal(true)));
+		assertTrue(ValueDecoder.booleanValue(Values.literal("1")));
+		assertFalse(ValueDecoder.booleanValue(Values.literal("false")));
+		try {
+			ValueDecoder.booleanValue(Values.literal("yes"));
+			fail("Expected NumberFormatException");
+		} catch (NumberFormatException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testDates() {
+		assertEquals(Instant.parse("2020-01-02T01:04:05Z"), ValueDecoder.instant(Values.literal("2020-01-02T03:04:05+02:00")));
+		assertEquals(Instant.parse("2020-01-02T03:04:05Z"), ValueDecoder.instant(Values.literal("2020-01-02T03:04:05")));
+		assertEquals(LocalDate.of(2020, 1, 2), ValueDecoder.localDate(Values.literal("2020-01-02Z")));
+		assertEquals(LocalDate.of(2020, 1, 2), ValueDecoder.localDate(Values.literal("2020-01-02T03:04:05Z")));
+	}
+
+	@Test
+	public void testLabel() {
+		assertEquals("stardog", ValueDecoder.label(Values.literal("stardog")));
+		assertEquals("http://stardog.com", ValueDecoder.label(Values.iri("http://stardog.com")));
+	}
+}